@@ -0,0 +1,166 @@
+package pl.polsl.gabrys.arkadiusz.bench;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import javax.persistence.Persistence;
+import javax.persistence.PersistenceException;
+import pl.polsl.gabrys.arkadiusz.model.DatabaseContext;
+import pl.polsl.gabrys.arkadiusz.model.DatabaseManager;
+
+/**
+ * Opens and fills embedded databases used by benchmarks.
+ * Every database is an in-memory H2 database in MySQL mode which lives
+ * until the JVM exits, so a benchmark fork can close the context and
+ * open the same data again. Ids of a fresh database start with 1, book
+ * with id i has title "Title i" and author with id (i % authors) + 1.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class BenchmarkDatabase {
+
+    /**
+     * Persistence unit with the embedded database
+     */
+    public static final String PERSISTANCE_UNIT_NAME = "Lab1-JPA-Bench";
+
+    /**
+     * Persistence unit with the embedded database and IDENTITY ids
+     */
+    public static final String IDENTITY_PERSISTANCE_UNIT_NAME = "Lab1-JPA-Bench-Identity";
+
+    /**
+     * Number of books per author
+     */
+    public static final int BOOKS_PER_AUTHOR = 10;
+
+    /**
+     * EclipseLink weaving property
+     */
+    private static final String WEAVING_PROPERTY = "eclipselink.weaving";
+
+    /**
+     * Number of entities persisted in one transaction while filling the database
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Release date of all generated books
+     */
+    private static final Date RELEASE_DATE = new Date(0L);
+
+    /**
+     * Prevents creating instances
+     */
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * Opens context of the embedded database with given name
+     * @param name the database name
+     * @return the context, the schema is migrated when it doesn't exist
+     * @throws PersistenceException if the persistence unit cannot be deployed
+     */
+    public static DatabaseContext open(String name) throws PersistenceException {
+        return open(PERSISTANCE_UNIT_NAME, name, new HashMap<String, Object>());
+    }
+
+    /**
+     * Opens context of the embedded database with given name using given persistence unit
+     * The eclipselink.weaving system property overrides the persistence unit, so
+     * benchmarks can run on a build without static weaving. A JDBC URL in the
+     * properties replaces the embedded database.
+     * @param persistenceUnitName the persistence unit name
+     * @param name the database name
+     * @param properties the persistence unit properties overriding persistence.xml
+     * @return the context, the schema is migrated when it doesn't exist
+     * @throws PersistenceException if the persistence unit cannot be deployed
+     */
+    public static DatabaseContext open(String persistenceUnitName, String name, Map<String, Object> properties) throws PersistenceException {
+        Map<String, Object> unitProperties = new HashMap<>(properties);
+        unitProperties.putIfAbsent("javax.persistence.jdbc.url", "jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+
+        if (System.getProperty(WEAVING_PROPERTY) != null) {
+            unitProperties.put(WEAVING_PROPERTY, System.getProperty(WEAVING_PROPERTY));
+        }
+
+        return new DatabaseContext(Persistence.createEntityManagerFactory(persistenceUnitName, unitProperties));
+    }
+
+    /**
+     * Fills fresh database with given number of books and their authors
+     * @param context the context of an empty database
+     * @param books the number of books
+     * @throws PersistenceException if writing fails
+     */
+    public static void fill(DatabaseContext context, int books) throws PersistenceException {
+        DatabaseManager db = new DatabaseManager(context);
+        int authors = authorCount(books);
+
+        try {
+            for (int i = 1; i <= authors; i += BATCH_SIZE) {
+                db.startTransaction();
+
+                for (int j = i; j < i + BATCH_SIZE && j <= authors; j++) {
+                    db.persistAuthor("Name " + j, "LastName " + j);
+                }
+
+                db.commitTransaction();
+                db.clear();
+            }
+
+            for (int i = 1; i <= books; i += BATCH_SIZE) {
+                db.startTransaction();
+
+                for (int j = i; j < i + BATCH_SIZE && j <= books; j++) {
+                    db.persistBook(title(j), 100L, RELEASE_DATE, db.getAuthorReference(authorOf(j, books)));
+                }
+
+                db.commitTransaction();
+                db.clear();
+            }
+        } finally {
+            if (db.isTransactionActive()) {
+                db.rollbackTransaction();
+            }
+
+            db.close();
+        }
+    }
+
+    /**
+     * Returns number of authors generated for given number of books
+     * @param books the number of books
+     * @return the number of authors
+     */
+    public static int authorCount(int books) {
+        return Math.max(1, books / BOOKS_PER_AUTHOR);
+    }
+
+    /**
+     * Returns id of the author of given generated book
+     * @param bookId the book id
+     * @param books the number of generated books
+     * @return the author id
+     */
+    public static long authorOf(long bookId, int books) {
+        return bookId % authorCount(books) + 1;
+    }
+
+    /**
+     * Returns title of given generated book
+     * @param bookId the book id
+     * @return the book title
+     */
+    public static String title(long bookId) {
+        return "Title " + bookId;
+    }
+
+    /**
+     * Returns release date of generated books
+     * @return the release date
+     */
+    public static Date releaseDate() {
+        return new Date(RELEASE_DATE.getTime());
+    }
+}
@@ -0,0 +1,176 @@
+package pl.polsl.gabrys.arkadiusz.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.polsl.gabrys.arkadiusz.model.Author;
+import pl.polsl.gabrys.arkadiusz.model.Book;
+import pl.polsl.gabrys.arkadiusz.model.DatabaseContext;
+import pl.polsl.gabrys.arkadiusz.model.DatabaseManager;
+
+/**
+ * Cost of the first operation of a command, including deployment of the persistence unit.
+ * Every invocation creates a new entity manager factory, checks the schema
+ * version, runs one operation and closes the factory, which is what a single
+ * command line invocation does. The database is filled once per fork.
+ * With metadata "cache" the factory reads the entity metadata serialized by
+ * the first deployment (eclipselink.project-cache), as the application does
+ * with the metadata the build packages in its jar, with "annotations" it
+ * processes the annotations every time.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 10)
+@Fork(3)
+public class ColdStartBenchmark {
+
+    /**
+     * Number of books in the database, there is one author per ten books
+     */
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    /**
+     * Source of the entity metadata, "annotations" or "cache"
+     */
+    @Param({"annotations", "cache"})
+    public String metadata;
+
+    /**
+     * Name of the embedded database
+     */
+    private String name;
+
+    /**
+     * Persistence unit properties selecting the metadata source
+     */
+    private Map<String, Object> properties;
+
+    /**
+     * Fills the database and closes its persistence unit
+     * The first deployment writes the metadata cache when it is used.
+     * @throws IOException if the metadata cache file cannot be created
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        name = "cold" + rows;
+        properties = new HashMap<>();
+
+        if (metadata.equals("cache")) {
+            File cache = File.createTempFile("lab1-project", ".ser");
+            cache.deleteOnExit();
+            // an empty file would be read as a broken cache
+            cache.delete();
+            properties.put("eclipselink.project-cache", "java-serialization");
+            properties.put("eclipselink.project-cache.java-serialization.file-location", cache.getAbsolutePath());
+        }
+
+        DatabaseContext context = open();
+
+        try {
+            BenchmarkDatabase.fill(context, rows);
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Deploys the persistence unit and finds one author by id
+     * @return the found author
+     */
+    @Benchmark
+    public Author findAuthorById() {
+        DatabaseContext context = open();
+        DatabaseManager db = new DatabaseManager(context);
+
+        try {
+            return db.findAuthorById(1L);
+        } finally {
+            db.close();
+            context.close();
+        }
+    }
+
+    /**
+     * Deploys the persistence unit and finds all books
+     * @return the found books
+     */
+    @Benchmark
+    public List<Book> findAllBooks() {
+        DatabaseContext context = open();
+        DatabaseManager db = new DatabaseManager(context);
+
+        try {
+            return db.findAllBooks();
+        } finally {
+            db.close();
+            context.close();
+        }
+    }
+
+    /**
+     * Deploys the persistence unit and finds books by title
+     * @return the found books
+     */
+    @Benchmark
+    public List<Book> findBooksByTitle() {
+        DatabaseContext context = open();
+        DatabaseManager db = new DatabaseManager(context);
+
+        try {
+            return db.findBooksByTitle(BenchmarkDatabase.title(rows / 2 + 1));
+        } finally {
+            db.close();
+            context.close();
+        }
+    }
+
+    /**
+     * Opens the filled database with the selected metadata source
+     * @return the new context
+     */
+    private DatabaseContext open() {
+        return BenchmarkDatabase.open(BenchmarkDatabase.PERSISTANCE_UNIT_NAME, name, properties);
+    }
+
+    /**
+     * Deploys the persistence unit and adds one book
+     */
+    @Benchmark
+    public void persistBook() {
+        DatabaseContext context = open();
+        DatabaseManager db = new DatabaseManager(context);
+
+        try {
+            db.startTransaction();
+            db.persistBook("Title", 100L, BenchmarkDatabase.releaseDate(), 1L);
+            db.commitTransaction();
+        } finally {
+            if (db.isTransactionActive()) {
+                db.rollbackTransaction();
+            }
+
+            db.close();
+            context.close();
+        }
+    }
+}
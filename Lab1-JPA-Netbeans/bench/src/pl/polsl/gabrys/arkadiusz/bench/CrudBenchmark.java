@@ -0,0 +1,250 @@
+package pl.polsl.gabrys.arkadiusz.bench;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.polsl.gabrys.arkadiusz.model.Author;
+import pl.polsl.gabrys.arkadiusz.model.Book;
+import pl.polsl.gabrys.arkadiusz.model.BookSummary;
+import pl.polsl.gabrys.arkadiusz.model.DatabaseContext;
+import pl.polsl.gabrys.arkadiusz.model.DatabaseManager;
+
+/**
+ * Steady state cost of DatabaseManager operations.
+ * The persistence unit is deployed and filled once per fork, every
+ * operation then runs with a warm entity manager factory, shared cache
+ * and query result cache. The persistence context is cleared before
+ * every operation, the same as a fresh entity manager of a single command.
+ * Persisting benchmarks grow the tables during the measurement.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CrudBenchmark {
+
+    /**
+     * Number of books in the database, there is one author per ten books
+     */
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    /**
+     * Context of the embedded database
+     */
+    private DatabaseContext context;
+
+    /**
+     * Manager used by all operations
+     */
+    private DatabaseManager db;
+
+    /**
+     * Source of accessed ids, seeded for repeatable runs
+     */
+    private Random random;
+
+    /**
+     * Revision appended to titles of merged books, so every merge changes the row
+     */
+    private long revision;
+
+    /**
+     * Book persisted before every removeBook invocation
+     */
+    @State(Scope.Thread)
+    public static class RemovableBook {
+
+        /**
+         * Id of the persisted book
+         */
+        private Long id;
+
+        /**
+         * Highest book id known before the book is persisted
+         */
+        private long lastId;
+
+        /**
+         * Persists book removed by the next invocation
+         * @param benchmark the benchmark state with the database
+         */
+        @Setup(Level.Invocation)
+        public void persist(CrudBenchmark benchmark) {
+            DatabaseManager db = benchmark.db;
+
+            if (id == null) {
+                lastId = benchmark.rows;
+            }
+
+            db.startTransaction();
+            db.persistBook("Removed", 1L, BenchmarkDatabase.releaseDate(), db.getAuthorReference(1L));
+            db.commitTransaction();
+            db.clear();
+
+            List<Book> books = db.findBooksAfter(lastId, 1);
+            id = books.get(0).getId();
+            lastId = id;
+            db.clear();
+        }
+    }
+
+    /**
+     * Deploys the persistence unit and fills the database
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkDatabase.open("crud" + rows);
+        BenchmarkDatabase.fill(context, rows);
+        db = new DatabaseManager(context);
+        random = new Random(42L);
+    }
+
+    /**
+     * Closes the manager and the persistence unit
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+        context.close();
+    }
+
+    /**
+     * Clears the persistence context before every operation
+     */
+    @Setup(Level.Invocation)
+    public void clear() {
+        db.clear();
+    }
+
+    /**
+     * Adds one author in its own transaction
+     */
+    @Benchmark
+    public void persistAuthor() {
+        db.startTransaction();
+        db.persistAuthor("Name", "LastName");
+        db.commitTransaction();
+    }
+
+    /**
+     * Adds one book of an existing author in its own transaction
+     */
+    @Benchmark
+    public void persistBook() {
+        db.startTransaction();
+        db.persistBook("Title", 100L, BenchmarkDatabase.releaseDate(), randomAuthorId());
+        db.commitTransaction();
+    }
+
+    /**
+     * Finds random author by id
+     * @return the found author
+     */
+    @Benchmark
+    public Author findAuthorById() {
+        return db.findAuthorById(randomAuthorId());
+    }
+
+    /**
+     * Finds all books
+     * @return the found books
+     */
+    @Benchmark
+    public List<Book> findAllBooks() {
+        return db.findAllBooks();
+    }
+
+    /**
+     * Lists projections of all books, compare with findAllBooks
+     * @return the book projections
+     */
+    @Benchmark
+    public List<BookSummary> listAllBooks() {
+        return db.listAllBooks();
+    }
+
+    /**
+     * Lists projections of books by title of a random book, compare with findBooksByTitleUncached
+     * @return the book projections
+     */
+    @Benchmark
+    public List<BookSummary> listBooksByTitle() {
+        return db.listBooksByTitle(BenchmarkDatabase.title(randomBookId()));
+    }
+
+    /**
+     * Finds books by title of a random book, served by the query result cache once warm
+     * @return the found books
+     */
+    @Benchmark
+    public List<Book> findBooksByTitle() {
+        return db.findBooksByTitle(BenchmarkDatabase.title(randomBookId()));
+    }
+
+    /**
+     * Finds books by title of a random book without the query result cache
+     * @return the found books
+     */
+    @Benchmark
+    public List<Book> findBooksByTitleUncached() {
+        return db.findBooksByTitle(BenchmarkDatabase.title(randomBookId()), false);
+    }
+
+    /**
+     * Changes title of a random book in its own transaction
+     */
+    @Benchmark
+    public void mergeBook() {
+        long id = randomBookId();
+
+        db.startTransaction();
+        db.mergeBook(id, BenchmarkDatabase.title(id) + " (" + revision++ + ")", 100L,
+                BenchmarkDatabase.releaseDate(), BenchmarkDatabase.authorOf(id, rows));
+        db.commitTransaction();
+    }
+
+    /**
+     * Removes book persisted before the invocation in its own transaction
+     * @param book the book to remove
+     */
+    @Benchmark
+    public void removeBook(RemovableBook book) {
+        db.startTransaction();
+        db.removeBook(book.id);
+        db.commitTransaction();
+    }
+
+    /**
+     * Returns id of a random generated author
+     * @return the author id
+     */
+    private long randomAuthorId() {
+        return random.nextInt(BenchmarkDatabase.authorCount(rows)) + 1L;
+    }
+
+    /**
+     * Returns id of a random generated book
+     * @return the book id
+     */
+    private long randomBookId() {
+        return random.nextInt(rows) + 1L;
+    }
+}
@@ -0,0 +1,153 @@
+package pl.polsl.gabrys.arkadiusz.bench;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.polsl.gabrys.arkadiusz.model.AsyncDatabaseManager;
+import pl.polsl.gabrys.arkadiusz.model.Author;
+import pl.polsl.gabrys.arkadiusz.model.DatabaseContext;
+import pl.polsl.gabrys.arkadiusz.model.DatabaseManager;
+
+/**
+ * Cost of looking up many authors by id one after another and in parallel.
+ * The shared entity cache is cleared before every lookup, so each of them
+ * goes to the database. The embedded in-memory database answers without a
+ * network round trip, so there it only measures the overhead of the parallel
+ * path. The gain of the fan-out shows against a database server, given by
+ * the bench.fanout.url, bench.fanout.driver, bench.fanout.user and
+ * bench.fanout.password system properties of the fork; the database must be
+ * empty, for example:
+ *     ant bench -Dbench.args="FanOutBenchmark -jvmArgsAppend -Dbench.fanout.url=jdbc:mysql://host:3306/bench"
+ * Parallel lookups on virtual threads are limited to the number of carrier
+ * threads, see AsyncDatabaseManager.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FanOutBenchmark {
+
+    /**
+     * Prefix of system properties with the database server connection
+     */
+    private static final String SERVER_PROPERTY_PREFIX = "bench.fanout.";
+
+    /**
+     * Driver of the database server when the property is not set
+     */
+    private static final String DEFAULT_SERVER_DRIVER = "com.mysql.jdbc.Driver";
+
+    /**
+     * Number of looked up authors
+     */
+    @Param({"16", "64"})
+    public int lookups;
+
+    /**
+     * Context of the embedded database
+     */
+    private DatabaseContext context;
+
+    /**
+     * Manager used by sequential lookups
+     */
+    private DatabaseManager db;
+
+    /**
+     * Manager used by parallel lookups
+     */
+    private AsyncDatabaseManager async;
+
+    /**
+     * Looked up ids
+     */
+    private List<Long> ids;
+
+    /**
+     * Deploys the persistence unit and fills the database
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<String, Object> properties = new HashMap<>();
+        String url = System.getProperty(SERVER_PROPERTY_PREFIX + "url");
+
+        if (url != null) {
+            properties.put("javax.persistence.jdbc.url", url);
+            properties.put("javax.persistence.jdbc.driver", System.getProperty(SERVER_PROPERTY_PREFIX + "driver", DEFAULT_SERVER_DRIVER));
+            properties.put("javax.persistence.jdbc.user", System.getProperty(SERVER_PROPERTY_PREFIX + "user", ""));
+            properties.put("javax.persistence.jdbc.password", System.getProperty(SERVER_PROPERTY_PREFIX + "password", ""));
+        }
+
+        context = BenchmarkDatabase.open(BenchmarkDatabase.PERSISTANCE_UNIT_NAME, "fanout", properties);
+        BenchmarkDatabase.fill(context, lookups * BenchmarkDatabase.BOOKS_PER_AUTHOR);
+        db = new DatabaseManager(context);
+        async = new AsyncDatabaseManager(context);
+        ids = new ArrayList<>();
+
+        for (long id = 1; id <= lookups; id++) {
+            ids.add(id);
+        }
+    }
+
+    /**
+     * Closes managers and the persistence unit
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        async.close();
+        db.close();
+        context.close();
+    }
+
+    /**
+     * Clears cached authors before every invocation
+     */
+    @Setup(Level.Invocation)
+    public void clear() {
+        context.getEntityManagerFactory().getCache().evictAll();
+        db.clear();
+    }
+
+    /**
+     * Finds authors one after another
+     * @return the found authors
+     */
+    @Benchmark
+    public List<Author> sequential() {
+        List<Author> authors = new ArrayList<>(ids.size());
+
+        for (Long id : ids) {
+            authors.add(db.findAuthorById(id));
+        }
+
+        return authors;
+    }
+
+    /**
+     * Finds authors in parallel
+     * @return the found authors
+     */
+    @Benchmark
+    public List<Author> parallel() {
+        return async.findAuthorsByIds(ids).join();
+    }
+}
@@ -0,0 +1,103 @@
+package pl.polsl.gabrys.arkadiusz.bench;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.polsl.gabrys.arkadiusz.model.DatabaseContext;
+import pl.polsl.gabrys.arkadiusz.model.DatabaseManager;
+import pl.polsl.gabrys.arkadiusz.model.IdSequenceCustomizer;
+
+/**
+ * Cost of persisting many authors in one transaction with different id generation.
+ * IDENTITY reads every generated key back, so each insert is executed alone.
+ * TABLE_n allocates n ids with one update of the ID_SEQUENCE table, so inserts
+ * go out in JDBC batches of eclipselink.jdbc.batch-writing.size statements.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InsertBatchingBenchmark {
+
+    /**
+     * Id generation, IDENTITY or TABLE with the number of ids allocated at once after underscore
+     */
+    @Param({"IDENTITY", "TABLE_1", "TABLE_50", "TABLE_1000"})
+    public String idGeneration;
+
+    /**
+     * Number of authors persisted in one transaction
+     */
+    @Param({"1000"})
+    public int rowsPerTransaction;
+
+    /**
+     * Context of the embedded database
+     */
+    private DatabaseContext context;
+
+    /**
+     * Manager used to persist authors
+     */
+    private DatabaseManager db;
+
+    /**
+     * Deploys persistence unit with selected id generation
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<String, Object> properties = new HashMap<>();
+        String unit = BenchmarkDatabase.PERSISTANCE_UNIT_NAME;
+
+        if (idGeneration.equals("IDENTITY")) {
+            unit = BenchmarkDatabase.IDENTITY_PERSISTANCE_UNIT_NAME;
+        } else {
+            properties.put(IdSequenceCustomizer.ALLOCATION_SIZE_PROPERTY,
+                    idGeneration.substring(idGeneration.indexOf('_') + 1));
+        }
+
+        context = BenchmarkDatabase.open(unit, "insert" + idGeneration, properties);
+        db = new DatabaseManager(context);
+    }
+
+    /**
+     * Closes the manager and the persistence unit
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+        context.close();
+    }
+
+    /**
+     * Persists authors in one transaction
+     */
+    @Benchmark
+    public void persistAuthors() {
+        db.startTransaction();
+
+        for (int i = 0; i < rowsPerTransaction; i++) {
+            db.persistAuthor("Name " + i, "LastName " + i);
+        }
+
+        db.commitTransaction();
+        db.clear();
+    }
+}
@@ -0,0 +1,130 @@
+package pl.polsl.gabrys.arkadiusz.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import pl.polsl.gabrys.arkadiusz.view.View;
+
+/**
+ * Measures wall time of command line invocations from launch to exit.
+ * Every command of the commands file is run in a new JVM with the same
+ * arguments as the launcher uses, once without and once with the class
+ * data sharing archive, alternating so both see the same system state.
+ * The first run of every command is not measured. For every command the
+ * median and the 90th percentile in milliseconds are printed.
+ * Arguments: jar archive commands-file [runs]
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class StartupBenchmark {
+
+    /**
+     * Measured runs of every command and variant when not given
+     */
+    private static final int DEFAULT_RUNS = 10;
+
+    /**
+     * Runs the benchmark
+     * @param args the jar, the archive, the commands file and the number of runs
+     * @throws Exception if a command cannot be started
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.out.println("usage: StartupBenchmark <jar> <archive> <commands file> [runs]");
+            System.exit(1);
+        }
+
+        File jar = new File(args[0]).getAbsoluteFile();
+        File archive = new File(args[1]).getAbsoluteFile();
+        int runs = DEFAULT_RUNS;
+
+        if (args.length > 3) {
+            try {
+                runs = Integer.parseInt(args[3]);
+            } catch (NumberFormatException ex) {
+                runs = 0;
+            }
+        }
+
+        if (runs < 1) {
+            System.out.println("Number of runs must be a positive integer number!");
+            System.exit(1);
+        }
+
+        if (!archive.isFile()) {
+            System.out.println("Archive " + archive + " doesn't exist, create it with: ant cds");
+            System.exit(1);
+        }
+
+        System.out.println(String.format("%-40s %12s %12s %12s %12s",
+                "command", "median ms", "p90 ms", "cds median", "cds p90"));
+
+        for (String line : Files.readAllLines(new File(args[2]).toPath(), StandardCharsets.UTF_8)) {
+            line = line.trim();
+
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            List<String> command = new ArrayList<>(Arrays.asList(View.splitArguments(line)));
+
+            if (!command.get(0).startsWith("-")) {
+                command.set(0, "-" + command.get(0));
+            }
+
+            long[] plain = new long[runs];
+            long[] shared = new long[runs];
+            run(jar, null, command);
+            run(jar, archive, command);
+
+            for (int i = 0; i < runs; i++) {
+                plain[i] = run(jar, null, command);
+                shared[i] = run(jar, archive, command);
+            }
+
+            Arrays.sort(plain);
+            Arrays.sort(shared);
+            System.out.println(String.format("%-40s %12.1f %12.1f %12.1f %12.1f",
+                    line.length() > 40 ? line.substring(0, 37) + "..." : line,
+                    plain[runs / 2] / 1e6, plain[(runs * 9 - 1) / 10] / 1e6,
+                    shared[runs / 2] / 1e6, shared[(runs * 9 - 1) / 10] / 1e6));
+        }
+    }
+
+    /**
+     * Runs single command in a new JVM and waits for its exit
+     * @param jar the application jar
+     * @param archive the class data sharing archive or null to run without it
+     * @param command the command arguments
+     * @return the wall time in nanoseconds
+     * @throws IOException if the JVM cannot be started
+     * @throws InterruptedException if waiting is interrupted
+     */
+    private static long run(File jar, File archive, List<String> command) throws IOException, InterruptedException {
+        List<String> processArgs = new ArrayList<>();
+        processArgs.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+
+        if (archive != null) {
+            processArgs.add("-XX:SharedArchiveFile=" + archive.getPath());
+            processArgs.add("-Xshare:auto");
+        }
+
+        processArgs.add("-jar");
+        processArgs.add(jar.getPath());
+        processArgs.addAll(command);
+
+        File nullDevice = new File(System.getProperty("os.name").startsWith("Windows") ? "NUL" : "/dev/null");
+        ProcessBuilder builder = new ProcessBuilder(processArgs)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(nullDevice));
+
+        long start = System.nanoTime();
+        builder.start().waitFor();
+
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,8 @@
+@echo off
+rem Starts Lab1-JPA with the class data sharing archive when it exists.
+rem The archive is created with: ant cds
+setlocal
+set DIR=%~dp0
+set CDS=
+if exist "%DIR%Lab1-JPA.jsa" set CDS=-XX:SharedArchiveFile="%DIR%Lab1-JPA.jsa" -Xshare:auto
+java %CDS% -jar "%DIR%Lab1-JPA.jar" %*
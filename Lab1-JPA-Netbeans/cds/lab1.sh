@@ -0,0 +1,12 @@
+#!/bin/sh
+# Starts Lab1-JPA with the class data sharing archive when it exists.
+# The archive is created with: ant cds
+DIR=$(cd "$(dirname "$0")" && pwd)
+ARCHIVE="$DIR/Lab1-JPA.jsa"
+CDS=""
+
+if [ -f "$ARCHIVE" ]; then
+    CDS="-XX:SharedArchiveFile=$ARCHIVE -Xshare:auto"
+fi
+
+exec java $CDS -jar "$DIR/Lab1-JPA.jar" "$@"
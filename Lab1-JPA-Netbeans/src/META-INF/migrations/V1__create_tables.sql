@@ -0,0 +1,19 @@
+-- Initial schema, matches tables previously created by schema generation,
+-- so databases created before migrations were introduced are left intact.
+
+CREATE TABLE IF NOT EXISTS AUTHOR (
+    ID BIGINT AUTO_INCREMENT NOT NULL,
+    LASTNAME VARCHAR(255) NOT NULL,
+    NAME VARCHAR(255) NOT NULL,
+    PRIMARY KEY (ID)
+);
+
+CREATE TABLE IF NOT EXISTS BOOK (
+    ID BIGINT AUTO_INCREMENT NOT NULL,
+    PAGES BIGINT NOT NULL,
+    RELEASEDATE DATE NOT NULL,
+    TITLE VARCHAR(255) NOT NULL,
+    AUTHOR_ID BIGINT NOT NULL,
+    PRIMARY KEY (ID),
+    CONSTRAINT FK_BOOK_AUTHOR_ID FOREIGN KEY (AUTHOR_ID) REFERENCES AUTHOR (ID)
+);
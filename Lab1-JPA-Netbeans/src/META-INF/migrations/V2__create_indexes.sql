@@ -0,0 +1,8 @@
+-- Indexes backing name and title lookups, release date ranges
+-- and joins from books to their author.
+
+CREATE INDEX IX_AUTHOR_NAME ON AUTHOR (NAME);
+CREATE INDEX IX_AUTHOR_LASTNAME ON AUTHOR (LASTNAME);
+CREATE INDEX IX_BOOK_TITLE ON BOOK (TITLE);
+CREATE INDEX IX_BOOK_RELEASEDATE ON BOOK (RELEASEDATE);
+CREATE INDEX IX_BOOK_AUTHOR_ID ON BOOK (AUTHOR_ID);
@@ -0,0 +1,13 @@
+-- Table of id generators replacing AUTO_INCREMENT, which forced every
+-- insert to run alone to read the generated key. Counters start after
+-- the highest existing ids. AUTO_INCREMENT is left on the columns, so
+-- rows inserted by older versions still get unique ids.
+
+CREATE TABLE IF NOT EXISTS ID_SEQUENCE (
+    SEQ_NAME VARCHAR(50) NOT NULL,
+    SEQ_COUNT BIGINT NOT NULL,
+    PRIMARY KEY (SEQ_NAME)
+);
+
+INSERT INTO ID_SEQUENCE (SEQ_NAME, SEQ_COUNT) SELECT 'AUTHOR_ID', COALESCE(MAX(ID), 0) FROM AUTHOR;
+INSERT INTO ID_SEQUENCE (SEQ_NAME, SEQ_COUNT) SELECT 'BOOK_ID', COALESCE(MAX(ID), 0) FROM BOOK;
@@ -0,0 +1,13 @@
+-- Number of books and pages of every author, read by author reports
+-- instead of grouping all books. Maintained by the application when
+-- lab1.report.summary is enabled. There is no foreign key, so bulk
+-- deletes of authors don't depend on the order of statements.
+
+CREATE TABLE IF NOT EXISTS AUTHOR_TOTALS (
+    AUTHOR_ID BIGINT NOT NULL,
+    BOOKS BIGINT NOT NULL,
+    PAGES BIGINT NOT NULL,
+    PRIMARY KEY (AUTHOR_ID)
+);
+
+INSERT INTO AUTHOR_TOTALS (AUTHOR_ID, BOOKS, PAGES) SELECT a.ID, COUNT(b.ID), COALESCE(SUM(b.PAGES), 0) FROM AUTHOR a LEFT JOIN BOOK b ON b.AUTHOR_ID = a.ID GROUP BY a.ID;
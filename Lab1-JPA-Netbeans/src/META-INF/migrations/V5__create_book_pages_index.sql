@@ -0,0 +1,3 @@
+-- Index backing page ranges of book filters.
+
+CREATE INDEX IX_BOOK_PAGES ON BOOK (PAGES);
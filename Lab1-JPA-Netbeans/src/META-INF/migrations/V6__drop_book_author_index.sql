@@ -0,0 +1,8 @@
+-- IX_BOOK_AUTHOR_ID duplicated the index of FK_BOOK_AUTHOR_ID, every book
+-- write maintained both. InnoDB dropped the implicit index of the foreign
+-- key when IX_BOOK_AUTHOR_ID was created and refuses to drop the only index
+-- backing a foreign key, so the index of the key is created again first.
+-- Both statements are skipped when already applied.
+
+CREATE INDEX FK_BOOK_AUTHOR_ID ON BOOK (AUTHOR_ID);
+DROP INDEX IX_BOOK_AUTHOR_ID ON BOOK;
@@ -0,0 +1,58 @@
+package pl.polsl.gabrys.arkadiusz;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import pl.polsl.gabrys.arkadiusz.model.DatabaseContext;
+import pl.polsl.gabrys.arkadiusz.view.CommandServer;
+
+/**
+ * Main class of the server mode with the main method
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class Server {
+
+    /**
+     * Starts command server on the port given as the first argument
+     * The optional second argument is the directory with files imported
+     * and exported by requests, without it requests cannot use files.
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+
+        int port = CommandServer.DEFAULT_PORT;
+
+        if (args.length > 0) {
+            try {
+                port = Integer.parseInt(args[0]);
+            } catch (NumberFormatException ex) {
+                System.out.println("Port is not an integer number!");
+                System.exit(1);
+            }
+        }
+
+        Path fileDirectory = null;
+
+        if (args.length > 1) {
+            fileDirectory = Paths.get(args[1]);
+
+            if (!Files.isDirectory(fileDirectory)) {
+                System.out.println("Directory " + args[1] + " doesn't exist!");
+                System.exit(1);
+            }
+        }
+
+        // the factory is created once and shared by all connections
+        CommandServer server = new CommandServer(port, DatabaseContext.getDefault(), fileDirectory);
+
+        try {
+            System.out.println("Listening on port " + port);
+            server.run();
+        } catch (IOException ex) {
+            System.out.println("Cannot start server: " + ex.getMessage());
+            System.exit(2);
+        }
+    }
+}
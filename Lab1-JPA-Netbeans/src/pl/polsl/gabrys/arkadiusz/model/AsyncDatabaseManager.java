@@ -0,0 +1,249 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs database operations in the background and returns their results as futures.
+ * Every operation uses its own database manager, so independent lookups run
+ * in parallel and a fan-out of N lookups takes about one round trip. Tasks run
+ * on virtual threads when the JDK provides them, otherwise on a fixed pool of
+ * daemon threads. At most as many operations as the connection pool has
+ * connections run at once, the rest wait without holding a connection.
+ * The EclipseLink connection pool and the MySQL driver block inside
+ * synchronized code, which pins a virtual thread to its carrier thread, so
+ * on virtual threads at most as many operations as there are carrier threads
+ * (jdk.virtualThreadScheduler.parallelism, the number of processors by
+ * default) wait for the database at once.
+ * Returned entities are detached, lazy associations which were not loaded
+ * cannot be read.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class AsyncDatabaseManager implements AutoCloseable {
+
+    /**
+     * Persistence unit property with the maximum number of pooled connections
+     */
+    public static final String POOL_SIZE_PROPERTY = "eclipselink.connection-pool.default.max";
+
+    /**
+     * Maximum number of pooled connections when the property is not set, the EclipseLink default
+     */
+    private final Long DEFAULT_POOL_SIZE = 32L;
+
+    /**
+     * Context shared by all operations
+     */
+    private final DatabaseContext context;
+
+    /**
+     * Executor running the operations
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Permits of running operations, one per pooled connection
+     */
+    private final Semaphore permits;
+
+    /**
+     * Creates manager limited to the connection pool size of given context
+     * @param context the shared persistence unit context
+     * @throws NumberFormatException if the pool size property is not a number
+     */
+    public AsyncDatabaseManager(DatabaseContext context) throws NumberFormatException {
+        this.context = context;
+        int limit = (int) context.getLongProperty(POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE);
+        this.permits = new Semaphore(limit);
+        this.executor = createExecutor(limit);
+    }
+
+    /**
+     * Finds author by id
+     * @param id the author id
+     * @return the future of the author or null if not found
+     */
+    public CompletableFuture<Author> findAuthorById(Long id) {
+        return read(db -> db.findAuthorById(id));
+    }
+
+    /**
+     * Finds authors by ids, every lookup runs in parallel
+     * @param ids the author ids
+     * @return the future of authors in order of ids, null for not found ones
+     */
+    public CompletableFuture<List<Author>> findAuthorsByIds(List<Long> ids) {
+        List<CompletableFuture<Author>> lookups = new ArrayList<>(ids.size());
+
+        for (Long id : ids) {
+            lookups.add(findAuthorById(id));
+        }
+
+        return all(lookups);
+    }
+
+    /**
+     * Finds book by id
+     * @param id the book id
+     * @return the future of the book or null if not found
+     */
+    public CompletableFuture<Book> findBookById(Long id) {
+        return read(db -> db.findBookById(id));
+    }
+
+    /**
+     * Finds authors with given name
+     * @param name the author name
+     * @return the future of found authors
+     */
+    public CompletableFuture<List<Author>> findAuthorsByName(String name) {
+        return read(db -> db.findAuthorsByName(name));
+    }
+
+    /**
+     * Finds books with given title
+     * @param title the book title
+     * @return the future of found books
+     */
+    public CompletableFuture<List<Book>> findBooksByTitle(String title) {
+        return read(db -> db.findBooksByTitle(title));
+    }
+
+    /**
+     * Finds books with any of given titles, every lookup runs in parallel
+     * @param titles the book titles
+     * @return the future of found books for every title in order of titles
+     */
+    public CompletableFuture<List<List<Book>>> findBooksByTitles(List<String> titles) {
+        List<CompletableFuture<List<Book>>> lookups = new ArrayList<>(titles.size());
+
+        for (String title : titles) {
+            lookups.add(findBooksByTitle(title));
+        }
+
+        return all(lookups);
+    }
+
+    /**
+     * Finds all authors
+     * @return the future of all authors
+     */
+    public CompletableFuture<List<Author>> findAllAuthors() {
+        return read(db -> db.findAllAuthors());
+    }
+
+    /**
+     * Finds all books
+     * @return the future of all books
+     */
+    public CompletableFuture<List<Book>> findAllBooks() {
+        return read(db -> db.findAllBooks());
+    }
+
+    /**
+     * Finds books matching given filter
+     * @param filter the conditions, order and limit of the search
+     * @return the future of found books
+     */
+    public CompletableFuture<List<Book>> findBooks(BookFilter filter) {
+        return read(db -> db.findBooks(filter));
+    }
+
+    /**
+     * Runs work without a transaction, for reads
+     * @param <T> the type of the work result
+     * @param work the work
+     * @return the future of the work result
+     */
+    public <T> CompletableFuture<T> read(UnitOfWork<T> work) {
+        return CompletableFuture.supplyAsync(() -> {
+            permits.acquireUninterruptibly();
+
+            try {
+                DatabaseManager db = new DatabaseManager(context);
+
+                try {
+                    return work.execute(db);
+                } finally {
+                    db.close();
+                }
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    /**
+     * Runs work in its own transaction, see DatabaseManager.inTransaction()
+     * @param <T> the type of the work result
+     * @param work the work
+     * @return the future of the work result
+     */
+    public <T> CompletableFuture<T> inTransaction(UnitOfWork<T> work) {
+        return CompletableFuture.supplyAsync(() -> {
+            permits.acquireUninterruptibly();
+
+            try {
+                return DatabaseManager.inTransaction(context, work);
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    /**
+     * Stops accepting operations, already submitted ones are finished
+     * The shared context stays open.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Combines futures into a future of the list of their results
+     * @param <T> the type of results
+     * @param futures the futures
+     * @return the future completed when all futures complete
+     */
+    private static <T> CompletableFuture<List<T>> all(List<CompletableFuture<T>> futures) {
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]))
+                .thenApply(ignored -> {
+                    List<T> results = new ArrayList<>(futures.size());
+
+                    for (CompletableFuture<T> future : futures) {
+                        results.add(future.join());
+                    }
+
+                    return results;
+                });
+    }
+
+    /**
+     * Creates executor with a virtual thread per task when the JDK provides it
+     * The method is looked up by reflection, so the class still runs on Java 8.
+     * @param poolSize the number of platform threads used otherwise
+     * @return the executor
+     */
+    private static ExecutorService createExecutor(int poolSize) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            AtomicInteger count = new AtomicInteger();
+
+            return Executors.newFixedThreadPool(poolSize, task -> {
+                Thread thread = new Thread(task, "database-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
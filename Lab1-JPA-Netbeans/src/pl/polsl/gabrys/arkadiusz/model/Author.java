@@ -4,15 +4,24 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedEntityGraphs;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
+import javax.persistence.Table;
+import javax.persistence.TableGenerator;
+import org.eclipse.persistence.annotations.BatchFetch;
+import org.eclipse.persistence.annotations.BatchFetchType;
 
 /**
  * Class represents single Author entry in author table
@@ -20,20 +29,67 @@ import javax.persistence.OneToMany;
  * @version 1.0
  */
 @Entity
+@Cacheable(true)
+@NamedEntityGraphs({
+  @NamedEntityGraph(name=Author.GRAPH_SUMMARY,
+                    attributeNodes={@NamedAttributeNode("name"),
+                                    @NamedAttributeNode("lastName")}),
+  @NamedEntityGraph(name=Author.GRAPH_WITH_BOOKS,
+                    attributeNodes={@NamedAttributeNode("name"),
+                                    @NamedAttributeNode("lastName"),
+                                    @NamedAttributeNode("books")})
+})
 @NamedQueries({
   @NamedQuery(name="Author.findAll",
               query="SELECT e FROM Author e"),
+  @NamedQuery(name="Author.findAfter",
+              query="SELECT e FROM Author e WHERE e.id > :lastId ORDER BY e.id"),
   @NamedQuery(name="Author.findByName",
-              query="SELECT e FROM Author e WHERE e.name = :name")
+              query="SELECT e FROM Author e WHERE e.name = :name"),
+  @NamedQuery(name="Author.findByIds",
+              query="SELECT e FROM Author e WHERE e.id IN :ids ORDER BY e.id"),
+  @NamedQuery(name="Author.listAll",
+              query="SELECT NEW pl.polsl.gabrys.arkadiusz.model.AuthorSummary(e.id, e.name, e.lastName) FROM Author e ORDER BY e.id"),
+  @NamedQuery(name="Author.listAfter",
+              query="SELECT NEW pl.polsl.gabrys.arkadiusz.model.AuthorSummary(e.id, e.name, e.lastName) FROM Author e WHERE e.id > :lastId ORDER BY e.id"),
+  @NamedQuery(name="Author.listByName",
+              query="SELECT NEW pl.polsl.gabrys.arkadiusz.model.AuthorSummary(e.id, e.name, e.lastName) FROM Author e WHERE e.name = :name ORDER BY e.id"),
+  @NamedQuery(name="Author.listByIds",
+              query="SELECT NEW pl.polsl.gabrys.arkadiusz.model.AuthorSummary(e.id, e.name, e.lastName) FROM Author e WHERE e.id IN :ids ORDER BY e.id"),
+  @NamedQuery(name="Author.count",
+              query="SELECT COUNT(e) FROM Author e"),
+  @NamedQuery(name="Author.report",
+              query="SELECT e.id, e.name, e.lastName, COUNT(b), SUM(b.pages) FROM Author e LEFT JOIN e.books b GROUP BY e.id, e.name, e.lastName ORDER BY e.id"),
+  @NamedQuery(name="Author.renameByIds",
+              query="UPDATE Author e SET e.name = :name, e.lastName = :lastName WHERE e.id IN :ids"),
+  @NamedQuery(name="Author.deleteByIds",
+              query="DELETE FROM Author e WHERE e.id IN :ids")
+})
+@Table(indexes = {
+  @Index(name="IX_AUTHOR_NAME", columnList="NAME"),
+  @Index(name="IX_AUTHOR_LASTNAME", columnList="LASTNAME")
 })
 public class Author implements Serializable {
     
     /**
-     * Author unique id
+     * Entity graph with author columns only
+     */
+    public static final String GRAPH_SUMMARY = "Author.summary";
+    
+    /**
+     * Entity graph with author columns and all author books
+     */
+    public static final String GRAPH_WITH_BOOKS = "Author.withBooks";
+    
+    /**
+     * Author unique id, allocated in blocks from the ID_SEQUENCE table
      */
     @Id
     @Column(nullable = false)
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @TableGenerator(name = "AUTHOR_ID", table = "ID_SEQUENCE",
+            pkColumnName = "SEQ_NAME", valueColumnName = "SEQ_COUNT",
+            pkColumnValue = "AUTHOR_ID", allocationSize = 1000)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "AUTHOR_ID")
     private Long id;
     
     /**
@@ -49,9 +105,11 @@ public class Author implements Serializable {
     private String lastName;
     
     /**
-     * Author books
+     * Author books, loaded on first access or with the GRAPH_WITH_BOOKS entity graph
+     * The first access loads books of up to 1000 authors returned by the same query.
      */
-    @OneToMany(fetch = FetchType.EAGER, mappedBy = "author")
+    @OneToMany(fetch = FetchType.LAZY, mappedBy = "author")
+    @BatchFetch(value = BatchFetchType.IN, size = 1000)
     private List<Book> books;
     
     /**
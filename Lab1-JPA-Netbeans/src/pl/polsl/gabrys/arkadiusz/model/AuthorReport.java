@@ -0,0 +1,111 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.util.Objects;
+
+/**
+ * Row of the author report, number of books and pages of one author
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public final class AuthorReport {
+
+    /**
+     * Author id
+     */
+    private final Long authorId;
+
+    /**
+     * Author name
+     */
+    private final String name;
+
+    /**
+     * Author last name
+     */
+    private final String lastName;
+
+    /**
+     * Number of books of the author
+     */
+    private final long books;
+
+    /**
+     * Sum of pages of all books of the author
+     */
+    private final long pages;
+
+    /**
+     * Initializes instance with given parameters
+     * @param authorId the author id
+     * @param name the author name
+     * @param lastName the author last name
+     * @param books the number of books, null is read as 0
+     * @param pages the sum of pages, null is read as 0
+     */
+    public AuthorReport(Long authorId, String name, String lastName, Long books, Long pages) {
+        this.authorId = authorId;
+        this.name = name;
+        this.lastName = lastName;
+        this.books = books == null ? 0L : books;
+        this.pages = pages == null ? 0L : pages;
+    }
+
+    public Long getAuthorId() {
+        return authorId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public long getBooks() {
+        return books;
+    }
+
+    public long getPages() {
+        return pages;
+    }
+
+    /**
+     * Compares current object with the given one
+     * @param obj the object to compare
+     * @return comparison result
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof AuthorReport))
+            return false;
+
+        if (obj == this)
+            return true;
+
+        AuthorReport rhs = (AuthorReport) obj;
+        return Objects.equals(authorId, rhs.authorId)
+                && Objects.equals(name, rhs.name)
+                && Objects.equals(lastName, rhs.lastName)
+                && books == rhs.books
+                && pages == rhs.pages;
+    }
+
+    /**
+     * Formats this row in the form of string
+     * @return the string representing this row
+     */
+    @Override
+    public String toString() {
+        return String.format("%d; %s; %s; %d; %d", authorId, name, lastName, books, pages);
+    }
+
+    /**
+     * Calculates hash code which represents current object
+     * @return the number which represents current object
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(authorId, name, lastName, books, pages);
+    }
+}
@@ -0,0 +1,89 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.util.Objects;
+
+/**
+ * Read only projection of Author with the columns printed by listings
+ * Instances are created by constructor expressions of the Author.list* named
+ * queries, they are not entities and are not held by the persistence context.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public final class AuthorSummary {
+
+    /**
+     * Author id
+     */
+    private final Long id;
+
+    /**
+     * Author name
+     */
+    private final String name;
+
+    /**
+     * Author last name
+     */
+    private final String lastName;
+
+    /**
+     * Initializes instance with given parameters
+     * @param id the author id
+     * @param name the author name
+     * @param lastName the author last name
+     */
+    public AuthorSummary(Long id, String name, String lastName) {
+        this.id = id;
+        this.name = name;
+        this.lastName = lastName;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    /**
+     * Compares current object with the given one
+     * @param obj the object to compare
+     * @return comparison result
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof AuthorSummary))
+            return false;
+
+        if (obj == this)
+            return true;
+
+        AuthorSummary rhs = (AuthorSummary) obj;
+        return Objects.equals(id, rhs.id)
+                && Objects.equals(name, rhs.name)
+                && Objects.equals(lastName, rhs.lastName);
+    }
+
+    /**
+     * Formats this projection the same way as Author.toString()
+     * @return the string representing this projection
+     */
+    @Override
+    public String toString() {
+        return String.format("%d; %s; %s", id, name, lastName);
+    }
+
+    /**
+     * Calculates hash code which represents current object
+     * @return the number which represents current object
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, name, lastName);
+    }
+}
@@ -0,0 +1,126 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.io.Serializable;
+import java.util.Objects;
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+
+/**
+ * Class represents number of books and pages of one author in author_totals table
+ * Rows are maintained by DatabaseManager when the report summary is enabled
+ * (DatabaseContext.REPORT_SUMMARY_PROPERTY), so author reports read one row
+ * per author instead of grouping all books. Rows are changed with relative
+ * update statements, concurrent transactions adding books of the same author
+ * do not overwrite each other.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+@Entity
+@Cacheable(false)
+@NamedQueries({
+  @NamedQuery(name="AuthorTotals.report",
+              query="SELECT NEW pl.polsl.gabrys.arkadiusz.model.AuthorReport(a.id, a.name, a.lastName, e.books, e.pages) FROM AuthorTotals e, Author a WHERE a.id = e.authorId ORDER BY a.id"),
+  @NamedQuery(name="AuthorTotals.totals",
+              query="SELECT COUNT(e), SUM(e.books), SUM(e.pages) FROM AuthorTotals e"),
+  @NamedQuery(name="AuthorTotals.add",
+              query="UPDATE AuthorTotals e SET e.books = e.books + :books, e.pages = e.pages + :pages WHERE e.authorId = :authorId"),
+  @NamedQuery(name="AuthorTotals.resetByAuthors",
+              query="UPDATE AuthorTotals e SET e.books = 0, e.pages = 0 WHERE e.authorId IN :authorIds"),
+  @NamedQuery(name="AuthorTotals.deleteByAuthors",
+              query="DELETE FROM AuthorTotals e WHERE e.authorId IN :authorIds"),
+  @NamedQuery(name="AuthorTotals.deleteAll",
+              query="DELETE FROM AuthorTotals e")
+})
+@Table(name = "AUTHOR_TOTALS")
+public class AuthorTotals implements Serializable {
+
+    /**
+     * Id of the author
+     */
+    @Id
+    @Column(name = "AUTHOR_ID", nullable = false)
+    private Long authorId;
+
+    /**
+     * Number of books of the author
+     */
+    @Column(nullable = false)
+    private Long books;
+
+    /**
+     * Sum of pages of all books of the author
+     */
+    @Column(nullable = false)
+    private Long pages;
+
+    /**
+     * Initializes instance with empty fields
+     */
+    public AuthorTotals() {
+        this(null, 0L, 0L);
+    }
+
+    /**
+     * Initializes instance with given parameters
+     * @param authorId the author id
+     * @param books the number of books
+     * @param pages the sum of pages
+     */
+    public AuthorTotals(Long authorId, Long books, Long pages) {
+        this.authorId = authorId;
+        this.books = books;
+        this.pages = pages;
+    }
+
+    public Long getAuthorId() {
+        return authorId;
+    }
+
+    public Long getBooks() {
+        return books;
+    }
+
+    public Long getPages() {
+        return pages;
+    }
+
+    /**
+     * Compares current object with the given one
+     * @param obj the object to compare
+     * @return comparison result
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof AuthorTotals))
+            return false;
+
+        if (obj == this)
+            return true;
+
+        AuthorTotals rhs = (AuthorTotals) obj;
+        return Objects.equals(this.getAuthorId(), rhs.getAuthorId());
+    }
+
+    /**
+     * Formats this entity in the form of string
+     * @return the string representing this entity
+     */
+    @Override
+    public String toString() {
+        return String.format("%d; %d; %d", authorId, books, pages);
+    }
+
+    /**
+     * Calculates hash code which represents current object
+     * @return the number which represents current object
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(authorId);
+    }
+}
@@ -4,17 +4,23 @@ import java.io.Serializable;
 import java.util.Date;
 import java.util.Objects;
 import javax.persistence.CascadeType;
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import javax.persistence.TableGenerator;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
+import org.eclipse.persistence.annotations.BatchFetch;
+import org.eclipse.persistence.annotations.BatchFetchType;
 
 /**
  * Class represents single Book entry in book table
@@ -22,20 +28,55 @@ import javax.persistence.TemporalType;
  * @version 1.0
  */
 @Entity
+@Cacheable(true)
 @NamedQueries({
   @NamedQuery(name="Book.findAll",
               query="SELECT e FROM Book e"),
+  @NamedQuery(name="Book.findAfter",
+              query="SELECT e FROM Book e WHERE e.id > :lastId ORDER BY e.id"),
   @NamedQuery(name="Book.findByTitle",
-              query="SELECT e FROM Book e WHERE e.title = :title")
+              query="SELECT e FROM Book e WHERE e.title = :title"),
+  @NamedQuery(name="Book.findAllWithAuthor",
+              query="SELECT e FROM Book e JOIN FETCH e.author"),
+  @NamedQuery(name="Book.findAfterWithAuthor",
+              query="SELECT e FROM Book e JOIN FETCH e.author WHERE e.id > :lastId ORDER BY e.id"),
+  @NamedQuery(name="Book.findByTitleWithAuthor",
+              query="SELECT e FROM Book e JOIN FETCH e.author WHERE e.title = :title"),
+  @NamedQuery(name="Book.findByIds",
+              query="SELECT e FROM Book e JOIN FETCH e.author WHERE e.id IN :ids ORDER BY e.id"),
+  @NamedQuery(name="Book.listAll",
+              query="SELECT NEW pl.polsl.gabrys.arkadiusz.model.BookSummary(e.id, e.title, e.pages, e.releaseDate, e.author.id) FROM Book e ORDER BY e.id"),
+  @NamedQuery(name="Book.listAfter",
+              query="SELECT NEW pl.polsl.gabrys.arkadiusz.model.BookSummary(e.id, e.title, e.pages, e.releaseDate, e.author.id) FROM Book e WHERE e.id > :lastId ORDER BY e.id"),
+  @NamedQuery(name="Book.listByTitle",
+              query="SELECT NEW pl.polsl.gabrys.arkadiusz.model.BookSummary(e.id, e.title, e.pages, e.releaseDate, e.author.id) FROM Book e WHERE e.title = :title ORDER BY e.id"),
+  @NamedQuery(name="Book.listByIds",
+              query="SELECT NEW pl.polsl.gabrys.arkadiusz.model.BookSummary(e.id, e.title, e.pages, e.releaseDate, e.author.id) FROM Book e WHERE e.id IN :ids ORDER BY e.id"),
+  @NamedQuery(name="Book.totals",
+              query="SELECT COUNT(e), SUM(e.pages) FROM Book e"),
+  @NamedQuery(name="Book.reportByYear",
+              query="SELECT EXTRACT(YEAR FROM e.releaseDate), COUNT(e), SUM(e.pages) FROM Book e GROUP BY EXTRACT(YEAR FROM e.releaseDate) ORDER BY EXTRACT(YEAR FROM e.releaseDate)"),
+  @NamedQuery(name="Book.deleteByAuthors",
+              query="DELETE FROM Book e WHERE e.author.id IN :authorIds"),
+  @NamedQuery(name="Book.deleteReleasedBefore",
+              query="DELETE FROM Book e WHERE e.releaseDate < :date")
+})
+@Table(indexes = {
+  @Index(name="IX_BOOK_TITLE", columnList="TITLE"),
+  @Index(name="IX_BOOK_RELEASEDATE", columnList="RELEASEDATE"),
+  @Index(name="IX_BOOK_PAGES", columnList="PAGES")
 })
 public class Book implements Serializable {
     
     /**
-     * Book unique id
+     * Book unique id, allocated in blocks from the ID_SEQUENCE table
      */
     @Id
     @Column(nullable = false)
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @TableGenerator(name = "BOOK_ID", table = "ID_SEQUENCE",
+            pkColumnName = "SEQ_NAME", valueColumnName = "SEQ_COUNT",
+            pkColumnValue = "BOOK_ID", allocationSize = 1000)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "BOOK_ID")
     private Long id;
     
     /**
@@ -59,9 +100,12 @@ public class Book implements Serializable {
     
     /**
      * Author of the book
+     * Queries without join fetch read authors of all returned books with
+     * one IN query per 1000 books instead of one query per book.
      */
     @JoinColumn(nullable = false)
     @ManyToOne(cascade = CascadeType.PERSIST)
+    @BatchFetch(value = BatchFetchType.IN, size = 1000)
     private Author author;
 
     /**
@@ -0,0 +1,225 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Conditions of a book search run by DatabaseManager.findBooks and listBooks
+ * Every condition is optional and all set conditions must hold. Conditions
+ * compare plain columns with constants, so the database can use the title,
+ * pages, release date and author indexes instead of scanning all books.
+ * Setters return this filter, so conditions can be chained.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class BookFilter {
+
+    /**
+     * Book attributes by which results can be ordered
+     */
+    public enum Order {
+
+        /**
+         * Order by book id
+         */
+        ID("id"),
+
+        /**
+         * Order by book title
+         */
+        TITLE("title"),
+
+        /**
+         * Order by number of pages
+         */
+        PAGES("pages"),
+
+        /**
+         * Order by release date
+         */
+        RELEASE_DATE("releaseDate");
+
+        /**
+         * Name of the ordered Book attribute
+         */
+        private final String attribute;
+
+        /**
+         * Initializes constant with given parameter
+         * @param attribute the name of the ordered Book attribute
+         */
+        private Order(String attribute) {
+            this.attribute = attribute;
+        }
+
+        public String getAttribute() {
+            return attribute;
+        }
+    }
+
+    /**
+     * Lowest number of pages, inclusive, or null
+     */
+    private Long minPages;
+
+    /**
+     * Highest number of pages, inclusive, or null
+     */
+    private Long maxPages;
+
+    /**
+     * Earliest release date, inclusive, or null
+     */
+    private Date releasedFrom;
+
+    /**
+     * Release date before which books are released, exclusive, or null
+     */
+    private Date releasedBefore;
+
+    /**
+     * Ids of accepted authors, empty for all authors
+     */
+    private List<Long> authorIds = new ArrayList<>();
+
+    /**
+     * Start of accepted titles or null
+     */
+    private String titlePrefix;
+
+    /**
+     * Attribute ordering the results
+     */
+    private Order order = Order.ID;
+
+    /**
+     * True when results are ordered from the highest value
+     */
+    private boolean descending;
+
+    /**
+     * Maximum number of results, 0 for all
+     */
+    private int limit;
+
+    /**
+     * Accepts books with given range of pages
+     * @param min the lowest number of pages or null
+     * @param max the highest number of pages or null
+     * @return this filter
+     * @throws IllegalArgumentException if min is greater than max
+     */
+    public BookFilter pages(Long min, Long max) throws IllegalArgumentException {
+        if (min != null && max != null && min > max) {
+            throw new IllegalArgumentException("Lowest number of pages is greater than the highest");
+        }
+
+        this.minPages = min;
+        this.maxPages = max;
+        return this;
+    }
+
+    /**
+     * Accepts books released in given window
+     * @param from the earliest release date or null
+     * @param before the date before which books are released or null
+     * @return this filter
+     * @throws IllegalArgumentException if from is not before the end of the window
+     */
+    public BookFilter released(Date from, Date before) throws IllegalArgumentException {
+        if (from != null && before != null && !from.before(before)) {
+            throw new IllegalArgumentException("Release date window is empty");
+        }
+
+        this.releasedFrom = from == null ? null : new Date(from.getTime());
+        this.releasedBefore = before == null ? null : new Date(before.getTime());
+        return this;
+    }
+
+    /**
+     * Accepts books of given authors
+     * @param ids the author ids, empty for all authors
+     * @return this filter
+     */
+    public BookFilter authors(Collection<Long> ids) {
+        this.authorIds = new ArrayList<>(ids);
+        return this;
+    }
+
+    /**
+     * Accepts books whose title starts with given text
+     * Letter case is compared as by the database collation.
+     * @param prefix the title start or null
+     * @return this filter
+     */
+    public BookFilter titleStartsWith(String prefix) {
+        this.titlePrefix = prefix == null || prefix.isEmpty() ? null : prefix;
+        return this;
+    }
+
+    /**
+     * Orders results by given attribute, ties are ordered by id
+     * @param order the ordering attribute
+     * @param descending true to start with the highest value
+     * @return this filter
+     */
+    public BookFilter orderBy(Order order, boolean descending) {
+        this.order = order;
+        this.descending = descending;
+        return this;
+    }
+
+    /**
+     * Limits the number of results
+     * @param limit the maximum number of results, 0 for all
+     * @return this filter
+     * @throws IllegalArgumentException if the limit is negative
+     */
+    public BookFilter limit(int limit) throws IllegalArgumentException {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative");
+        }
+
+        this.limit = limit;
+        return this;
+    }
+
+    public Long getMinPages() {
+        return minPages;
+    }
+
+    public Long getMaxPages() {
+        return maxPages;
+    }
+
+    public Date getReleasedFrom() {
+        return releasedFrom == null ? null : new Date(releasedFrom.getTime());
+    }
+
+    public Date getReleasedBefore() {
+        return releasedBefore == null ? null : new Date(releasedBefore.getTime());
+    }
+
+    public List<Long> getAuthorIds() {
+        return Collections.unmodifiableList(authorIds);
+    }
+
+    public String getTitlePrefix() {
+        return titlePrefix;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,122 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * Read only projection of Book with the columns printed by listings
+ * Instances are created by constructor expressions of the Book.list* named
+ * queries, they are not entities and are not held by the persistence context.
+ * The author is represented by its id only, so the author row is not read.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public final class BookSummary {
+
+    /**
+     * Book id
+     */
+    private final Long id;
+
+    /**
+     * Book title
+     */
+    private final String title;
+
+    /**
+     * Number of pages in book
+     */
+    private final Long pages;
+
+    /**
+     * Book release date in milliseconds, Date is mutable
+     */
+    private final Long releaseDate;
+
+    /**
+     * Id of the book author
+     */
+    private final Long authorId;
+
+    /**
+     * Initializes instance with given parameters
+     * @param id the book id
+     * @param title the book title
+     * @param pages the number of pages
+     * @param releaseDate the book release date or null
+     * @param authorId the id of the book author
+     */
+    public BookSummary(Long id, String title, Long pages, Date releaseDate, Long authorId) {
+        this.id = id;
+        this.title = title;
+        this.pages = pages;
+        this.releaseDate = releaseDate == null ? null : releaseDate.getTime();
+        this.authorId = authorId;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public Long getPages() {
+        return pages;
+    }
+
+    /**
+     * Returns copy of the release date
+     * @return the release date or null if it is not known
+     */
+    public Date getReleaseDate() {
+        return releaseDate == null ? null : new Date(releaseDate);
+    }
+
+    public Long getAuthorId() {
+        return authorId;
+    }
+
+    /**
+     * Compares current object with the given one
+     * @param obj the object to compare
+     * @return comparison result
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof BookSummary))
+            return false;
+
+        if (obj == this)
+            return true;
+
+        BookSummary rhs = (BookSummary) obj;
+        return Objects.equals(id, rhs.id)
+                && Objects.equals(title, rhs.title)
+                && Objects.equals(pages, rhs.pages)
+                && Objects.equals(releaseDate, rhs.releaseDate)
+                && Objects.equals(authorId, rhs.authorId);
+    }
+
+    /**
+     * Formats this projection the same way as Book.toString()
+     * @return the string representing this projection
+     */
+    @Override
+    public String toString() {
+        return String.format("%d; %s; %d; %s; %d",
+                id, title, pages,
+                releaseDate != null ? new Date(releaseDate) : new Date(),
+                authorId != null ? authorId : 0);
+    }
+
+    /**
+     * Calculates hash code which represents current object
+     * @return the number which represents current object
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, title, pages, releaseDate, authorId);
+    }
+}
@@ -0,0 +1,89 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread safe counters of the shared entity cache
+ * Invalidations count only entries dropped by writes of the application,
+ * not entries the SoftWeak identity map drops on its own when it is full or
+ * after garbage collection, so they don't tell whether the cache is too small.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class CacheStatistics {
+
+    /**
+     * Lookups by id served from the shared cache
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * Lookups by id which had to read the database
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Cached entities and whole entity types dropped from the shared cache after writes
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Counts single lookup by id
+     * @param hit true if the entity was found in the shared cache
+     */
+    void recordLookup(boolean hit) {
+        if (hit) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+    }
+
+    /**
+     * Counts single invalidation
+     */
+    void recordInvalidation() {
+        invalidations.incrementAndGet();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    /**
+     * Calculates the part of lookups served from the shared cache
+     * @return the hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    /**
+     * Resets all counters to zero
+     */
+    public void reset() {
+        hits.set(0);
+        misses.set(0);
+        invalidations.set(0);
+    }
+
+    /**
+     * Formats counters in the form of string
+     * @return the string representing counters
+     */
+    @Override
+    public String toString() {
+        return String.format("cache hits: %d; misses: %d; invalidations: %d; hit rate: %.1f%%",
+                getHits(), getMisses(), getInvalidations(), getHitRate() * 100);
+    }
+}
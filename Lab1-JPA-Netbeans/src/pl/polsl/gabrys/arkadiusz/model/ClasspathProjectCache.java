@@ -0,0 +1,193 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.eclipse.persistence.descriptors.ClassDescriptor;
+import org.eclipse.persistence.jpa.metadata.ProjectCache;
+import org.eclipse.persistence.logging.SessionLog;
+import org.eclipse.persistence.sessions.Project;
+
+/**
+ * Metadata cache of the persistence unit packaged in the application jar.
+ * Selected by eclipselink.project-cache in persistence.xml. The build deploys
+ * the unit once and writes the processed mapping metadata to RESOURCE in the
+ * compiled classes, so it is found on the classpath whatever the working
+ * directory is. The resource starts with digests of the class files of all
+ * mapped classes; when any of them differs, for example after compiling
+ * without precompiling, the cache is ignored and annotations are processed.
+ * The cache is only written when OUTPUT_PROPERTY names a file, which is never
+ * set outside the build, so the application doesn't create any files.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class ClasspathProjectCache implements ProjectCache {
+
+    /**
+     * Classpath resource holding the metadata cache
+     */
+    public static final String RESOURCE = "META-INF/lab1-project.ser";
+
+    /**
+     * Name of the property holding the file the build writes the metadata cache to
+     */
+    public static final String OUTPUT_PROPERTY = "lab1.metadata.cache.output";
+
+    /**
+     * Algorithm of class file digests
+     */
+    private final String DIGEST_ALGORITHM = "SHA-256";
+
+    /**
+     * Object stream which resolves classes with given class loader
+     */
+    private static class LoaderObjectInputStream extends ObjectInputStream {
+
+        /**
+         * Class loader of the persistence unit
+         */
+        private final ClassLoader loader;
+
+        /**
+         * Initializes stream with given parameters
+         * @param in the underlying stream
+         * @param loader the class loader of the persistence unit
+         * @throws IOException if the stream header cannot be read
+         */
+        public LoaderObjectInputStream(InputStream in, ClassLoader loader) throws IOException {
+            super(in);
+            this.loader = loader;
+        }
+
+        /**
+         * Loads class of a serialized object with the class loader of the persistence unit
+         * @param description the class description
+         * @return the class
+         * @throws IOException if the stream cannot be read
+         * @throws ClassNotFoundException if the class cannot be found
+         */
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass description) throws IOException, ClassNotFoundException {
+            try {
+                return Class.forName(description.getName(), false, loader);
+            } catch (ClassNotFoundException ex) {
+                return super.resolveClass(description);
+            }
+        }
+    }
+
+    /**
+     * Reads the metadata cache from the classpath
+     * @param properties the persistence unit properties
+     * @param loader the class loader of the persistence unit
+     * @param log the session log
+     * @return the processed metadata or null if the cache is missing or doesn't match the classes
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Project retrieveProject(Map properties, ClassLoader loader, SessionLog log) {
+        InputStream resource = loader.getResourceAsStream(RESOURCE);
+
+        if (resource == null) {
+            return null;
+        }
+
+        try (ObjectInputStream in = new LoaderObjectInputStream(new BufferedInputStream(resource), loader)) {
+            Map<String, String> digests = (Map<String, String>) in.readObject();
+
+            for (Map.Entry<String, String> digest : digests.entrySet()) {
+                if (!digest.getValue().equals(digest(loader, digest.getKey()))) {
+                    log.log(SessionLog.WARNING, "Metadata cache " + RESOURCE + " doesn't match class "
+                            + digest.getKey() + ", mapping annotations are processed");
+                    return null;
+                }
+            }
+
+            return (Project) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException ex) {
+            log.log(SessionLog.WARNING, "Cannot read metadata cache " + RESOURCE + ": " + ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the metadata cache to the file named by OUTPUT_PROPERTY, does nothing without it
+     * @param project the processed metadata
+     * @param properties the persistence unit properties
+     * @param log the session log
+     */
+    @Override
+    public void storeProject(Project project, Map properties, SessionLog log) {
+        Object output = properties.get(OUTPUT_PROPERTY);
+
+        if (output == null) {
+            return;
+        }
+
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        Map<String, String> digests = new LinkedHashMap<>();
+
+        try {
+            for (ClassDescriptor descriptor : project.getOrderedDescriptors()) {
+                String digest = digest(loader, descriptor.getJavaClassName());
+
+                if (digest == null) {
+                    throw new IOException("class file of " + descriptor.getJavaClassName() + " not found");
+                }
+
+                digests.put(descriptor.getJavaClassName(), digest);
+            }
+
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(output.toString())))) {
+                out.writeObject(digests);
+                out.writeObject(project);
+            }
+        } catch (IOException ex) {
+            log.log(SessionLog.WARNING, "Cannot write metadata cache " + output + ": " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Computes digest of the class file of given class
+     * @param loader the class loader which finds the class file
+     * @param className the class name
+     * @return the hexadecimal digest or null if the class file is not found
+     * @throws IOException if the class file cannot be read
+     */
+    private String digest(ClassLoader loader, String className) throws IOException {
+        InputStream classFile = loader.getResourceAsStream(className.replace('.', '/') + ".class");
+
+        if (classFile == null) {
+            return null;
+        }
+
+        try (InputStream in = classFile) {
+            MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            byte[] buffer = new byte[8192];
+            int read;
+
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+
+            StringBuilder hex = new StringBuilder();
+
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+
+            return hex.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+    }
+}
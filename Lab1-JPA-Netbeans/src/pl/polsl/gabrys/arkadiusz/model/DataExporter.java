@@ -0,0 +1,114 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import javax.persistence.PersistenceException;
+
+/**
+ * Writes whole tables row by row using database cursors.
+ * Memory use stays constant regardless of the number of exported rows.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class DataExporter {
+
+    /**
+     * Author fields in the order of exported columns
+     */
+    private final String[] AUTHOR_FIELDS = {"id", "name", "lastName"};
+
+    /**
+     * Book fields in the order of exported columns
+     */
+    private final String[] BOOK_FIELDS = {"id", "title", "pages", "releaseDate", "authorId"};
+
+    /**
+     * Database manager used for reads
+     */
+    private final DatabaseManager databaseManager;
+
+    /**
+     * Release date formatter, same format as accepted by the importer
+     */
+    private final DateFormat dateFormat;
+
+    /**
+     * Initializes instance with given parameter
+     * @param databaseManager the database manager used for reads
+     */
+    public DataExporter(DatabaseManager databaseManager) {
+        this.databaseManager = databaseManager;
+        this.dateFormat = new SimpleDateFormat("yyyy.MM.dd");
+    }
+
+    /**
+     * Writes all authors, one row per line
+     * @param out the output, should be buffered
+     * @param format the format of rows
+     * @return the number of exported rows
+     * @throws IOException if writing fails
+     * @throws PersistenceException if reading fails
+     */
+    public long exportAuthors(Writer out, DataFormat format) throws IOException, PersistenceException {
+        long rows = 0;
+        Object[] values = new Object[AUTHOR_FIELDS.length];
+
+        try (EntityCursor<Author> cursor = databaseManager.streamAllAuthors()) {
+            while (cursor.hasNext()) {
+                Author author = cursor.next();
+                values[0] = author.getId();
+                values[1] = author.getName();
+                values[2] = author.getLastName();
+                writeRow(out, format, AUTHOR_FIELDS, values);
+                rows++;
+            }
+        }
+
+        out.flush();
+        return rows;
+    }
+
+    /**
+     * Writes all books, one row per line
+     * @param out the output, should be buffered
+     * @param format the format of rows
+     * @return the number of exported rows
+     * @throws IOException if writing fails
+     * @throws PersistenceException if reading fails
+     */
+    public long exportBooks(Writer out, DataFormat format) throws IOException, PersistenceException {
+        long rows = 0;
+        Object[] values = new Object[BOOK_FIELDS.length];
+
+        try (EntityCursor<Book> cursor = databaseManager.streamAllBooks()) {
+            while (cursor.hasNext()) {
+                Book book = cursor.next();
+                values[0] = book.getId();
+                values[1] = book.getTitle();
+                values[2] = book.getPages();
+                values[3] = dateFormat.format(book.getReleaseDate());
+                values[4] = book.getAuthor() != null ? book.getAuthor().getId() : null;
+                writeRow(out, format, BOOK_FIELDS, values);
+                rows++;
+            }
+        }
+
+        out.flush();
+        return rows;
+    }
+
+    /**
+     * Writes single row followed by a line separator
+     * @param out the output
+     * @param format the format of rows
+     * @param fields the field names
+     * @param values the field values
+     * @throws IOException if writing fails
+     */
+    private void writeRow(Writer out, DataFormat format, String[] fields, Object[] values) throws IOException {
+        format.write(out, fields, values);
+        out.write('\n');
+    }
+}
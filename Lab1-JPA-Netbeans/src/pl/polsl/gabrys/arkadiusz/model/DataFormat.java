@@ -0,0 +1,478 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Line based data formats used by bulk import and export
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public enum DataFormat {
+
+    /**
+     * Comma separated values, one row per line, fields in declared order,
+     * quoted fields may contain line breaks and then continue on the next lines
+     */
+    CSV,
+
+    /**
+     * JSON lines, one flat JSON object per line
+     */
+    JSONL;
+
+    /**
+     * Picks data format based on the file extension
+     * @param fileName the file name
+     * @return JSONL for .json and .jsonl files, CSV otherwise
+     */
+    public static DataFormat fromFileName(String fileName) {
+        String lower = fileName.toLowerCase();
+
+        if (lower.endsWith(".jsonl") || lower.endsWith(".json")) {
+            return JSONL;
+        }
+
+        return CSV;
+    }
+
+    /**
+     * Reads single row, a CSV row continues on the next lines while a quoted field is open
+     * @param lines the source of lines
+     * @return the row, line breaks inside quoted fields are read as line feeds, or null at the end of input
+     * @throws IOException if reading fails
+     */
+    public String readRow(BufferedReader lines) throws IOException {
+        String line = lines.readLine();
+
+        if (line == null || this == JSONL || !hasOddQuotes(line)) {
+            return line;
+        }
+
+        StringBuilder row = new StringBuilder(line);
+        boolean quoted = true;
+
+        // an unterminated field at the end of input is reported by parse()
+        while (quoted && (line = lines.readLine()) != null) {
+            row.append('\n').append(line);
+            quoted = quoted != hasOddQuotes(line);
+        }
+
+        return row.toString();
+    }
+
+    /**
+     * Splits single line into field values
+     * @param line the line to parse
+     * @param fieldNames the expected field names in the order of the result
+     * @return the values in the order of given field names
+     * @throws IllegalArgumentException if the line is malformed or a field is missing
+     */
+    public String[] parse(String line, String[] fieldNames) throws IllegalArgumentException {
+        switch (this) {
+            case JSONL:
+                return parseJson(line, fieldNames);
+            default:
+                return parseCsv(line, fieldNames);
+        }
+    }
+
+    /**
+     * Appends single row in this format, without line separator
+     * @param out the output
+     * @param fieldNames the field names, used as JSON keys
+     * @param values the field values, numbers are written without quotes
+     * @throws IOException if writing fails
+     */
+    public void write(Appendable out, String[] fieldNames, Object[] values) throws IOException {
+        if (this == JSONL) {
+            out.append('{');
+
+            for (int i = 0; i < fieldNames.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+
+                writeJsonString(out, fieldNames[i]);
+                out.append(':');
+
+                if (values[i] == null) {
+                    out.append("null");
+                } else if (values[i] instanceof Number) {
+                    out.append(values[i].toString());
+                } else {
+                    writeJsonString(out, values[i].toString());
+                }
+            }
+
+            out.append('}');
+        } else {
+            for (int i = 0; i < fieldNames.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+
+                writeCsvField(out, values[i] == null ? "" : values[i].toString());
+            }
+        }
+    }
+
+    /**
+     * Appends single text field escaped for this format
+     * @param out the output
+     * @param value the field value, quoted in JSONL and in CSV when it contains special characters
+     * @throws IOException if writing fails
+     */
+    public void writeText(Appendable out, String value) throws IOException {
+        if (this == JSONL) {
+            writeJsonString(out, value);
+        } else {
+            writeCsvField(out, value);
+        }
+    }
+
+    /**
+     * Appends CSV field, quoted when it contains special characters
+     * @param out the output
+     * @param value the field value
+     * @throws IOException if writing fails
+     */
+    private void writeCsvField(Appendable out, String value) throws IOException {
+        boolean quote = false;
+
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if (!quote) {
+            out.append(value);
+            return;
+        }
+
+        out.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c == '"') {
+                out.append('"');
+            }
+
+            out.append(c);
+        }
+
+        out.append('"');
+    }
+
+    /**
+     * Appends quoted and escaped JSON string
+     * @param out the output
+     * @param value the string value
+     * @throws IOException if writing fails
+     */
+    private void writeJsonString(Appendable out, String value) throws IOException {
+        out.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+
+        out.append('"');
+    }
+
+    /**
+     * Checks whether given text opens or closes a quoted CSV field, escaped quotes come in pairs
+     * @param text the checked text
+     * @return true if the number of double quotes is odd
+     */
+    private boolean hasOddQuotes(String text) {
+        boolean odd = false;
+
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '"') {
+                odd = !odd;
+            }
+        }
+
+        return odd;
+    }
+
+    /**
+     * Splits CSV line, double quotes may enclose fields with commas ("" is an escaped quote)
+     * Whitespace around fields is trimmed, quoted text is kept as it is.
+     * @param line the line to parse
+     * @param fieldNames the expected field names
+     * @return the field values
+     * @throws IllegalArgumentException if the number of fields is wrong
+     */
+    private String[] parseCsv(String line, String[] fieldNames) throws IllegalArgumentException {
+        List<String> values = new ArrayList<>(fieldNames.length);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int quotedFrom = -1;
+        int quotedTo = -1;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                        quotedTo = field.length();
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+
+                if (quotedFrom < 0) {
+                    quotedFrom = field.length();
+                }
+            } else if (c == ',') {
+                values.add(trimField(field, quotedFrom, quotedTo));
+                field.setLength(0);
+                quotedFrom = -1;
+                quotedTo = -1;
+            } else {
+                field.append(c);
+            }
+        }
+
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+
+        values.add(trimField(field, quotedFrom, quotedTo));
+
+        if (values.size() != fieldNames.length) {
+            throw new IllegalArgumentException("Expected " + fieldNames.length
+                    + " fields but found " + values.size());
+        }
+
+        return values.toArray(new String[fieldNames.length]);
+    }
+
+    /**
+     * Trims whitespace outside of the quoted part of CSV field
+     * @param field the field text without quotes
+     * @param quotedFrom the start of the quoted part or -1 if the field is not quoted
+     * @param quotedTo the end of the quoted part
+     * @return the field value
+     */
+    private String trimField(StringBuilder field, int quotedFrom, int quotedTo) {
+        if (quotedFrom < 0) {
+            return field.toString().trim();
+        }
+
+        return field.substring(0, quotedFrom).trim()
+                + field.substring(quotedFrom, quotedTo)
+                + field.substring(quotedTo).trim();
+    }
+
+    /**
+     * Parses flat JSON object with string, number or null values
+     * @param line the line to parse
+     * @param fieldNames the expected field names
+     * @return the field values
+     * @throws IllegalArgumentException if the object is malformed or a field is missing
+     */
+    private String[] parseJson(String line, String[] fieldNames) throws IllegalArgumentException {
+        String[] values = new String[fieldNames.length];
+        int[] position = {skipWhitespace(line, 0)};
+
+        expect(line, position, '{');
+        position[0] = skipWhitespace(line, position[0]);
+
+        if (position[0] < line.length() && line.charAt(position[0]) == '}') {
+            position[0]++;
+        } else {
+            while (true) {
+                String key = readJsonString(line, position);
+                expect(line, position, ':');
+                String value = readJsonValue(line, position);
+
+                for (int i = 0; i < fieldNames.length; i++) {
+                    if (fieldNames[i].equals(key)) {
+                        values[i] = value;
+                    }
+                }
+
+                position[0] = skipWhitespace(line, position[0]);
+
+                if (position[0] < line.length() && line.charAt(position[0]) == ',') {
+                    position[0]++;
+                } else {
+                    expect(line, position, '}');
+                    break;
+                }
+            }
+        }
+
+        for (int i = 0; i < fieldNames.length; i++) {
+            if (values[i] == null) {
+                throw new IllegalArgumentException("Missing field: " + fieldNames[i]);
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Reads JSON string or scalar value at given position
+     * @param line the parsed line
+     * @param position the one element array holding current position
+     * @return the value as text or null for JSON null
+     * @throws IllegalArgumentException if the value is malformed
+     */
+    private String readJsonValue(String line, int[] position) throws IllegalArgumentException {
+        position[0] = skipWhitespace(line, position[0]);
+
+        if (position[0] < line.length() && line.charAt(position[0]) == '"') {
+            return readJsonString(line, position);
+        }
+
+        int start = position[0];
+
+        while (position[0] < line.length()
+                && ",} \t".indexOf(line.charAt(position[0])) < 0) {
+            position[0]++;
+        }
+
+        String value = line.substring(start, position[0]);
+
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("Missing value at position " + start);
+        }
+
+        return value.equals("null") ? null : value;
+    }
+
+    /**
+     * Reads quoted JSON string at given position
+     * @param line the parsed line
+     * @param position the one element array holding current position
+     * @return the unescaped string
+     * @throws IllegalArgumentException if the string is malformed
+     */
+    private String readJsonString(String line, int[] position) throws IllegalArgumentException {
+        expect(line, position, '"');
+        StringBuilder value = new StringBuilder();
+
+        while (position[0] < line.length()) {
+            char c = line.charAt(position[0]++);
+
+            if (c == '"') {
+                return value.toString();
+            }
+
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+
+            if (position[0] >= line.length()) {
+                break;
+            }
+
+            char escaped = line.charAt(position[0]++);
+
+            switch (escaped) {
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'u':
+                    if (position[0] + 4 > line.length()) {
+                        throw new IllegalArgumentException("Malformed unicode escape");
+                    }
+
+                    try {
+                        value.append((char) Integer.parseInt(line.substring(position[0], position[0] + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw new IllegalArgumentException("Malformed unicode escape");
+                    }
+
+                    position[0] += 4;
+                    break;
+                default:
+                    value.append(escaped);
+            }
+        }
+
+        throw new IllegalArgumentException("Unterminated string");
+    }
+
+    /**
+     * Checks that given character is the next non whitespace character
+     * @param line the parsed line
+     * @param position the one element array holding current position
+     * @param expected the expected character
+     * @throws IllegalArgumentException if other character is found
+     */
+    private void expect(String line, int[] position, char expected) throws IllegalArgumentException {
+        position[0] = skipWhitespace(line, position[0]);
+
+        if (position[0] >= line.length() || line.charAt(position[0]) != expected) {
+            throw new IllegalArgumentException("Expected '" + expected + "' at position " + position[0]);
+        }
+
+        position[0]++;
+    }
+
+    /**
+     * Skips whitespace characters
+     * @param line the parsed line
+     * @param position the start position
+     * @return the position of the first non whitespace character
+     */
+    private int skipWhitespace(String line, int position) {
+        while (position < line.length() && Character.isWhitespace(line.charAt(position))) {
+            position++;
+        }
+
+        return position;
+    }
+}
@@ -0,0 +1,281 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import javax.persistence.PersistenceException;
+
+/**
+ * Streams rows from a reader into the database in fixed size batches.
+ * Every batch is committed in its own transaction and the persistence
+ * context is cleared afterwards, so memory use does not depend on the
+ * number of imported rows. An import is not atomic: when a row fails, only
+ * the current batch is rolled back, earlier batches stay committed and the
+ * reported error tells how many rows were committed and from which line the
+ * file should be imported again.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class DataImporter {
+
+    /**
+     * Default number of rows committed in one transaction
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * Author fields in the order expected in CSV files
+     */
+    private final String[] AUTHOR_FIELDS = {"name", "lastName"};
+
+    /**
+     * Book fields in the order expected in CSV files
+     */
+    private final String[] BOOK_FIELDS = {"title", "pages", "releaseDate", "authorId"};
+
+    /**
+     * Database manager used for writes
+     */
+    private final DatabaseManager databaseManager;
+
+    /**
+     * Number of rows committed in one transaction
+     */
+    private final int batchSize;
+
+    /**
+     * Ids of authors already verified to exist during this import
+     */
+    private final Set<Long> knownAuthorIds;
+
+    /**
+     * Release date parser
+     */
+    private final DateFormat dateFormat;
+
+    /**
+     * Initializes importer with default batch size
+     * @param databaseManager the database manager used for writes
+     */
+    public DataImporter(DatabaseManager databaseManager) {
+        this(databaseManager, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Initializes importer with given parameters
+     * @param databaseManager the database manager used for writes
+     * @param batchSize the number of rows committed in one transaction
+     * @throws IllegalArgumentException if the batch size is not positive
+     */
+    public DataImporter(DatabaseManager databaseManager, int batchSize) throws IllegalArgumentException {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be a positive number");
+        }
+
+        this.databaseManager = databaseManager;
+        this.batchSize = batchSize;
+        this.knownAuthorIds = new HashSet<>();
+        this.dateFormat = new SimpleDateFormat("yyyy.MM.dd");
+        this.dateFormat.setLenient(false);
+    }
+
+    /**
+     * Imports authors, one row per line
+     * @param reader the source of rows
+     * @param format the format of rows
+     * @return the import summary
+     * @throws IOException if reading fails
+     * @throws IllegalArgumentException if a row is malformed, only the current batch is rolled back
+     * @throws PersistenceException if writing fails, only the current batch is rolled back
+     */
+    public ImportResult importAuthors(Reader reader, DataFormat format) throws IOException, IllegalArgumentException, PersistenceException {
+        return importRows(reader, format, AUTHOR_FIELDS, true);
+    }
+
+    /**
+     * Imports books, one row per line
+     * @param reader the source of rows
+     * @param format the format of rows
+     * @return the import summary
+     * @throws IOException if reading fails
+     * @throws IllegalArgumentException if a row is malformed or references missing author, only the current batch is rolled back
+     * @throws PersistenceException if writing fails, only the current batch is rolled back
+     */
+    public ImportResult importBooks(Reader reader, DataFormat format) throws IOException, IllegalArgumentException, PersistenceException {
+        return importRows(reader, format, BOOK_FIELDS, false);
+    }
+
+    /**
+     * Reads rows lazily and persists them in batches
+     * @param reader the source of rows
+     * @param format the format of rows
+     * @param fields the expected field names
+     * @param authors true when importing authors, false for books
+     * @return the import summary
+     * @throws IOException if reading fails, the message tells the committed rows and the line to resume from
+     * @throws IllegalArgumentException if a row is malformed, the message tells the committed rows and the line to resume from
+     * @throws PersistenceException if writing fails, the message tells the committed rows and the line to resume from
+     */
+    private ImportResult importRows(Reader reader, DataFormat format, String[] fields, boolean authors) throws IOException, IllegalArgumentException, PersistenceException {
+        BufferedReader lines = reader instanceof BufferedReader
+                ? (BufferedReader) reader
+                : new BufferedReader(reader);
+
+        long start = System.nanoTime();
+        long rows = 0;
+        long lineNumber = 0;
+        long committedRows = 0;
+        long resumeLine = 1;
+        int pending = 0;
+        String line;
+
+        try {
+            while ((line = format.readRow(lines)) != null) {
+                long firstLine = lineNumber + 1;
+                lineNumber += 1 + countLineBreaks(line);
+
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                if (pending == 0) {
+                    databaseManager.startTransaction();
+                }
+
+                try {
+                    String[] values = format.parse(line, fields);
+
+                    if (authors) {
+                        databaseManager.persistAuthor(values[0], values[1]);
+                    } else {
+                        persistBook(values);
+                    }
+                } catch (IllegalArgumentException ex) {
+                    throw new IllegalArgumentException("Line " + firstLine + ": " + ex.getMessage(), ex);
+                }
+
+                rows++;
+
+                if (++pending == batchSize) {
+                    commitBatch();
+                    pending = 0;
+                    committedRows = rows;
+                    resumeLine = lineNumber + 1;
+                }
+            }
+
+            if (pending > 0) {
+                commitBatch();
+            }
+        } catch (IOException ex) {
+            abortBatch();
+            throw new IOException(ex.getMessage() + progress(committedRows, resumeLine), ex);
+        } catch (IllegalArgumentException ex) {
+            abortBatch();
+            throw new IllegalArgumentException(ex.getMessage() + progress(committedRows, resumeLine), ex);
+        } catch (PersistenceException ex) {
+            abortBatch();
+            throw new PersistenceException(ex.getMessage() + progress(committedRows, resumeLine), ex);
+        } catch (RuntimeException ex) {
+            abortBatch();
+            throw ex;
+        }
+
+        return new ImportResult(rows, System.nanoTime() - start);
+    }
+
+    /**
+     * Persists single book row using the author cache
+     * @param values the title, pages, release date and author id
+     * @throws IllegalArgumentException if a value is malformed or the author doesn't exists
+     */
+    private void persistBook(String[] values) throws IllegalArgumentException {
+        Long pages;
+        Date releaseDate;
+        Long authorId;
+
+        try {
+            pages = Long.parseLong(values[1]);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Wrong number of pages: " + values[1]);
+        }
+
+        try {
+            releaseDate = dateFormat.parse(values[2]);
+        } catch (ParseException ex) {
+            throw new IllegalArgumentException("Wrong date format: " + values[2]);
+        }
+
+        try {
+            authorId = Long.parseLong(values[3]);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Wrong author id: " + values[3]);
+        }
+
+        // verify each author once, afterwards only a reference is needed
+        if (!knownAuthorIds.contains(authorId)) {
+            if (databaseManager.findAuthorById(authorId) == null) {
+                throw new IllegalArgumentException("Author with id: " + authorId + " doesn't exists");
+            }
+
+            knownAuthorIds.add(authorId);
+        }
+
+        databaseManager.persistBook(values[0], pages, releaseDate,
+                databaseManager.getAuthorReference(authorId));
+    }
+
+    /**
+     * Commits current batch and detaches persisted entities
+     * @throws PersistenceException if flushing or commit fails
+     */
+    private void commitBatch() throws PersistenceException {
+        databaseManager.commitTransaction();
+        databaseManager.clear();
+    }
+
+    /**
+     * Counts line breaks of quoted fields in given row
+     * @param row the row read by the data format
+     * @return the number of lines the row spans minus one
+     */
+    private int countLineBreaks(String row) {
+        int count = 0;
+
+        for (int i = 0; i < row.length(); i++) {
+            if (row.charAt(i) == '\n') {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Rolls back current batch and detaches its entities
+     */
+    private void abortBatch() {
+        if (databaseManager.isTransactionActive()) {
+            databaseManager.rollbackTransaction();
+        }
+
+        databaseManager.clear();
+    }
+
+    /**
+     * Describes progress of failed import
+     * @param committedRows the number of rows committed by earlier batches
+     * @param resumeLine the first line of the first batch which was not committed
+     * @return the description appended to the error message
+     */
+    private String progress(long committedRows, long resumeLine) {
+        return "\n" + committedRows + " rows were committed before the failure,"
+                + " import the file from line " + resumeLine + " to resume";
+    }
+}
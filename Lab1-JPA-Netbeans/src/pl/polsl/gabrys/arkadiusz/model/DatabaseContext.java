@@ -0,0 +1,412 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.PersistenceException;
+import org.eclipse.persistence.sessions.Session;
+import org.eclipse.persistence.sessions.SessionProfiler;
+
+/**
+ * Holds entity manager factory of one persistence unit shared by many database managers.
+ * Creating the factory is expensive (metadata processing, connection pool),
+ * while database managers created from the same context only open a new entity manager.
+ * The context and its caches are thread safe and shared by all threads.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class DatabaseContext {
+
+    /**
+     * Persistance unit name used by the default context
+     */
+    public static final String PERSISTANCE_UNIT_NAME = "Lab1-JPA";
+
+    /**
+     * Persistence unit property with the maximum number of cached query results
+     */
+    public static final String QUERY_CACHE_ENTRIES_PROPERTY = "lab1.query-cache.entries";
+
+    /**
+     * Persistence unit property with the maximum memory of cached query results in bytes
+     */
+    public static final String QUERY_CACHE_BYTES_PROPERTY = "lab1.query-cache.bytes";
+
+    /**
+     * Persistence unit property which enables schema migrations at startup
+     */
+    public static final String SCHEMA_MIGRATE_PROPERTY = "lab1.schema.migrate";
+
+    /**
+     * Persistence unit property with the name of the read replica persistence unit
+     */
+    public static final String REPLICA_UNIT_PROPERTY = "lab1.replica.unit";
+
+    /**
+     * Persistence unit property with the time in milliseconds after a write during which reads go to the primary
+     */
+    public static final String REPLICA_MAX_LAG_PROPERTY = "lab1.replica.max-lag";
+
+    /**
+     * Persistence unit property which enables the AUTHOR_TOTALS summary used by author reports
+     */
+    public static final String REPORT_SUMMARY_PROPERTY = "lab1.report.summary";
+
+    /**
+     * Default context, created on first use
+     */
+    private static DatabaseContext defaultContext;
+
+    /**
+     * Entity manager factory instance
+     */
+    private final EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Entity manager factory of the read replica or null if there is none
+     */
+    private final EntityManagerFactory replicaEntityManagerFactory;
+
+    /**
+     * Time after a write during which the replica may not have it yet, in nanoseconds
+     */
+    private final long replicaMaxLag;
+
+    /**
+     * Value of System.nanoTime() until which reads go to the primary
+     */
+    private volatile long primaryReadsUntil;
+
+    /**
+     * True if the AUTHOR_TOTALS summary is maintained and read by reports
+     */
+    private final boolean reportSummaryEnabled;
+
+    /**
+     * Counters of the shared entity cache
+     */
+    private final CacheStatistics cacheStatistics;
+
+    /**
+     * Cache of named query results
+     */
+    private final QueryResultCache queryResultCache;
+
+    /**
+     * Timings and counters of database operations
+     */
+    private final DatabaseStatistics statistics;
+
+    /**
+     * Trigram index of book titles
+     */
+    private final TextIndex bookTitleIndex;
+
+    /**
+     * Trigram index of author names and last names
+     */
+    private final TextIndex authorNameIndex;
+
+    /**
+     * Creates entity manager factory for given persistence unit
+     * The recorded DatabaseStatistics.BOOTSTRAP time includes deployment of the
+     * unit, its metadata processing and weaving.
+     * @param persistenceUnitName the persistence unit name
+     * @throws PersistenceException if the persistence unit cannot be deployed
+     */
+    public DatabaseContext(String persistenceUnitName) throws PersistenceException {
+        // arguments are evaluated in order, so the start time precedes the deployment
+        this(System.nanoTime(), Persistence.createEntityManagerFactory(persistenceUnitName));
+    }
+
+    /**
+     * Wraps already created entity manager factory
+     * The read replica unit named in REPLICA_UNIT_PROPERTY is deployed as well.
+     * Pending schema migrations are applied unless disabled with SCHEMA_MIGRATE_PROPERTY.
+     * @param entityManagerFactory the entity manager factory
+     * @throws PersistenceException if the replica cannot be deployed or schema migration fails
+     */
+    public DatabaseContext(EntityManagerFactory entityManagerFactory) throws PersistenceException {
+        this(System.nanoTime(), entityManagerFactory);
+    }
+
+    /**
+     * Wraps entity manager factory created after given start time and deploys its replica
+     * @param start the System.nanoTime() of the start of the startup
+     * @param entityManagerFactory the entity manager factory
+     * @throws PersistenceException if the replica cannot be deployed or schema migration fails
+     */
+    private DatabaseContext(long start, EntityManagerFactory entityManagerFactory) throws PersistenceException {
+        this(start, entityManagerFactory, createReplica(entityManagerFactory));
+    }
+
+    /**
+     * Wraps already created entity manager factories of the primary database and its read replica
+     * Reads outside transactions go to the replica, except for REPLICA_MAX_LAG_PROPERTY
+     * milliseconds (1000 by default) after a write committed through this context.
+     * Migrations are applied to the primary only, the replica receives them by replication.
+     * The time of the whole startup is recorded as DatabaseStatistics.BOOTSTRAP.
+     * @param entityManagerFactory the entity manager factory of the primary database
+     * @param replicaEntityManagerFactory the entity manager factory of the replica or null if there is none
+     * @throws PersistenceException if schema migration fails
+     */
+    public DatabaseContext(EntityManagerFactory entityManagerFactory, EntityManagerFactory replicaEntityManagerFactory) throws PersistenceException {
+        this(System.nanoTime(), entityManagerFactory, replicaEntityManagerFactory);
+    }
+
+    /**
+     * Wraps entity manager factories created after given start time
+     * The time from the start to the end of migrations is recorded as DatabaseStatistics.BOOTSTRAP.
+     * @param start the System.nanoTime() of the start of the startup
+     * @param entityManagerFactory the entity manager factory of the primary database
+     * @param replicaEntityManagerFactory the entity manager factory of the replica or null if there is none
+     * @throws PersistenceException if schema migration fails
+     */
+    private DatabaseContext(long start, EntityManagerFactory entityManagerFactory, EntityManagerFactory replicaEntityManagerFactory) throws PersistenceException {
+        this.entityManagerFactory = entityManagerFactory;
+        this.replicaEntityManagerFactory = replicaEntityManagerFactory;
+        this.replicaMaxLag = getLongProperty(REPLICA_MAX_LAG_PROPERTY, 1000L) * 1000000L;
+        this.primaryReadsUntil = System.nanoTime();
+        Object reportSummary = entityManagerFactory.getProperties().get(REPORT_SUMMARY_PROPERTY);
+        this.reportSummaryEnabled = reportSummary != null && Boolean.parseBoolean(reportSummary.toString().trim());
+        this.cacheStatistics = new CacheStatistics();
+        this.bookTitleIndex = new TextIndex();
+        this.authorNameIndex = new TextIndex();
+        this.queryResultCache = new QueryResultCache(
+                (int) getLongProperty(QUERY_CACHE_ENTRIES_PROPERTY, 1000L),
+                getLongProperty(QUERY_CACHE_BYTES_PROPERTY, 16L << 20));
+        Object statisticsEnabled = entityManagerFactory.getProperties().get(DatabaseStatistics.ENABLED_PROPERTY);
+        this.statistics = new DatabaseStatistics(cacheStatistics, queryResultCache,
+                statisticsEnabled != null && Boolean.parseBoolean(statisticsEnabled.toString().trim()));
+
+        Object migrate = entityManagerFactory.getProperties().get(SCHEMA_MIGRATE_PROPERTY);
+
+        if (migrate == null || Boolean.parseBoolean(migrate.toString().trim())) {
+            new SchemaMigrator(this).migrate();
+        }
+
+        statistics.record(DatabaseStatistics.BOOTSTRAP, start, 0L);
+        statistics.register();
+    }
+
+    /**
+     * Returns context of the persistence unit saved in const PERSISTANCE_UNIT_NAME
+     * The context is created on the first call and shared afterwards.
+     * @return the default context
+     * @throws PersistenceException if the persistence unit cannot be deployed
+     */
+    public static synchronized DatabaseContext getDefault() throws PersistenceException {
+        if (defaultContext == null || !defaultContext.isOpen()) {
+            defaultContext = new DatabaseContext(PERSISTANCE_UNIT_NAME);
+        }
+
+        return defaultContext;
+    }
+
+    public EntityManagerFactory getEntityManagerFactory() {
+        return entityManagerFactory;
+    }
+
+    public EntityManagerFactory getReplicaEntityManagerFactory() {
+        return replicaEntityManagerFactory;
+    }
+
+    public CacheStatistics getCacheStatistics() {
+        return cacheStatistics;
+    }
+
+    public QueryResultCache getQueryResultCache() {
+        return queryResultCache;
+    }
+
+    public DatabaseStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns SQL profiler installed in the session of the primary database
+     * @return the profiler or null if SqlLogCustomizer did not install it
+     */
+    public SqlProfiler getSqlProfiler() {
+        SessionProfiler profiler = entityManagerFactory.unwrap(Session.class).getProfiler();
+        return profiler instanceof SqlProfiler ? (SqlProfiler) profiler : null;
+    }
+
+    public TextIndex getBookTitleIndex() {
+        return bookTitleIndex;
+    }
+
+    public TextIndex getAuthorNameIndex() {
+        return authorNameIndex;
+    }
+
+    /**
+     * Deploys the read replica unit named in the properties of the primary unit
+     * @param entityManagerFactory the entity manager factory of the primary database
+     * @return the entity manager factory of the replica or null if it is not configured
+     * @throws PersistenceException if the replica unit cannot be deployed
+     */
+    private static EntityManagerFactory createReplica(EntityManagerFactory entityManagerFactory) throws PersistenceException {
+        Object unit = entityManagerFactory.getProperties().get(REPLICA_UNIT_PROPERTY);
+
+        if (unit == null || unit.toString().trim().isEmpty()) {
+            return null;
+        }
+
+        return Persistence.createEntityManagerFactory(unit.toString().trim());
+    }
+
+    /**
+     * Reads numeric persistence unit property
+     * @param name the property name
+     * @param defaultValue the value used when the property is not set
+     * @return the property value
+     * @throws NumberFormatException if the property is not a number
+     */
+    long getLongProperty(String name, long defaultValue) throws NumberFormatException {
+        Object value = entityManagerFactory.getProperties().get(name);
+        return value == null ? defaultValue : Long.parseLong(value.toString().trim());
+    }
+
+    /**
+     * Checks whether entity is held by the shared cache of given reader and counts the lookup
+     * @param reader the entity manager doing the lookup
+     * @param objectClass the entity class
+     * @param id the entity id
+     */
+    void recordLookup(EntityManager reader, Class<?> objectClass, Object id) {
+        cacheStatistics.recordLookup(reader.getEntityManagerFactory().getCache().contains(objectClass, id));
+    }
+
+    /**
+     * Starts the period during which reads go to the primary, called after commit of a write
+     */
+    void recordWrite() {
+        primaryReadsUntil = System.nanoTime() + replicaMaxLag;
+    }
+
+    /**
+     * Checks whether reads outside transactions may go to the replica
+     * @return true if there is a replica and no recent write
+     */
+    boolean isReplicaReadable() {
+        return replicaEntityManagerFactory != null && System.nanoTime() - primaryReadsUntil >= 0;
+    }
+
+    /**
+     * Checks whether the AUTHOR_TOTALS summary is maintained on writes and read by author reports
+     * @return true if REPORT_SUMMARY_PROPERTY is set to true
+     */
+    boolean isReportSummaryEnabled() {
+        return reportSummaryEnabled;
+    }
+
+    /**
+     * Creates new entity manager of the replica, the caller is responsible for closing it
+     * @return the new entity manager
+     * @throws IllegalStateException if there is no replica or the context has been closed
+     */
+    EntityManager createReplicaEntityManager() throws IllegalStateException {
+        if (replicaEntityManagerFactory == null) {
+            throw new IllegalStateException("No read replica configured");
+        }
+
+        return replicaEntityManagerFactory.createEntityManager();
+    }
+
+    /**
+     * Removes entity from the shared cache, next lookup reads the database
+     * The invalidation is counted only when the entity was cached.
+     * @param entity the entity instance
+     */
+    void evict(Object entity) {
+        Object id = entityManagerFactory.getPersistenceUnitUtil().getIdentifier(entity);
+
+        if (id == null) {
+            return;
+        }
+
+        boolean cached = evict(entityManagerFactory.getCache(), entity.getClass(), id);
+
+        if (replicaEntityManagerFactory != null) {
+            cached |= evict(replicaEntityManagerFactory.getCache(), entity.getClass(), id);
+        }
+
+        if (cached) {
+            cacheStatistics.recordInvalidation();
+        }
+    }
+
+    /**
+     * Removes entity from given shared cache
+     * @param cache the shared cache
+     * @param type the entity type
+     * @param id the entity id
+     * @return true if the entity was cached
+     */
+    private boolean evict(Cache cache, Class<?> type, Object id) {
+        if (!cache.contains(type, id)) {
+            return false;
+        }
+
+        cache.evict(type, id);
+        return true;
+    }
+
+    /**
+     * Drops all cached state of given entity type after a bulk update or delete
+     * Entities of the type are removed from the shared cache, its cached query
+     * results are dropped and its text index is rebuilt on the next search.
+     * The whole type is counted as one invalidation.
+     * @param type the written entity type
+     */
+    void invalidateAll(Class<?> type) {
+        entityManagerFactory.getCache().evict(type);
+
+        if (replicaEntityManagerFactory != null) {
+            replicaEntityManagerFactory.getCache().evict(type);
+        }
+
+        cacheStatistics.recordInvalidation();
+        queryResultCache.invalidate(type);
+
+        if (type == Book.class) {
+            bookTitleIndex.invalidate();
+        } else if (type == Author.class) {
+            authorNameIndex.invalidate();
+        }
+    }
+
+    /**
+     * Creates new entity manager, the caller is responsible for closing it
+     * @return the new entity manager
+     * @throws IllegalStateException if the context has been closed
+     */
+    EntityManager createEntityManager() throws IllegalStateException {
+        return entityManagerFactory.createEntityManager();
+    }
+
+    /**
+     * Checks whether the factory is still open
+     * @return true if the factory is open
+     */
+    public boolean isOpen() {
+        return entityManagerFactory.isOpen();
+    }
+
+    /**
+     * Closes entity manager factories together with their connection pools
+     */
+    public void close() {
+        statistics.unregister();
+
+        if (replicaEntityManagerFactory != null && replicaEntityManagerFactory.isOpen()) {
+            replicaEntityManagerFactory.close();
+        }
+
+        if (entityManagerFactory.isOpen()) {
+            entityManagerFactory.close();
+        }
+    }
+}
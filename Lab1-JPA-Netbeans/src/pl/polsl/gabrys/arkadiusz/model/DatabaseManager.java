@@ -1,44 +1,218 @@
 package pl.polsl.gabrys.arkadiusz.model;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.Date;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.persistence.AttributeNode;
+import javax.persistence.Cache;
 import javax.persistence.EntityExistsException;
+import javax.persistence.EntityGraph;
 import javax.persistence.EntityManager;
-import javax.persistence.EntityManagerFactory;
 import javax.persistence.LockTimeoutException;
-import javax.persistence.Persistence;
 import javax.persistence.PersistenceException;
+import javax.persistence.PersistenceUnitUtil;
 import javax.persistence.PessimisticLockException;
 import javax.persistence.Query;
 import javax.persistence.QueryTimeoutException;
+import javax.persistence.TemporalType;
 import javax.persistence.TransactionRequiredException;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import org.eclipse.persistence.annotations.BatchFetchType;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
+import org.eclipse.persistence.queries.ScrollableCursor;
 
 /**
  * Provides CRUD implementation for entities
+ * A manager wraps one entity manager and is not thread safe, it should be used
+ * by one thread for one unit of work. Managers are cheap to create, the entity
+ * manager factory, connection pool and caches are shared through DatabaseContext.
+ * Parallel workers call inTransaction(), which gives each work its own manager.
+ * When the context has a read replica, reads outside transactions go to the
+ * replica and everything else, including reads inside transactions, to the primary.
+ * Query results read from the replica or inside transactions don't use the query result cache.
+ * Public methods are timed and counted in DatabaseStatistics of the context,
+ * a public method called by another one is counted only as part of the caller.
  * @author Arkadiusz Gabryś
  * @version 1.0
  */
 public class DatabaseManager{
 
     /**
-     * Persistance unit name
+     * Number of rows fetched from the database in one round trip by cursors
      */
-    private final String PERSISTANCE_UNIT_NAME = "Lab1-JPA";
+    private final Integer CURSOR_FETCH_SIZE = 500;
+
+    /**
+     * Standard hint name for load entity graphs
+     */
+    private final String LOAD_GRAPH_HINT = "javax.persistence.loadgraph";
+
+    /**
+     * Escape character of LIKE patterns, not a backslash which MySQL also reads as a string escape
+     */
+    private final String LIKE_ESCAPE = "!";
+
+    /**
+     * Adds changes of books and pages to author totals, inserting missing rows
+     */
+    private final String TOTALS_UPSERT_SQL = "INSERT INTO AUTHOR_TOTALS (AUTHOR_ID, BOOKS, PAGES) VALUES (?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE BOOKS = BOOKS + VALUES(BOOKS), PAGES = PAGES + VALUES(PAGES)";
+
+    /**
+     * Computes author totals of all authors from the book table
+     */
+    private final String TOTALS_REBUILD_SQL = "INSERT INTO AUTHOR_TOTALS (AUTHOR_ID, BOOKS, PAGES) "
+            + "SELECT a.ID, COUNT(b.ID), COALESCE(SUM(b.PAGES), 0) FROM AUTHOR a LEFT JOIN BOOK b ON b.AUTHOR_ID = a.ID GROUP BY a.ID";
+
+    /**
+     * Context which owns the entity manager factory
+     */
+    private final DatabaseContext context;
+
+    /**
+     * Timings and counters of public methods, shared through the context
+     */
+    private final DatabaseStatistics statistics;
 
     /**
      * Entity manager instance
      */
     private final EntityManager entityManager;
 
+    /**
+     * Entity manager of the read replica, created on first read routed to it
+     */
+    private EntityManager replicaEntityManager;
+
+    /**
+     * Entities changed in the current transaction, evicted from the shared cache after commit
+     */
+    private final Set<Object> pendingEvictions;
+
+    /**
+     * Entity types written in the current transaction, their cached query results are dropped after commit
+     */
+    private final Set<Class<?>> pendingInvalidations;
+
+    /**
+     * Entities persisted or merged in the current transaction, added to text indexes after commit
+     */
+    private final Set<Object> pendingIndexUpdates;
+
+    /**
+     * Entities removed in the current transaction, removed from text indexes after commit
+     */
+    private final Set<Object> pendingIndexRemovals;
+
+    /**
+     * Entity types changed by bulk statements in the current transaction, all their cached state is dropped after commit
+     */
+    private final Set<Class<?>> pendingBulkWrites;
+
+    /**
+     * Changes of the number of books and pages per author in the current transaction, applied to AUTHOR_TOTALS before commit
+     */
+    private final Map<Author, long[]> pendingTotals;
+
     /**
      * Class constructor
-     * Creates instance of entity manager for persistance unit name
-     * saved in const PERSISTANCE_UNIT_NAME.
+     * Creates instance of entity manager for the default persistence unit,
+     * see DatabaseContext.getDefault().
      */
     public DatabaseManager() {
-        EntityManagerFactory emf = Persistence
-                .createEntityManagerFactory(PERSISTANCE_UNIT_NAME);
-        entityManager = emf.createEntityManager();
+        this(DatabaseContext.getDefault());
+    }
+
+    /**
+     * Class constructor
+     * Creates instance of entity manager from the factory of given context.
+     * This is cheap, the factory and its connection pool are reused.
+     * @param context the shared persistence unit context
+     */
+    public DatabaseManager(DatabaseContext context) {
+        this.context = context;
+        statistics = context.getStatistics();
+        entityManager = context.createEntityManager();
+        // entities are changed after they are added, so their hash codes change too
+        pendingEvictions = Collections.newSetFromMap(new IdentityHashMap<>());
+        pendingInvalidations = new HashSet<>();
+        // new entities have no id yet and would be equal to each other
+        pendingIndexUpdates = Collections.newSetFromMap(new IdentityHashMap<>());
+        pendingIndexRemovals = Collections.newSetFromMap(new IdentityHashMap<>());
+        pendingBulkWrites = new HashSet<>();
+        // Author.hashCode() depends on the mutable name, which may change before commit
+        pendingTotals = new IdentityHashMap<>();
+    }
+
+    /**
+     * Runs work in a new transaction of a new manager of the default context
+     * @param <T> the type of the work result
+     * @param work the work
+     * @return the work result
+     * @throws PersistenceException if commit fails, exceptions thrown by the work are rethrown after rollback
+     */
+    public static <T> T inTransaction(UnitOfWork<T> work) throws PersistenceException {
+        return inTransaction(DatabaseContext.getDefault(), work);
+    }
+
+    /**
+     * Runs work in a new transaction of a new manager of given context
+     * Safe to call from many threads at once, each call uses its own entity
+     * manager and holds a pooled connection only until the work is done.
+     * @param <T> the type of the work result
+     * @param context the shared persistence unit context
+     * @param work the work
+     * @return the work result
+     * @throws PersistenceException if commit fails, exceptions thrown by the work are rethrown after rollback
+     */
+    public static <T> T inTransaction(DatabaseContext context, UnitOfWork<T> work) throws PersistenceException {
+        return context.getStatistics().timed("inTransaction", () -> {
+            DatabaseManager db = new DatabaseManager(context);
+
+            try {
+                db.startTransaction();
+                T result = work.execute(db);
+                db.commitTransaction();
+
+                return result;
+            } finally {
+                if (db.isTransactionActive()) {
+                    db.rollbackTransaction();
+                }
+
+                db.close();
+            }
+        }, result -> 0L);
+    }
+
+    /**
+     * Closes entity manager, the shared factory stays open
+     */
+    public void close() {
+        if (entityManager.isOpen()) {
+            entityManager.close();
+        }
+
+        if (replicaEntityManager != null && replicaEntityManager.isOpen()) {
+            replicaEntityManager.close();
+        }
     }
 
     /**
@@ -46,7 +220,9 @@ public class DatabaseManager{
      * @throws IllegalStateException if transaction is already active
      */
     public void startTransaction() throws IllegalStateException {
-        entityManager.getTransaction().begin();
+        statistics.timed("startTransaction", 0L, () -> {
+            entityManager.getTransaction().begin();
+        });
     }
 
     /**
@@ -55,8 +231,89 @@ public class DatabaseManager{
      * @throws PersistenceException if flushing data fails
      */
     public void commitTransaction() throws TransactionRequiredException, PersistenceException {
-        entityManager.flush();
-        entityManager.getTransaction().commit();
+        statistics.timed("commitTransaction", 0L, () -> {
+            entityManager.flush();
+            applyTotals();
+            entityManager.getTransaction().commit();
+
+            if (!pendingInvalidations.isEmpty() || !pendingBulkWrites.isEmpty()) {
+                context.recordWrite();
+            }
+
+            for (Object entity : pendingEvictions) {
+                context.evict(entity);
+            }
+
+            pendingEvictions.clear();
+
+            for (Class<?> type : pendingInvalidations) {
+                context.getQueryResultCache().invalidate(type);
+            }
+
+            pendingInvalidations.clear();
+            updateTextIndexes();
+
+            for (Class<?> type : pendingBulkWrites) {
+                context.invalidateAll(type);
+            }
+
+            pendingBulkWrites.clear();
+        });
+    }
+
+    /**
+     * Rolls back current transaction
+     * @throws IllegalStateException if transaction is not active
+     * @throws PersistenceException if an unexpected error condition is encountered
+     */
+    public void rollbackTransaction() throws IllegalStateException, PersistenceException {
+        statistics.timed("rollbackTransaction", 0L, () -> {
+            pendingEvictions.clear();
+            pendingInvalidations.clear();
+            pendingIndexUpdates.clear();
+            pendingIndexRemovals.clear();
+            pendingBulkWrites.clear();
+            pendingTotals.clear();
+            entityManager.getTransaction().rollback();
+        });
+    }
+
+    /**
+     * Returns timings and counters of database operations
+     * The statistics are shared by all managers of the same context.
+     * @return the database statistics
+     */
+    public DatabaseStatistics getStatistics() {
+        return context.getStatistics();
+    }
+
+    /**
+     * Returns counters of the shared entity cache
+     * The counters are shared by all managers of the same context.
+     * @return the cache statistics
+     */
+    public CacheStatistics getCacheStatistics() {
+        return context.getCacheStatistics();
+    }
+
+    /**
+     * Checks whether a transaction is in progress
+     * @return true if a transaction is active
+     */
+    public boolean isTransactionActive() {
+        return entityManager.getTransaction().isActive();
+    }
+
+    /**
+     * Detaches all managed entities, unflushed changes are lost
+     * Used by bulk operations to keep the persistence context small.
+     */
+    public void clear() {
+        entityManager.clear();
+
+        if (replicaEntityManager != null) {
+            replicaEntityManager.clear();
+        }
     }
 
     /**
@@ -66,7 +323,23 @@ public class DatabaseManager{
      * @throws IllegalArgumentException if the id is null
      */
     public Author findAuthorById(Long id) throws IllegalArgumentException {
-        return find(Author.class, id);
+        return statistics.timedEntity("findAuthorById", () -> find(Author.class, id));
+    }
+
+    /**
+     * Finds Author entity by its id loading attributes of given entity graph
+     * @param id the entity id
+     * @param entityGraph the entity graph name, for example Author.GRAPH_WITH_BOOKS
+     * @return the entity with given id
+     * @throws IllegalArgumentException if the id is null or the entity graph doesn't exists
+     */
+    public Author findAuthorById(Long id, String entityGraph) throws IllegalArgumentException {
+        return statistics.timedEntity("findAuthorById", () -> {
+            Map<String, Object> hints = new HashMap<>();
+            EntityManager reader = reader();
+            hints.put(LOAD_GRAPH_HINT, reader.getEntityGraph(entityGraph));
+            return reader.find(Author.class, id, hints);
+        });
     }
 
     /**
@@ -79,7 +352,76 @@ public class DatabaseManager{
      * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
      */
     public List<Author> findAllAuthors() throws IllegalArgumentException, QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
-      return findAll(Author.class);
+        return statistics.timedList("findAllAuthors", () -> findAll(Author.class));
+    }
+
+    /**
+     * Returns all authors loading attributes of given entity graph
+     * Relationships included in the graph are loaded with a constant number
+     * of queries regardless of the number of authors.
+     * @param entityGraph the entity graph name, for example Author.GRAPH_WITH_BOOKS
+     * @return the list with all authors
+     * @throws IllegalArgumentException if the entity graph doesn't exists
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws TransactionRequiredException if a lock mode has been set and there is no transaction
+     * @throws PessimisticLockException if pessimistic locking fails and the transaction is rolled back
+     * @throws LockTimeoutException if pessimistic locking fails and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    public List<Author> findAllAuthors(String entityGraph) throws IllegalArgumentException, QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
+        return statistics.timedList("findAllAuthors", () -> {
+            EntityManager reader = reader();
+            Query query = reader.createNamedQuery("Author.findAll");
+            applyEntityGraph(reader, query, Author.class, entityGraph);
+            return query.getResultList();
+        });
+    }
+
+    /**
+     * Returns single page of authors ordered by id
+     * The page is located by the last id of the previous page, so every
+     * page costs the same index range scan regardless of its position.
+     * @param lastId the id of the last author on the previous page, 0 for the first page
+     * @param limit the maximum number of returned authors
+     * @return the list of at most limit authors with id greater than lastId
+     * @throws IllegalArgumentException if the limit is not positive
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws TransactionRequiredException if a lock mode has been set and there is no transaction
+     * @throws PessimisticLockException if pessimistic locking fails and the transaction is rolled back
+     * @throws LockTimeoutException if pessimistic locking fails and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    public List<Author> findAuthorsAfter(long lastId, int limit) throws IllegalArgumentException, QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
+        return statistics.timedList("findAuthorsAfter", () -> findAfter(Author.class, "Author.findAfter", lastId, limit));
+    }
+
+    /**
+     * Returns single page of authors ordered by id loading attributes of given entity graph
+     * Relationships included in the graph are loaded with one more query per page.
+     * @param lastId the id of the last author on the previous page, 0 for the first page
+     * @param limit the maximum number of returned authors
+     * @param entityGraph the entity graph name, for example Author.GRAPH_WITH_BOOKS
+     * @return the list of at most limit authors with id greater than lastId
+     * @throws IllegalArgumentException if the limit is not positive or the entity graph doesn't exists
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws TransactionRequiredException if a lock mode has been set and there is no transaction
+     * @throws PessimisticLockException if pessimistic locking fails and the transaction is rolled back
+     * @throws LockTimeoutException if pessimistic locking fails and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    public List<Author> findAuthorsAfter(long lastId, int limit, String entityGraph) throws IllegalArgumentException, QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
+        return statistics.timedList("findAuthorsAfter", () -> {
+            if (limit <= 0) {
+                throw new IllegalArgumentException("Page size must be a positive number");
+            }
+
+            EntityManager reader = reader();
+            Query query = reader.createNamedQuery("Author.findAfter");
+            query.setParameter("lastId", lastId);
+            query.setMaxResults(limit);
+            applyEntityGraph(reader, query, Author.class, entityGraph);
+            return query.getResultList();
+        });
     }
 
     /**
@@ -94,10 +436,53 @@ public class DatabaseManager{
      * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
      */
     public List<Author> findAuthorsByName(String name) throws IllegalArgumentException, QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
-        name = name.replace("\"", "").trim();
-        Query query = entityManager.createNamedQuery("Author.findByName");
-        query.setParameter("name", name);
-        return query.getResultList();
+        return statistics.timedList("findAuthorsByName", () -> findAuthorsByName(name, true));
+    }
+
+    /**
+     * Returns all authors with given name, optionally from the query result cache
+     * Cached results are dropped whenever any author is written through a database manager.
+     * @param name the author name
+     * @param useCache false to always run the query
+     * @return the list of authors with given name
+     * @throws IllegalArgumentException if given class is not valid entity class for this operation
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws TransactionRequiredException if a lock mode has been set and there is no transaction
+     * @throws PessimisticLockException if pessimistic locking fails and the transaction is rolled back
+     * @throws LockTimeoutException if pessimistic locking fails and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    public List<Author> findAuthorsByName(String name, boolean useCache) throws IllegalArgumentException, QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
+        return statistics.timedList("findAuthorsByName", () -> {
+            if (!useCache) {
+                return findAuthorsByName(name, Author.GRAPH_SUMMARY);
+            }
+
+            return findCached(Author.class, "Author.findByName", "name", unquote(name));
+        });
+    }
+
+    /**
+     * Returns all authors with given name loading attributes of given entity graph
+     * Relationships included in the graph are fetched with the same query.
+     * @param name the author name
+     * @param entityGraph the entity graph name, for example Author.GRAPH_WITH_BOOKS
+     * @return the list of authors with given name
+     * @throws IllegalArgumentException if the entity graph doesn't exists
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws TransactionRequiredException if a lock mode has been set and there is no transaction
+     * @throws PessimisticLockException if pessimistic locking fails and the transaction is rolled back
+     * @throws LockTimeoutException if pessimistic locking fails and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    public List<Author> findAuthorsByName(String name, String entityGraph) throws IllegalArgumentException, QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
+        return statistics.timedList("findAuthorsByName", () -> {
+            EntityManager reader = reader();
+            Query query = reader.createNamedQuery("Author.findByName");
+            query.setParameter("name", unquote(name));
+            applyEntityGraph(reader, query, Author.class, entityGraph);
+            return query.getResultList();
+        });
     }
 
     /**
@@ -107,7 +492,7 @@ public class DatabaseManager{
      * @throws IllegalArgumentException if the id is null
      */
     public Book findBookById(Long id) throws IllegalArgumentException {
-        return find(Book.class, id);
+        return statistics.timedEntity("findBookById", () -> find(Book.class, id));
     }
 
     /**
@@ -120,7 +505,25 @@ public class DatabaseManager{
      * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
      */
     public List<Book> findAllBooks() throws IllegalArgumentException, QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
-      return findAll(Book.class);
+        return statistics.timedList("findAllBooks", () -> reader().createNamedQuery("Book.findAllWithAuthor").getResultList());
+    }
+
+    /**
+     * Returns single page of books ordered by id
+     * The page is located by the last id of the previous page, so every
+     * page costs the same index range scan regardless of its position.
+     * @param lastId the id of the last book on the previous page, 0 for the first page
+     * @param limit the maximum number of returned books
+     * @return the list of at most limit books with id greater than lastId
+     * @throws IllegalArgumentException if the limit is not positive
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws TransactionRequiredException if a lock mode has been set and there is no transaction
+     * @throws PessimisticLockException if pessimistic locking fails and the transaction is rolled back
+     * @throws LockTimeoutException if pessimistic locking fails and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    public List<Book> findBooksAfter(long lastId, int limit) throws IllegalArgumentException, QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
+        return statistics.timedList("findBooksAfter", () -> findAfter(Book.class, "Book.findAfterWithAuthor", lastId, limit));
     }
 
     /**
@@ -135,121 +538,671 @@ public class DatabaseManager{
      * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
      */
     public List<Book> findBooksByTitle(String title) throws IllegalArgumentException, QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
-        title = title.replace("\"", "").trim();
-        Query query = entityManager.createNamedQuery("Book.findByTitle");
-        query.setParameter("title", title);
-        return query.getResultList();
+        return statistics.timedList("findBooksByTitle", () -> findBooksByTitle(title, true));
     }
 
     /**
-     * Adds new Author entity
-     * @param name the author name
-     * @param lastName the author last name
-     * @throws TransactionRequiredException if invoked on a container-managed entity manager of type PersistenceContextType.TRANSACTION and there is no transaction
+     * Returns all books with given title, optionally from the query result cache
+     * Cached results are dropped whenever any book is written through a database manager.
+     * @param title the book title
+     * @param useCache false to always run the query
+     * @return the list of books with given title
+     * @throws IllegalArgumentException if given class is not valid entity class for this operation
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws TransactionRequiredException if a lock mode has been set and there is no transaction
+     * @throws PessimisticLockException if pessimistic locking fails and the transaction is rolled back
+     * @throws LockTimeoutException if pessimistic locking fails and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
      */
-    public void persistAuthor(String name, String lastName) throws TransactionRequiredException {
-        Author entity = new Author(name, lastName);
-        persist(entity);
+    public List<Book> findBooksByTitle(String title, boolean useCache) throws IllegalArgumentException, QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
+        return statistics.timedList("findBooksByTitle", () -> {
+            if (useCache) {
+                return findCached(Book.class, "Book.findByTitleWithAuthor", "title", unquote(title));
+            }
+
+            Query query = reader().createNamedQuery("Book.findByTitleWithAuthor");
+            query.setParameter("title", unquote(title));
+            return query.getResultList();
+        });
     }
 
     /**
-     * Adds new Book entity
-     * @param title the book title
-     * @param pages the number of book pages
-     * @param releaseDate the book release date
-     * @param authorId the book author id
-     * @throws IllegalArgumentException if the author id is null or if the author doesn't exists
-     * @throws TransactionRequiredException if invoked on a container-managed entity manager of type PersistenceContextType.TRANSACTION and there is no transaction
+     * Returns books whose title contains given fragment, case insensitive
+     * Uses the in memory title index, built with one database scan on the first search.
+     * @param fragment the title fragment
+     * @param limit the maximum number of returned books
+     * @return the list of matching books ordered by id
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws TransactionRequiredException if a lock mode has been set and there is no transaction
+     * @throws PessimisticLockException if pessimistic locking fails and the transaction is rolled back
+     * @throws LockTimeoutException if pessimistic locking fails and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
      */
-    public void persistBook(String title, Long pages, Date releaseDate, Long authorId) throws IllegalArgumentException, TransactionRequiredException {
-        Author author = findAuthorById(authorId);
-        
-        if (author == null) {
-            throw new IllegalArgumentException("Author with id: " + authorId + " doesn't exists");
-        }
-        
-        Book entity = new Book(title, pages, releaseDate, author);
-        persist(entity);
+    public List<Book> findBooksContaining(String fragment, int limit) throws QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
+        return statistics.timedList("findBooksContaining", () -> {
+            TextIndex index = bookTitleIndex();
+            return findByIds(Book.class, index.searchContaining(unquote(fragment), limit));
+        });
     }
 
     /**
-     * Updates given Author entity
-     * @param id the author id
-     * @param name the new author name
-     * @param lastName the new author last name
-     * @throws IllegalArgumentException if the author is a removed entity or if the id is null or the given author doesn't exists
-     * @throws TransactionRequiredException if invoked on a container-managed entity manager of type PersistenceContextType.TRANSACTION and there is no transactio
+     * Returns authors whose name or last name starts with given prefix, case insensitive
+     * Uses the in memory name index, built with one database scan on the first search.
+     * @param prefix the name or last name prefix
+     * @param limit the maximum number of returned authors
+     * @return the list of matching authors ordered by id
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws TransactionRequiredException if a lock mode has been set and there is no transaction
+     * @throws PessimisticLockException if pessimistic locking fails and the transaction is rolled back
+     * @throws LockTimeoutException if pessimistic locking fails and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
      */
-    public void mergeAuthor(Long id, String name, String lastName) throws IllegalArgumentException, TransactionRequiredException {
-      Author entity = findAuthorById(id);
-      entity.setName(name);
-      entity.setLastName(lastName);
-      merge(entity);
+    public List<Author> findAuthorsByPrefix(String prefix, int limit) throws QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
+        return statistics.timedList("findAuthorsByPrefix", () -> {
+            TextIndex index = authorNameIndex();
+            return findByIds(Author.class, index.searchPrefix(unquote(prefix), limit));
+        });
     }
 
     /**
-     * Updates given Book entity
-     * @param id the book id
-     * @param title the new book title
-     * @param pages the new number of pages
-     * @param releaseDate the new release date
-     * @param authorId the id of the new author
-     * @throws IllegalArgumentException if the book is a removed entity or if the id is null
-     * @throws TransactionRequiredException if invoked on a container-managed entity manager of type PersistenceContextType.TRANSACTION and there is no transactio
+     * Returns projections of all authors ordered by id
+     * Rows are not registered in the persistence context, use it for read only listings.
+     * @return the list with all authors
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws TransactionRequiredException if a lock mode has been set and there is no transaction
+     * @throws PessimisticLockException if pessimistic locking fails and the transaction is rolled back
+     * @throws LockTimeoutException if pessimistic locking fails and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
      */
-    public void mergeBook(Long id, String title, Long pages, Date releaseDate, Long authorId) throws IllegalArgumentException, TransactionRequiredException {
-      Book entity = findBookById(id);
-      Author author = findAuthorById(authorId);
-      entity.setTitle(title);
-      entity.setReleaseDate(releaseDate);
-      entity.setAuthor(author);
-      merge(entity);
+    public List<AuthorSummary> listAllAuthors() throws QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
+        return statistics.timedList("listAllAuthors", () -> list("Author.listAll", AuthorSummary.class, null, null, 0));
     }
 
     /**
-     * Removes Author entity
-     * @param id the author id
-     * @throws IllegalArgumentException if the instance is a detached entity
-     * @throws TransactionRequiredException if invoked on a container-managed entity manager of type PersistenceContextType.TRANSACTION and there is no transaction
+     * Returns single page of author projections ordered by id
+     * The page is located the same way as in findAuthorsAfter().
+     * @param lastId the id of the last author on the previous page, 0 for the first page
+     * @param limit the maximum number of returned authors
+     * @return the list of at most limit authors with id greater than lastId
+     * @throws IllegalArgumentException if the limit is not positive
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws TransactionRequiredException if a lock mode has been set and there is no transaction
+     * @throws PessimisticLockException if pessimistic locking fails and the transaction is rolled back
+     * @throws LockTimeoutException if pessimistic locking fails and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
      */
-    public void removeAuthor(Long id) throws IllegalArgumentException, TransactionRequiredException {
-      Author entity = findAuthorById(id);
-      remove(entity);
+    public List<AuthorSummary> listAuthorsAfter(long lastId, int limit) throws IllegalArgumentException, QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
+        return statistics.timedList("listAuthorsAfter", () -> {
+            if (limit <= 0) {
+                throw new IllegalArgumentException("Page size must be a positive number");
+            }
+
+            return list("Author.listAfter", AuthorSummary.class, "lastId", lastId, limit);
+        });
     }
 
     /**
-     * Removes Book entity
-     * @param id the book id
-     * @throws IllegalArgumentException if the instance is a detached entity
-     * @throws TransactionRequiredException if invoked on a container-managed entity manager of type PersistenceContextType.TRANSACTION and there is no transaction
+     * Returns projections of all authors with given name ordered by id
+     * @param name the author name
+     * @return the list of authors with given name
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws TransactionRequiredException if a lock mode has been set and there is no transaction
+     * @throws PessimisticLockException if pessimistic locking fails and the transaction is rolled back
+     * @throws LockTimeoutException if pessimistic locking fails and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
      */
-    public void removeBook(Long id) throws IllegalArgumentException, TransactionRequiredException {
-      Book entity = findBookById(id);
-      remove(entity);
+    public List<AuthorSummary> listAuthorsByName(String name) throws QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
+        return statistics.timedList("listAuthorsByName", () -> {
+            return list("Author.listByName", AuthorSummary.class, "name", unquote(name), 0);
+        });
     }
 
     /**
-     * Finds entity by its id
-     * @param <T> the entity type
-     * @param objectClass the entity class
-     * @param tId the entity id
-     * @return the entity with given id
-     * @throws IllegalArgumentException if the first argument does not denote an entity type or the second argument is is null
+     * Returns projections of authors whose name or last name starts with given prefix, case insensitive
+     * Ids are found in the name index and the rows are read with one query.
+     * @param prefix the name or last name prefix
+     * @param limit the maximum number of returned authors
+     * @return the list of matching authors ordered by id
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws TransactionRequiredException if a lock mode has been set and there is no transaction
+     * @throws PessimisticLockException if pessimistic locking fails and the transaction is rolled back
+     * @throws LockTimeoutException if pessimistic locking fails and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
      */
-    private <T> T find(Class<T> objectClass, Long tId) throws IllegalArgumentException {
-        return entityManager.find(objectClass, tId);
+    public List<AuthorSummary> listAuthorsByPrefix(String prefix, int limit) throws QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
+        return statistics.timedList("listAuthorsByPrefix", () -> {
+            long[] ids = authorNameIndex().searchPrefix(unquote(prefix), limit);
+            return listByIds("Author.listByIds", AuthorSummary.class, ids);
+        });
     }
 
     /**
-     * Adds new entity
-     * @param <T> the entity type
-     * @param t the eintity instance
-     * @throws EntityExistsException if the entity already exists. (If the entity already exists, the EntityExistsException may be thrown when the persist operation is invoked, or the EntityExistsException or another PersistenceException may be thrown at flush or commit time.)
-     * @throws IllegalArgumentException if the instance is not an entity
+     * Returns projections of all books ordered by id
+     * Only the author id is read, rows are not registered in the persistence context.
+     * @return the list with all books
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws TransactionRequiredException if a lock mode has been set and there is no transaction
+     * @throws PessimisticLockException if pessimistic locking fails and the transaction is rolled back
+     * @throws LockTimeoutException if pessimistic locking fails and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    public List<BookSummary> listAllBooks() throws QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
+        return statistics.timedList("listAllBooks", () -> list("Book.listAll", BookSummary.class, null, null, 0));
+    }
+
+    /**
+     * Returns single page of book projections ordered by id
+     * The page is located the same way as in findBooksAfter().
+     * @param lastId the id of the last book on the previous page, 0 for the first page
+     * @param limit the maximum number of returned books
+     * @return the list of at most limit books with id greater than lastId
+     * @throws IllegalArgumentException if the limit is not positive
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws TransactionRequiredException if a lock mode has been set and there is no transaction
+     * @throws PessimisticLockException if pessimistic locking fails and the transaction is rolled back
+     * @throws LockTimeoutException if pessimistic locking fails and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    public List<BookSummary> listBooksAfter(long lastId, int limit) throws IllegalArgumentException, QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
+        return statistics.timedList("listBooksAfter", () -> {
+            if (limit <= 0) {
+                throw new IllegalArgumentException("Page size must be a positive number");
+            }
+
+            return list("Book.listAfter", BookSummary.class, "lastId", lastId, limit);
+        });
+    }
+
+    /**
+     * Returns projections of all books with given title ordered by id
+     * @param title the book title
+     * @return the list of books with given title
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws TransactionRequiredException if a lock mode has been set and there is no transaction
+     * @throws PessimisticLockException if pessimistic locking fails and the transaction is rolled back
+     * @throws LockTimeoutException if pessimistic locking fails and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    public List<BookSummary> listBooksByTitle(String title) throws QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
+        return statistics.timedList("listBooksByTitle", () -> {
+            return list("Book.listByTitle", BookSummary.class, "title", unquote(title), 0);
+        });
+    }
+
+    /**
+     * Returns projections of books whose title contains given fragment, case insensitive
+     * Ids are found in the title index and the rows are read with one query.
+     * @param fragment the title fragment
+     * @param limit the maximum number of returned books
+     * @return the list of matching books ordered by id
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws TransactionRequiredException if a lock mode has been set and there is no transaction
+     * @throws PessimisticLockException if pessimistic locking fails and the transaction is rolled back
+     * @throws LockTimeoutException if pessimistic locking fails and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    public List<BookSummary> listBooksContaining(String fragment, int limit) throws QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
+        return statistics.timedList("listBooksContaining", () -> {
+            long[] ids = bookTitleIndex().searchContaining(unquote(fragment), limit);
+            return listByIds("Book.listByIds", BookSummary.class, ids);
+        });
+    }
+
+    /**
+     * Returns books matching given filter together with their authors
+     * The conditions are evaluated by the database with one query.
+     * @param filter the conditions, order and limit of the search
+     * @return the list of matching books in the order of the filter
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws TransactionRequiredException if a lock mode has been set and there is no transaction
+     * @throws PessimisticLockException if pessimistic locking fails and the transaction is rolled back
+     * @throws LockTimeoutException if pessimistic locking fails and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    public List<Book> findBooks(BookFilter filter) throws QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
+        return statistics.timedList("findBooks", () -> {
+            EntityManager reader = reader();
+            CriteriaBuilder builder = reader.getCriteriaBuilder();
+            CriteriaQuery<Book> query = builder.createQuery(Book.class);
+            Root<Book> book = query.from(Book.class);
+            book.fetch("author");
+            query.select(book);
+            return filter(reader, builder, query, book, filter);
+        });
+    }
+
+    /**
+     * Returns projections of books matching given filter
+     * The conditions are evaluated by the database with one query, author rows are not read.
+     * @param filter the conditions, order and limit of the search
+     * @return the list of matching books in the order of the filter
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws TransactionRequiredException if a lock mode has been set and there is no transaction
+     * @throws PessimisticLockException if pessimistic locking fails and the transaction is rolled back
+     * @throws LockTimeoutException if pessimistic locking fails and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    public List<BookSummary> listBooks(BookFilter filter) throws QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
+        return statistics.timedList("listBooks", () -> {
+            EntityManager reader = reader();
+            CriteriaBuilder builder = reader.getCriteriaBuilder();
+            CriteriaQuery<BookSummary> query = builder.createQuery(BookSummary.class);
+            Root<Book> book = query.from(Book.class);
+            query.select(builder.construct(BookSummary.class, book.get("id"), book.get("title"),
+                    book.get("pages"), book.get("releaseDate"), book.get("author").get("id")));
+            return filter(reader, builder, query, book, filter);
+        });
+    }
+
+    /**
+     * Returns the query result cache shared by all managers of the same context
+     * @return the query result cache
+     */
+    public QueryResultCache getQueryResultCache() {
+        return context.getQueryResultCache();
+    }
+
+    /**
+     * Opens cursor over all authors ordered by id
+     * Rows are fetched lazily and returned entities are periodically detached,
+     * so memory use does not depend on the number of rows. The cursor must be closed.
+     * @return the cursor over all authors
+     * @throws PersistenceException if the query execution fails
+     */
+    public EntityCursor<Author> streamAllAuthors() throws PersistenceException {
+        return statistics.timed("streamAllAuthors", () -> streamAll(Author.class, null), cursor -> 0L);
+    }
+
+    /**
+     * Opens cursor over all books ordered by id, authors are fetched with the same query
+     * Rows are fetched lazily and returned entities are periodically detached,
+     * so memory use does not depend on the number of rows. The cursor must be closed.
+     * @return the cursor over all books
+     * @throws PersistenceException if the query execution fails
+     */
+    public EntityCursor<Book> streamAllBooks() throws PersistenceException {
+        return statistics.timed("streamAllBooks", () -> streamAll(Book.class, "e.author"), cursor -> 0L);
+    }
+
+    /**
+     * Adds new Author entity
+     * @param name the author name
+     * @param lastName the author last name
+     * @throws TransactionRequiredException if invoked on a container-managed entity manager of type PersistenceContextType.TRANSACTION and there is no transaction
+     */
+    public void persistAuthor(String name, String lastName) throws TransactionRequiredException {
+        statistics.timed("persistAuthor", 1L, () -> {
+            Author entity = new Author(name, lastName);
+            persist(entity);
+            recordTotals(entity, 0L, 0L);
+        });
+    }
+
+    /**
+     * Adds new Book entity
+     * @param title the book title
+     * @param pages the number of book pages
+     * @param releaseDate the book release date
+     * @param authorId the book author id
+     * @throws IllegalArgumentException if the author id is null or if the author doesn't exists
+     * @throws TransactionRequiredException if invoked on a container-managed entity manager of type PersistenceContextType.TRANSACTION and there is no transaction
+     */
+    public void persistBook(String title, Long pages, Date releaseDate, Long authorId) throws IllegalArgumentException, TransactionRequiredException {
+        statistics.timed("persistBook", 1L, () -> {
+            Author author = findAuthorById(authorId);
+
+            if (author == null) {
+                throw new IllegalArgumentException("Author with id: " + authorId + " doesn't exists");
+            }
+
+            persistBook(title, pages, releaseDate, author);
+        });
+    }
+
+    /**
+     * Adds new Book entity for already loaded or referenced author
+     * @param title the book title
+     * @param pages the number of book pages
+     * @param releaseDate the book release date
+     * @param author the book author
+     * @throws TransactionRequiredException if invoked on a container-managed entity manager of type PersistenceContextType.TRANSACTION and there is no transaction
+     */
+    public void persistBook(String title, Long pages, Date releaseDate, Author author) throws TransactionRequiredException {
+        statistics.timed("persistBook", 1L, () -> {
+            Book entity = new Book(title, pages, releaseDate, author);
+            persist(entity);
+            recordTotals(author, 1L, entity.getPages());
+            // cached author holds its books list
+            pendingEvictions.add(author);
+        });
+    }
+
+    /**
+     * Returns Author instance whose state may be lazily fetched
+     * Does not verify that the author exists.
+     * @param id the author id
+     * @return the author reference
+     * @throws IllegalArgumentException if the id is null
+     */
+    public Author getAuthorReference(Long id) throws IllegalArgumentException {
+        return entityManager.getReference(Author.class, id);
+    }
+
+    /**
+     * Updates given Author entity
+     * @param id the author id
+     * @param name the new author name
+     * @param lastName the new author last name
+     * @throws IllegalArgumentException if the author is a removed entity or if the id is null or the given author doesn't exists
+     * @throws TransactionRequiredException if invoked on a container-managed entity manager of type PersistenceContextType.TRANSACTION and there is no transactio
+     */
+    public void mergeAuthor(Long id, String name, String lastName) throws IllegalArgumentException, TransactionRequiredException {
+        statistics.timed("mergeAuthor", 1L, () -> {
+            Author entity = findAuthorById(id);
+            entity.setName(name);
+            entity.setLastName(lastName);
+            merge(entity);
+            pendingEvictions.add(entity);
+        });
+    }
+
+    /**
+     * Updates given Book entity
+     * @param id the book id
+     * @param title the new book title
+     * @param pages the new number of pages
+     * @param releaseDate the new release date
+     * @param authorId the id of the new author
+     * @throws IllegalArgumentException if the book is a removed entity or if the id is null
+     * @throws TransactionRequiredException if invoked on a container-managed entity manager of type PersistenceContextType.TRANSACTION and there is no transactio
+     */
+    public void mergeBook(Long id, String title, Long pages, Date releaseDate, Long authorId) throws IllegalArgumentException, TransactionRequiredException {
+        statistics.timed("mergeBook", 1L, () -> {
+            Book entity = findBookById(id);
+            Author author = findAuthorById(authorId);
+
+            // both old and new author hold the book in their cached books lists
+            if (entity.getAuthor() != null) {
+                pendingEvictions.add(entity.getAuthor());
+                recordTotals(entity.getAuthor(), -1L, -entity.getPages());
+            }
+
+            pendingEvictions.add(entity);
+            pendingEvictions.add(author);
+            entity.setTitle(title);
+            entity.setPages(pages);
+            entity.setReleaseDate(releaseDate);
+            entity.setAuthor(author);
+            merge(entity);
+            recordTotals(author, 1L, entity.getPages());
+        });
+    }
+
+    /**
+     * Removes Author entity together with its books
+     * @param id the author id
+     * @throws IllegalArgumentException if the id is null or the author doesn't exists
+     * @throws TransactionRequiredException if invoked on a container-managed entity manager of type PersistenceContextType.TRANSACTION and there is no transaction
+     */
+    public void removeAuthor(Long id) throws IllegalArgumentException, TransactionRequiredException {
+        statistics.timed("removeAuthor", 1L, () -> {
+            if (id == null || removeAuthors(Collections.singletonList(id)) == 0) {
+                throw new IllegalArgumentException("Author with id: " + id + " doesn't exists");
+            }
+        });
+    }
+
+    /**
+     * Removes Book entity
+     * @param id the book id
+     * @throws IllegalArgumentException if the instance is a detached entity
+     * @throws TransactionRequiredException if invoked on a container-managed entity manager of type PersistenceContextType.TRANSACTION and there is no transaction
+     */
+    public void removeBook(Long id) throws IllegalArgumentException, TransactionRequiredException {
+        statistics.timed("removeBook", 1L, () -> {
+            Book entity = findBookById(id);
+            remove(entity);
+            pendingEvictions.add(entity);
+
+            if (entity.getAuthor() != null) {
+                pendingEvictions.add(entity.getAuthor());
+                recordTotals(entity.getAuthor(), -1L, -entity.getPages());
+            }
+        });
+    }
+
+    /**
+     * Removes authors with given ids together with their books
+     * Runs one delete statement for books and one for authors, no entity is loaded.
+     * @param ids the author ids
+     * @return the number of removed authors
+     * @throws TransactionRequiredException if there is no transaction
+     * @throws QueryTimeoutException if the statement execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    public int removeAuthors(List<Long> ids) throws TransactionRequiredException, QueryTimeoutException, PersistenceException {
+        return statistics.timedCount("removeAuthors", () -> {
+            if (ids.isEmpty()) {
+                return 0;
+            }
+
+            removeBooksOfAuthors(ids);
+            int count = executeBulk(entityManager.createNamedQuery("Author.deleteByIds")
+                    .setParameter("ids", ids), Author.class);
+
+            if (context.isReportSummaryEnabled()) {
+                entityManager.createNamedQuery("AuthorTotals.deleteByAuthors")
+                        .setParameter("authorIds", ids)
+                        .executeUpdate();
+                dropTotals(ids);
+            }
+
+            return count;
+        });
+    }
+
+    /**
+     * Sets the same name and last name of all authors with given ids in one update statement
+     * @param ids the author ids
+     * @param name the new author name
+     * @param lastName the new author last name
+     * @return the number of updated authors
+     * @throws TransactionRequiredException if there is no transaction
+     * @throws QueryTimeoutException if the statement execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    public int renameAuthors(List<Long> ids, String name, String lastName) throws TransactionRequiredException, QueryTimeoutException, PersistenceException {
+        return statistics.timedCount("renameAuthors", () -> {
+            if (ids.isEmpty()) {
+                return 0;
+            }
+
+            return executeBulk(entityManager.createNamedQuery("Author.renameByIds")
+                    .setParameter("name", name)
+                    .setParameter("lastName", lastName)
+                    .setParameter("ids", ids), Author.class);
+        });
+    }
+
+    /**
+     * Removes all books of authors with given ids in one delete statement
+     * @param authorIds the author ids
+     * @return the number of removed books
+     * @throws TransactionRequiredException if there is no transaction
+     * @throws QueryTimeoutException if the statement execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    public int removeBooksOfAuthors(List<Long> authorIds) throws TransactionRequiredException, QueryTimeoutException, PersistenceException {
+        return statistics.timedCount("removeBooksOfAuthors", () -> {
+            if (authorIds.isEmpty()) {
+                return 0;
+            }
+
+            // cached authors hold the removed books in their books lists
+            int count = executeBulk(entityManager.createNamedQuery("Book.deleteByAuthors")
+                    .setParameter("authorIds", authorIds), Book.class, Author.class);
+
+            if (context.isReportSummaryEnabled()) {
+                entityManager.createNamedQuery("AuthorTotals.resetByAuthors")
+                        .setParameter("authorIds", authorIds)
+                        .executeUpdate();
+                dropTotals(authorIds);
+            }
+
+            return count;
+        });
+    }
+
+    /**
+     * Removes all books released before given date in one delete statement
+     * @param date the first release date which is kept
+     * @return the number of removed books
+     * @throws TransactionRequiredException if there is no transaction
+     * @throws QueryTimeoutException if the statement execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    public int removeBooksReleasedBefore(Date date) throws TransactionRequiredException, QueryTimeoutException, PersistenceException {
+        return statistics.timedCount("removeBooksReleasedBefore", () -> {
+            int count = executeBulk(entityManager.createNamedQuery("Book.deleteReleasedBefore")
+                    .setParameter("date", date, TemporalType.DATE), Book.class, Author.class);
+
+            // removed books may belong to any author
+            if (context.isReportSummaryEnabled() && count > 0) {
+                rebuildTotals();
+            }
+
+            return count;
+        });
+    }
+
+    /**
+     * Returns number of books and pages of every author ordered by author id
+     * With the report summary enabled one AUTHOR_TOTALS row per author is read,
+     * otherwise books are grouped by author in the database. Only aggregated
+     * rows are transferred in both cases, authors without books have zeros.
+     * @return the report rows
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws TransactionRequiredException if a lock mode has been set and there is no transaction
+     * @throws PessimisticLockException if pessimistic locking fails and the transaction is rolled back
+     * @throws LockTimeoutException if pessimistic locking fails and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    public List<AuthorReport> reportAuthors() throws QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
+        return statistics.timedList("reportAuthors", () -> {
+            if (context.isReportSummaryEnabled()) {
+                return reader().createNamedQuery("AuthorTotals.report", AuthorReport.class).getResultList();
+            }
+
+            List<Object[]> rows = reader().createNamedQuery("Author.report", Object[].class).getResultList();
+            List<AuthorReport> result = new ArrayList<>(rows.size());
+
+            for (Object[] row : rows) {
+                result.add(new AuthorReport((Long) row[0], (String) row[1], (String) row[2],
+                        longValue(row[3]), longValue(row[4])));
+            }
+
+            return result;
+        });
+    }
+
+    /**
+     * Returns number of books and pages released in every year ordered by year
+     * Books are grouped by the release year in the database.
+     * @return the report rows, years without books are skipped
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws TransactionRequiredException if a lock mode has been set and there is no transaction
+     * @throws PessimisticLockException if pessimistic locking fails and the transaction is rolled back
+     * @throws LockTimeoutException if pessimistic locking fails and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    public List<YearReport> reportReleaseYears() throws QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
+        return statistics.timedList("reportReleaseYears", () -> {
+            List<Object[]> rows = reader().createNamedQuery("Book.reportByYear", Object[].class).getResultList();
+            List<YearReport> result = new ArrayList<>(rows.size());
+
+            for (Object[] row : rows) {
+                result.add(new YearReport((int) longValue(row[0]), longValue(row[1]), longValue(row[2])));
+            }
+
+            return result;
+        });
+    }
+
+    /**
+     * Returns numbers of all authors, books and pages
+     * With the report summary enabled the AUTHOR_TOTALS rows are summed,
+     * otherwise authors are counted and books are summed.
+     * @return the totals
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws TransactionRequiredException if a lock mode has been set and there is no transaction
+     * @throws PessimisticLockException if pessimistic locking fails and the transaction is rolled back
+     * @throws LockTimeoutException if pessimistic locking fails and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    public ReportTotals reportTotals() throws QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
+        return statistics.timedEntity("reportTotals", () -> {
+            EntityManager reader = reader();
+            ReportTotals totals;
+
+            if (context.isReportSummaryEnabled()) {
+                Object[] row = reader.createNamedQuery("AuthorTotals.totals", Object[].class).getSingleResult();
+                totals = new ReportTotals(longValue(row[0]), longValue(row[1]), longValue(row[2]));
+            } else {
+                Object[] row = reader.createNamedQuery("Book.totals", Object[].class).getSingleResult();
+                long authors = longValue(reader.createNamedQuery("Author.count").getSingleResult());
+                totals = new ReportTotals(authors, longValue(row[0]), longValue(row[1]));
+            }
+
+            return totals;
+        });
+    }
+
+    /**
+     * Computes AUTHOR_TOTALS again from the book table
+     * Needed after the report summary has been enabled on a database written
+     * with it disabled, or changed by another application.
+     * @return the number of authors in the summary
+     * @throws TransactionRequiredException if there is no transaction
+     * @throws QueryTimeoutException if the statement execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    public int rebuildReportSummary() throws TransactionRequiredException, QueryTimeoutException, PersistenceException {
+        return statistics.timedCount("rebuildReportSummary", () -> {
+            entityManager.flush();
+            return rebuildTotals();
+        });
+    }
+
+    /**
+     * Finds entity by its id
+     * @param <T> the entity type
+     * @param objectClass the entity class
+     * @param tId the entity id
+     * @return the entity with given id
+     * @throws IllegalArgumentException if the first argument does not denote an entity type or the second argument is is null
+     */
+    private <T> T find(Class<T> objectClass, Long tId) throws IllegalArgumentException {
+        EntityManager reader = reader();
+
+        if (tId != null) {
+            context.recordLookup(reader, objectClass, tId);
+        }
+
+        return reader.find(objectClass, tId);
+    }
+
+    /**
+     * Adds new entity
+     * @param <T> the entity type
+     * @param t the eintity instance
+     * @throws EntityExistsException if the entity already exists. (If the entity already exists, the EntityExistsException may be thrown when the persist operation is invoked, or the EntityExistsException or another PersistenceException may be thrown at flush or commit time.)
+     * @throws IllegalArgumentException if the instance is not an entity
      * @throws TransactionRequiredException if invoked on a container-managed entity manager of type PersistenceContextType.TRANSACTION and there is no transaction
      */
     private <T> void persist(T t) throws EntityExistsException, IllegalArgumentException, TransactionRequiredException {
         entityManager.persist(t);
+        pendingInvalidations.add(t.getClass());
+        pendingIndexUpdates.add(t);
     }
 
     /**
@@ -261,7 +1214,10 @@ public class DatabaseManager{
      * @throws TransactionRequiredException if invoked on a container-managed entity manager of type PersistenceContextType.TRANSACTION and there is no transactio
      */
     private <T> T merge(T t) throws IllegalArgumentException, TransactionRequiredException {
-        return entityManager.merge(t);
+        pendingInvalidations.add(t.getClass());
+        T merged = entityManager.merge(t);
+        pendingIndexUpdates.add(merged);
+        return merged;
     }
 
     /**
@@ -273,6 +1229,8 @@ public class DatabaseManager{
      */
     private <T> void remove(T t) throws IllegalArgumentException, TransactionRequiredException {
         entityManager.remove(t);
+        pendingInvalidations.add(t.getClass());
+        pendingIndexRemovals.add(t);
     }
 
     /**
@@ -291,7 +1249,523 @@ public class DatabaseManager{
         String namedQuery = objectClass.getName() + ".findAll";
         String[] split = namedQuery.split("\\.");
         namedQuery = split[split.length - 2] + "." + split[split.length -1];
-        Query query = entityManager.createNamedQuery(namedQuery);
+        Query query = reader().createNamedQuery(namedQuery);
         return query.getResultList();
     }
+
+    /**
+     * Returns entities of given entity class with id greater than given one
+     * @param <T> the entity type
+     * @param objectClass the entity class
+     * @param queryName the named query with the lastId parameter
+     * @param lastId the id after which the page starts
+     * @param limit the maximum number of returned entities
+     * @return the list of entities ordered by id
+     * @throws IllegalArgumentException if the limit is not positive
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws TransactionRequiredException if a lock mode has been set and there is no transaction
+     * @throws PessimisticLockException if pessimistic locking fails and the transaction is rolled back
+     * @throws LockTimeoutException if pessimistic locking fails and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    private <T> List<T> findAfter(Class<T> objectClass, String queryName, long lastId, int limit) throws IllegalArgumentException, QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page size must be a positive number");
+        }
+
+        TypedQuery<T> query = reader().createNamedQuery(queryName, objectClass);
+        query.setParameter("lastId", lastId);
+        query.setMaxResults(limit);
+        return query.getResultList();
+    }
+
+    /**
+     * Loads entities with given ids, ids of missing entities are skipped
+     * All entities are read by the findByIds named query of the entity class
+     * with one IN query, instead of one select per id.
+     * @param <T> the entity type
+     * @param objectClass the entity class
+     * @param ids the entity ids in ascending order
+     * @return the list of found entities ordered by id
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    private <T> List<T> findByIds(Class<T> objectClass, long[] ids) throws QueryTimeoutException, PersistenceException {
+        if (ids.length == 0) {
+            return new ArrayList<>();
+        }
+
+        List<Long> idList = new ArrayList<>(ids.length);
+
+        for (long id : ids) {
+            idList.add(id);
+        }
+
+        TypedQuery<T> query = reader().createNamedQuery(objectClass.getSimpleName() + ".findByIds", objectClass);
+        query.setParameter("ids", idList);
+        return query.getResultList();
+    }
+
+    /**
+     * Adds conditions, order and limit of given filter to the query and runs it
+     * Columns are compared with constants only, never wrapped in functions, so
+     * every condition can be answered from the index of its column. Title
+     * prefix becomes LIKE 'prefix%' with wildcards of the prefix escaped.
+     * @param <T> the result type
+     * @param reader the entity manager which created the query
+     * @param builder the criteria builder of the reader
+     * @param query the query selecting from books
+     * @param book the book root of the query
+     * @param filter the conditions, order and limit
+     * @return the query results
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    private <T> List<T> filter(EntityManager reader, CriteriaBuilder builder, CriteriaQuery<T> query, Root<Book> book, BookFilter filter) throws QueryTimeoutException, PersistenceException {
+        List<Predicate> predicates = new ArrayList<>();
+
+        if (filter.getMinPages() != null) {
+            predicates.add(builder.greaterThanOrEqualTo(book.<Long>get("pages"), filter.getMinPages()));
+        }
+
+        if (filter.getMaxPages() != null) {
+            predicates.add(builder.lessThanOrEqualTo(book.<Long>get("pages"), filter.getMaxPages()));
+        }
+
+        if (filter.getReleasedFrom() != null) {
+            predicates.add(builder.greaterThanOrEqualTo(book.<Date>get("releaseDate"), filter.getReleasedFrom()));
+        }
+
+        if (filter.getReleasedBefore() != null) {
+            predicates.add(builder.lessThan(book.<Date>get("releaseDate"), filter.getReleasedBefore()));
+        }
+
+        if (!filter.getAuthorIds().isEmpty()) {
+            predicates.add(book.get("author").get("id").in(filter.getAuthorIds()));
+        }
+
+        if (filter.getTitlePrefix() != null) {
+            String prefix = filter.getTitlePrefix()
+                    .replace(LIKE_ESCAPE, LIKE_ESCAPE + LIKE_ESCAPE)
+                    .replace("%", LIKE_ESCAPE + "%")
+                    .replace("_", LIKE_ESCAPE + "_");
+            predicates.add(builder.like(book.<String>get("title"), prefix + "%", LIKE_ESCAPE.charAt(0)));
+        }
+
+        query.where(predicates.toArray(new Predicate[predicates.size()]));
+
+        Path<?> ordered = book.get(filter.getOrder().getAttribute());
+        List<javax.persistence.criteria.Order> order = new ArrayList<>();
+        order.add(filter.isDescending() ? builder.desc(ordered) : builder.asc(ordered));
+
+        if (filter.getOrder() != BookFilter.Order.ID) {
+            order.add(builder.asc(book.get("id")));
+        }
+
+        query.orderBy(order);
+
+        TypedQuery<T> typedQuery = reader.createQuery(query);
+
+        if (filter.getLimit() > 0) {
+            typedQuery.setMaxResults(filter.getLimit());
+        }
+
+        return typedQuery.getResultList();
+    }
+
+    /**
+     * Runs named projection query with at most one parameter
+     * @param <T> the projection type
+     * @param queryName the named query name
+     * @param resultClass the projection class created by the query
+     * @param parameterName the query parameter name or null if the query has none
+     * @param value the query parameter value
+     * @param limit the maximum number of results, 0 for all
+     * @return the list of projections
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    private <T> List<T> list(String queryName, Class<T> resultClass, String parameterName, Object value, int limit) throws QueryTimeoutException, PersistenceException {
+        TypedQuery<T> query = reader().createNamedQuery(queryName, resultClass);
+
+        if (parameterName != null) {
+            query.setParameter(parameterName, value);
+        }
+
+        if (limit > 0) {
+            query.setMaxResults(limit);
+        }
+
+        return query.getResultList();
+    }
+
+    /**
+     * Runs named projection query selecting rows with given ids
+     * @param <T> the projection type
+     * @param queryName the named query name with the ids parameter
+     * @param resultClass the projection class created by the query
+     * @param ids the ids
+     * @return the list of projections ordered by id, ids of missing rows are skipped
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    private <T> List<T> listByIds(String queryName, Class<T> resultClass, long[] ids) throws QueryTimeoutException, PersistenceException {
+        if (ids.length == 0) {
+            return new ArrayList<>();
+        }
+
+        List<Long> idList = new ArrayList<>(ids.length);
+
+        for (long id : ids) {
+            idList.add(id);
+        }
+
+        return list(queryName, resultClass, "ids", idList, 0);
+    }
+
+    /**
+     * Returns the book title index, building it with one database scan on first use
+     * @return the built index
+     * @throws PersistenceException if reading titles fails
+     */
+    private TextIndex bookTitleIndex() throws PersistenceException {
+        TextIndex index = context.getBookTitleIndex();
+
+        if (!index.isBuilt()) {
+            index.build(consumer -> {
+                try (EntityCursor<Object[]> cursor = openCursor(entityManager, "SELECT e.id, e.title FROM Book e ORDER BY e.id", Object[].class, null)) {
+                    while (cursor.hasNext()) {
+                        Object[] row = cursor.next();
+                        consumer.accept((Long) row[0], (String) row[1]);
+                    }
+                }
+            });
+        }
+
+        return index;
+    }
+
+    /**
+     * Returns the author name index, building it with one database scan on first use
+     * @return the built index
+     * @throws PersistenceException if reading names fails
+     */
+    private TextIndex authorNameIndex() throws PersistenceException {
+        TextIndex index = context.getAuthorNameIndex();
+
+        if (!index.isBuilt()) {
+            index.build(consumer -> {
+                try (EntityCursor<Object[]> cursor = openCursor(entityManager, "SELECT e.id, e.name, e.lastName FROM Author e ORDER BY e.id", Object[].class, null)) {
+                    while (cursor.hasNext()) {
+                        Object[] row = cursor.next();
+                        consumer.accept((Long) row[0], row[1] + String.valueOf(TextIndex.FIELD_SEPARATOR) + row[2]);
+                    }
+                }
+            });
+        }
+
+        return index;
+    }
+
+    /**
+     * Records change of the number of books and pages of given author
+     * Does nothing when the report summary is disabled.
+     * @param author the author
+     * @param books the change of the number of books
+     * @param pages the change of the number of pages
+     */
+    private void recordTotals(Author author, long books, Long pages) {
+        if (author == null || !context.isReportSummaryEnabled()) {
+            return;
+        }
+
+        long[] change = pendingTotals.computeIfAbsent(author, key -> new long[2]);
+        change[0] += books;
+        change[1] += pages == null ? 0L : pages;
+    }
+
+    /**
+     * Forgets recorded changes of given authors, their totals were written by a bulk statement
+     * @param authorIds the author ids
+     */
+    private void dropTotals(List<Long> authorIds) {
+        Set<Long> ids = new HashSet<>(authorIds);
+        pendingTotals.keySet().removeIf(author -> ids.contains(author.getId()));
+    }
+
+    /**
+     * Adds recorded changes to AUTHOR_TOTALS with one batch of statements
+     * Called after flush, so ids of new authors are known. Rows of new
+     * authors are inserted, other rows are changed relative to the stored
+     * values, so concurrent transactions don't overwrite each other.
+     * @throws PersistenceException if the statements fail
+     */
+    private void applyTotals() throws PersistenceException {
+        if (pendingTotals.isEmpty()) {
+            return;
+        }
+
+        // many instances may stand for the same author, e.g. a reference and a loaded entity
+        Map<Long, long[]> changes = new HashMap<>();
+
+        for (Map.Entry<Author, long[]> entry : pendingTotals.entrySet()) {
+            long[] change = changes.computeIfAbsent(entry.getKey().getId(), key -> new long[2]);
+            change[0] += entry.getValue()[0];
+            change[1] += entry.getValue()[1];
+        }
+
+        pendingTotals.clear();
+        Connection connection = entityManager.unwrap(Connection.class);
+
+        try (PreparedStatement statement = connection.prepareStatement(TOTALS_UPSERT_SQL)) {
+            for (Map.Entry<Long, long[]> entry : changes.entrySet()) {
+                statement.setLong(1, entry.getKey());
+                statement.setLong(2, entry.getValue()[0]);
+                statement.setLong(3, entry.getValue()[1]);
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+        } catch (SQLException ex) {
+            throw new PersistenceException("Cannot update author totals: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Replaces all AUTHOR_TOTALS rows with totals computed from the book table
+     * @return the number of inserted rows
+     * @throws TransactionRequiredException if there is no transaction
+     * @throws PersistenceException if the statements fail
+     */
+    private int rebuildTotals() throws TransactionRequiredException, PersistenceException {
+        pendingTotals.clear();
+        entityManager.createNamedQuery("AuthorTotals.deleteAll").executeUpdate();
+        return entityManager.createNativeQuery(TOTALS_REBUILD_SQL).executeUpdate();
+    }
+
+    /**
+     * Converts aggregate value to long
+     * @param value the number returned by the query, null for an empty group
+     * @return the value or 0 if it is null
+     */
+    private long longValue(Object value) {
+        return value == null ? 0L : ((Number) value).longValue();
+    }
+
+    /**
+     * Updates text indexes with entities written in the committed transaction
+     */
+    private void updateTextIndexes() {
+        for (Object entity : pendingIndexUpdates) {
+            if (entity instanceof Book) {
+                Book book = (Book) entity;
+                context.getBookTitleIndex().put(book.getId(), book.getTitle());
+            } else if (entity instanceof Author) {
+                Author author = (Author) entity;
+                context.getAuthorNameIndex().put(author.getId(),
+                        author.getName() + TextIndex.FIELD_SEPARATOR + author.getLastName());
+            }
+        }
+
+        for (Object entity : pendingIndexRemovals) {
+            if (entity instanceof Book) {
+                context.getBookTitleIndex().remove(((Book) entity).getId());
+            } else if (entity instanceof Author) {
+                context.getAuthorNameIndex().remove(((Author) entity).getId());
+            }
+        }
+
+        pendingIndexUpdates.clear();
+        pendingIndexRemovals.clear();
+    }
+
+    /**
+     * Executes bulk update or delete statement
+     * Pending changes are flushed first and the persistence context is cleared
+     * afterwards, because the statement bypasses managed entities. Cached state
+     * of written types is dropped after commit.
+     * @param query the update or delete query with all parameters set
+     * @param writtenTypes the entity types changed by the statement
+     * @return the number of changed rows
+     * @throws TransactionRequiredException if there is no transaction
+     * @throws QueryTimeoutException if the statement execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    private int executeBulk(Query query, Class<?>... writtenTypes) throws TransactionRequiredException, QueryTimeoutException, PersistenceException {
+        entityManager.flush();
+        int count = query.executeUpdate();
+        entityManager.clear();
+        Collections.addAll(pendingBulkWrites, writtenTypes);
+
+        return count;
+    }
+
+    /**
+     * Removes quotes the command line leaves around search values
+     * @param text the searched value
+     * @return the value without quotes and surrounding white space
+     */
+    private static String unquote(String text) {
+        return text.replace("\"", "").trim();
+    }
+
+    /**
+     * Runs named query with single parameter through the query result cache
+     * Cached ids are resolved from the shared entity cache. If any of them
+     * has been dropped from there, the query is run again. The cache is used
+     * only outside transactions by reads of the primary: results inside a
+     * transaction may include its uncommitted writes, which stay cached if it
+     * rolls back, and a replica may still be behind when the result would be
+     * stored as current.
+     * @param <T> the entity type
+     * @param objectClass the entity class
+     * @param queryName the named query name
+     * @param parameterName the query parameter name
+     * @param value the query parameter value
+     * @return the list of entities returned by the query
+     * @throws QueryTimeoutException if the query execution exceeds the query timeout value set and only the statement is rolled back
+     * @throws TransactionRequiredException if a lock mode has been set and there is no transaction
+     * @throws PessimisticLockException if pessimistic locking fails and the transaction is rolled back
+     * @throws LockTimeoutException if pessimistic locking fails and only the statement is rolled back
+     * @throws PersistenceException if the query execution exceeds the query timeout value set and the transaction is rolled back
+     */
+    private <T> List<T> findCached(Class<T> objectClass, String queryName, String parameterName, Object value) throws QueryTimeoutException, TransactionRequiredException, PessimisticLockException, LockTimeoutException, PersistenceException {
+        EntityManager reader = reader();
+
+        if (reader != entityManager || entityManager.getTransaction().isActive()) {
+            Query query = reader.createNamedQuery(queryName);
+            query.setParameter(parameterName, value);
+            return query.getResultList();
+        }
+
+        QueryResultCache cache = context.getQueryResultCache();
+        Cache entityCache = reader.getEntityManagerFactory().getCache();
+        String key = QueryResultCache.key(queryName, value);
+        long[] ids = cache.get(key);
+
+        if (ids != null) {
+            List<T> result = new ArrayList<>(ids.length);
+
+            for (long id : ids) {
+                if (!entityCache.contains(objectClass, id)) {
+                    result = null;
+                    break;
+                }
+
+                result.add(find(objectClass, id));
+            }
+
+            if (result != null) {
+                return result;
+            }
+        }
+
+        long generation = cache.generation(objectClass);
+        Query query = reader.createNamedQuery(queryName);
+        query.setParameter(parameterName, value);
+        List<T> result = query.getResultList();
+        ids = new long[result.size()];
+        PersistenceUnitUtil util = reader.getEntityManagerFactory().getPersistenceUnitUtil();
+
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = (Long) util.getIdentifier(result.get(i));
+        }
+
+        cache.put(objectClass, key, ids, generation);
+        return result;
+    }
+
+    /**
+     * Sets entity graph as load graph of given query
+     * Single valued relationships present in the graph are left join fetched,
+     * so they are loaded by the query itself. Collections are batch fetched
+     * with one more query for all returned entities, join fetching them
+     * would repeat every entity row once per collection element. Unpaged
+     * queries use an EXISTS subquery repeating the original selection,
+     * paged queries use IN with the ids of the page, because the original
+     * selection cannot be limited inside a subquery.
+     * @param <T> the entity type
+     * @param reader the entity manager which created the query
+     * @param query the query to modify
+     * @param objectClass the entity class
+     * @param entityGraph the entity graph name
+     * @throws IllegalArgumentException if the entity graph doesn't exists
+     */
+    private <T> void applyEntityGraph(EntityManager reader, Query query, Class<T> objectClass, String entityGraph) throws IllegalArgumentException {
+        EntityGraph<?> graph = reader.getEntityGraph(entityGraph);
+        query.setHint(LOAD_GRAPH_HINT, graph);
+        EntityType<T> entityType = reader.getMetamodel().entity(objectClass);
+
+        for (AttributeNode<?> node : graph.getAttributeNodes()) {
+            Attribute<? super T, ?> attribute = entityType.getAttribute(node.getAttributeName());
+
+            if (attribute.isCollection()) {
+                query.setHint(QueryHints.BATCH, "e." + node.getAttributeName());
+
+                if (query.getMaxResults() == Integer.MAX_VALUE) {
+                    query.setHint(QueryHints.BATCH_TYPE, BatchFetchType.EXISTS);
+                } else {
+                    query.setHint(QueryHints.BATCH_TYPE, BatchFetchType.IN);
+                    query.setHint(QueryHints.BATCH_SIZE, query.getMaxResults());
+                }
+            } else if (attribute.isAssociation()) {
+                query.setHint(QueryHints.LEFT_FETCH, "e." + node.getAttributeName());
+            }
+        }
+    }
+
+    /**
+     * Opens scrollable cursor over all entities of given entity class ordered by id
+     * @param <T> the entity type
+     * @param objectClass the entity class
+     * @param joinFetch the relationship fetched with the same query or null
+     * @return the cursor over all entities
+     * @throws PersistenceException if the query execution fails
+     */
+    private <T> EntityCursor<T> streamAll(Class<T> objectClass, String joinFetch) throws PersistenceException {
+        return openCursor(reader(), "SELECT e FROM " + objectClass.getSimpleName() + " e ORDER BY e.id",
+                objectClass, joinFetch);
+    }
+
+    /**
+     * Opens scrollable cursor over results of given query
+     * @param <T> the result type
+     * @param reader the entity manager running the query
+     * @param jpql the query string
+     * @param resultClass the result class, Object[] for queries selecting many values
+     * @param joinFetch the relationship fetched with the same query or null
+     * @return the cursor over query results
+     * @throws PersistenceException if the query execution fails
+     */
+    private <T> EntityCursor<T> openCursor(EntityManager reader, String jpql, Class<T> resultClass, String joinFetch) throws PersistenceException {
+        Query query = reader.createQuery(jpql);
+        query.setHint(QueryHints.SCROLLABLE_CURSOR, HintValues.TRUE);
+        query.setHint(QueryHints.JDBC_FETCH_SIZE, CURSOR_FETCH_SIZE);
+
+        if (joinFetch != null) {
+            query.setHint(QueryHints.FETCH, joinFetch);
+        }
+
+        ScrollableCursor cursor = (ScrollableCursor) query.getSingleResult();
+        return new EntityCursor<>(reader, cursor, resultClass, CURSOR_FETCH_SIZE);
+    }
+
+    /**
+     * Returns entity manager which runs reads
+     * Reads go to the replica unless there is none, a transaction is active
+     * (so the transaction reads its own writes and modifies only entities of
+     * the primary) or a write was committed within the tolerated replica lag.
+     * @return the entity manager of the replica or the primary
+     */
+    private EntityManager reader() {
+        if (entityManager.getTransaction().isActive() || !context.isReplicaReadable()) {
+            return entityManager;
+        }
+
+        if (replicaEntityManager == null) {
+            replicaEntityManager = context.createReplicaEntityManager();
+        }
+
+        return replicaEntityManager;
+    }
 }
@@ -0,0 +1,339 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Calls, errors, rows and latency histograms of database operations of one context.
+ * DatabaseManager runs its public methods through timed() and its variants.
+ * Only the outermost timed call of a thread is recorded, calls it makes
+ * itself, such as the finds run by a merge or the work of inTransaction(),
+ * are part of its time and rows. While statistics are disabled the call is
+ * run without timing, so the cost is a read of one volatile field and of the
+ * call depth of the thread per call. Boundaries of timed calls are always
+ * passed to SqlProfiler, which groups statements by call to report N+1 query
+ * patterns also while statistics are disabled.
+ * Statistics are published as a JMX MBean named
+ * pl.polsl.gabrys.arkadiusz:type=DatabaseStatistics,context=N.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class DatabaseStatistics implements DatabaseStatisticsMBean {
+
+    /**
+     * Persistence unit property which enables statistics at startup
+     */
+    public static final String ENABLED_PROPERTY = "lab1.stats.enabled";
+
+    /**
+     * Operation name of the context startup, recorded even when statistics are disabled
+     */
+    public static final String BOOTSTRAP = "bootstrap";
+
+    /**
+     * Number of the next registered context, keeps MBean names unique
+     */
+    private static final AtomicInteger nextContextNumber = new AtomicInteger(1);
+
+    /**
+     * Statistics of operations by name
+     */
+    private final ConcurrentMap<String, OperationStatistics> operations;
+
+    /**
+     * Counters of the shared entity cache
+     */
+    private final CacheStatistics cacheStatistics;
+
+    /**
+     * Cache of named query results
+     */
+    private final QueryResultCache queryResultCache;
+
+    /**
+     * True while calls are timed and counted
+     */
+    private volatile boolean enabled;
+
+    /**
+     * Number of timed calls being run by the current thread
+     */
+    private final ThreadLocal<int[]> callDepth = ThreadLocal.withInitial(() -> new int[1]);
+
+    /**
+     * Name of the registered MBean or null if it is not registered
+     */
+    private ObjectName objectName;
+
+    /**
+     * Creates empty statistics
+     * @param cacheStatistics the counters of the shared entity cache
+     * @param queryResultCache the cache of named query results
+     * @param enabled true to collect statistics from the start
+     */
+    DatabaseStatistics(CacheStatistics cacheStatistics, QueryResultCache queryResultCache, boolean enabled) {
+        this.operations = new ConcurrentHashMap<>();
+        this.cacheStatistics = cacheStatistics;
+        this.queryResultCache = queryResultCache;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Starts timing of a call
+     * @return the start time to pass to a record method or 0 if statistics are disabled
+     */
+    long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Records successful call
+     * @param operation the operation name
+     * @param start the value returned by start()
+     * @param rows the number of rows returned or changed
+     */
+    void record(String operation, long start, long rows) {
+        if (start != 0L) {
+            getOperation(operation).record(System.nanoTime() - start, rows, false);
+        }
+    }
+
+    /**
+     * Records call which threw an exception
+     * @param operation the operation name
+     * @param start the value returned by start()
+     */
+    void recordError(String operation, long start) {
+        if (start != 0L) {
+            getOperation(operation).record(System.nanoTime() - start, 0L, true);
+        }
+    }
+
+    /**
+     * Runs a call, recording its time and rows or its error unless it is nested in another timed call
+     * @param <T> the result type
+     * @param operation the operation name
+     * @param work the call
+     * @param rows the function returning the number of rows of the result
+     * @return the result of the call
+     */
+    <T> T timed(String operation, Supplier<T> work, ToLongFunction<? super T> rows) {
+        int[] depth = callDepth.get();
+        // nested calls are already counted by the outermost one
+        long start = depth[0] == 0 ? start() : 0L;
+        T result;
+        depth[0]++;
+        SqlProfiler.enterCall();
+
+        try {
+            result = work.get();
+        } catch (RuntimeException ex) {
+            recordError(operation, start);
+            throw ex;
+        } finally {
+            SqlProfiler.exitCall(operation);
+            depth[0]--;
+        }
+
+        if (start != 0L) {
+            record(operation, start, rows.applyAsLong(result));
+        }
+
+        return result;
+    }
+
+    /**
+     * Runs a call without result, recording its time or its error
+     * @param operation the operation name
+     * @param rows the number of rows changed by the call
+     * @param work the call
+     */
+    void timed(String operation, long rows, Runnable work) {
+        timed(operation, () -> {
+            work.run();
+            return null;
+        }, result -> rows);
+    }
+
+    /**
+     * Runs a call which returns a list, the rows are the list elements
+     * @param <T> the element type
+     * @param operation the operation name
+     * @param work the call
+     * @return the returned list
+     */
+    <T> List<T> timedList(String operation, Supplier<List<T>> work) {
+        return timed(operation, work, List::size);
+    }
+
+    /**
+     * Runs a call which returns single entity, one row when it was found
+     * @param <T> the entity type
+     * @param operation the operation name
+     * @param work the call
+     * @return the returned entity or null if it was not found
+     */
+    <T> T timedEntity(String operation, Supplier<T> work) {
+        return timed(operation, work, entity -> entity == null ? 0L : 1L);
+    }
+
+    /**
+     * Runs a call which returns the number of changed rows
+     * @param operation the operation name
+     * @param work the call
+     * @return the number of changed rows
+     */
+    int timedCount(String operation, Supplier<Integer> work) {
+        return timed(operation, work, Integer::longValue);
+    }
+
+    /**
+     * Returns statistics of given operation, created on first use
+     * @param operation the operation name
+     * @return the operation statistics
+     */
+    public OperationStatistics getOperation(String operation) {
+        OperationStatistics statistics = operations.get(operation);
+
+        if (statistics == null) {
+            OperationStatistics created = new OperationStatistics(operation);
+            statistics = operations.putIfAbsent(operation, created);
+
+            if (statistics == null) {
+                statistics = created;
+            }
+        }
+
+        return statistics;
+    }
+
+    /**
+     * Returns statistics of all operations called at least once
+     * @return the statistics in alphabetical order of operation names
+     */
+    public List<OperationStatistics> getOperations() {
+        return new ArrayList<>(new TreeMap<>(operations).values());
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public String[] getOperationNames() {
+        return new TreeMap<>(operations).keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public long getCalls(String operation) {
+        OperationStatistics statistics = operations.get(operation);
+        return statistics == null ? 0L : statistics.getCalls();
+    }
+
+    @Override
+    public long getErrors(String operation) {
+        OperationStatistics statistics = operations.get(operation);
+        return statistics == null ? 0L : statistics.getErrors();
+    }
+
+    @Override
+    public long getRows(String operation) {
+        OperationStatistics statistics = operations.get(operation);
+        return statistics == null ? 0L : statistics.getRows();
+    }
+
+    @Override
+    public double getPercentileMillis(String operation, double percentile) {
+        OperationStatistics statistics = operations.get(operation);
+        return statistics == null ? 0.0 : statistics.getPercentileMillis(percentile);
+    }
+
+    @Override
+    public double getEntityCacheHitRate() {
+        return cacheStatistics.getHitRate();
+    }
+
+    @Override
+    public long getQueryCacheHits() {
+        return queryResultCache.getHits();
+    }
+
+    @Override
+    public long getQueryCacheMisses() {
+        return queryResultCache.getMisses();
+    }
+
+    @Override
+    public String[] getSummary() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("%-26s %8s %7s %10s %9s %9s %9s %9s %9s",
+                "operation", "calls", "errors", "rows", "mean ms", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+
+        for (OperationStatistics statistics : getOperations()) {
+            lines.add(statistics.toString());
+        }
+
+        lines.add(cacheStatistics.toString());
+        lines.add(queryResultCache.toString());
+
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    @Override
+    public void reset() {
+        for (OperationStatistics statistics : operations.values()) {
+            statistics.reset();
+        }
+
+        cacheStatistics.reset();
+    }
+
+    /**
+     * Publishes the statistics in the platform MBean server
+     * Statistics keep working when JMX is not available.
+     */
+    synchronized void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("pl.polsl.gabrys.arkadiusz:type=DatabaseStatistics,context="
+                    + nextContextNumber.getAndIncrement());
+            server.registerMBean(this, name);
+            objectName = name;
+        } catch (JMException | SecurityException ex) {
+            objectName = null;
+        }
+    }
+
+    /**
+     * Removes the statistics from the platform MBean server
+     */
+    synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException ex) {
+            // already removed
+        }
+
+        objectName = null;
+    }
+}
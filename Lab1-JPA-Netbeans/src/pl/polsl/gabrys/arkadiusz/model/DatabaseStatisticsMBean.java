@@ -0,0 +1,85 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+/**
+ * Management interface of database statistics published through JMX
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public interface DatabaseStatisticsMBean {
+
+    /**
+     * Checks whether calls are timed and counted
+     * @return true if statistics are collected
+     */
+    boolean isEnabled();
+
+    /**
+     * Turns collecting of statistics on or off
+     * @param enabled true to collect statistics
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * Returns names of operations called at least once
+     * @return the operation names in alphabetical order
+     */
+    String[] getOperationNames();
+
+    /**
+     * Returns number of calls of given operation
+     * @param operation the operation name
+     * @return the number of calls, including failed ones
+     */
+    long getCalls(String operation);
+
+    /**
+     * Returns number of failed calls of given operation
+     * @param operation the operation name
+     * @return the number of calls which threw an exception
+     */
+    long getErrors(String operation);
+
+    /**
+     * Returns number of rows returned or changed by given operation
+     * @param operation the operation name
+     * @return the number of rows
+     */
+    long getRows(String operation);
+
+    /**
+     * Returns latency percentile of given operation
+     * @param operation the operation name
+     * @param percentile the percentile between 0 and 100
+     * @return the latency in milliseconds
+     */
+    double getPercentileMillis(String operation, double percentile);
+
+    /**
+     * Returns hit rate of the shared entity cache
+     * @return the hit rate between 0 and 1
+     */
+    double getEntityCacheHitRate();
+
+    /**
+     * Returns number of named query results served from the query result cache
+     * @return the number of hits
+     */
+    long getQueryCacheHits();
+
+    /**
+     * Returns number of named queries which were run against the database
+     * @return the number of misses
+     */
+    long getQueryCacheMisses();
+
+    /**
+     * Returns all statistics formatted as a table
+     * @return the summary lines
+     */
+    String[] getSummary();
+
+    /**
+     * Resets counters of operations and of the shared entity cache to zero
+     */
+    void reset();
+}
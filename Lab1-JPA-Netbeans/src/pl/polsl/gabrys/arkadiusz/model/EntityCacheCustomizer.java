@@ -0,0 +1,50 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import org.eclipse.persistence.config.SessionCustomizer;
+import org.eclipse.persistence.descriptors.invalidation.TimeToLiveCacheInvalidationPolicy;
+import org.eclipse.persistence.sessions.Session;
+
+/**
+ * Sets time to live of Author and Book entities in the shared cache.
+ * Run by SessionSetup, registered with eclipselink.session.customizer. The time to live
+ * in milliseconds is read from the lab1.cache.ttl persistence unit property or,
+ * when missing, from the system property of the same name. Cache type and size
+ * are configured with eclipselink.cache.type and eclipselink.cache.size properties.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class EntityCacheCustomizer implements SessionCustomizer {
+
+    /**
+     * Name of the property holding time to live in milliseconds
+     */
+    public static final String TTL_PROPERTY = "lab1.cache.ttl";
+
+    /**
+     * Time to live used when the property is not set
+     */
+    private final Long DEFAULT_TTL = 600000L;
+
+    /**
+     * Sets time to live invalidation policy on cached entity descriptors
+     * @param session the session being deployed
+     * @throws NumberFormatException if the property is not a number
+     */
+    @Override
+    public void customize(Session session) throws NumberFormatException {
+        Object value = session.getProperty(TTL_PROPERTY);
+
+        if (value == null) {
+            value = System.getProperty(TTL_PROPERTY);
+        }
+
+        long ttl = value == null ? DEFAULT_TTL : Long.parseLong(value.toString().trim());
+
+        if (ttl <= 0) {
+            return;
+        }
+
+        session.getDescriptor(Author.class).setCacheInvalidationPolicy(new TimeToLiveCacheInvalidationPolicy(ttl));
+        session.getDescriptor(Book.class).setCacheInvalidationPolicy(new TimeToLiveCacheInvalidationPolicy(ttl));
+    }
+}
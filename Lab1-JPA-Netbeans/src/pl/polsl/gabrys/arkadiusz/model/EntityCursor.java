@@ -0,0 +1,94 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import javax.persistence.EntityManager;
+import org.eclipse.persistence.queries.ScrollableCursor;
+
+/**
+ * Iterates over query results fetched lazily from a database cursor.
+ * Entities already returned are detached every few rows so the persistence
+ * context does not grow with the number of rows.
+ * @param <T> the entity type
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class EntityCursor<T> implements Iterator<T>, AutoCloseable {
+
+    /**
+     * Entity manager which owns the cursor
+     */
+    private final EntityManager entityManager;
+
+    /**
+     * Underlying EclipseLink cursor
+     */
+    private final ScrollableCursor cursor;
+
+    /**
+     * Entity class used to cast results
+     */
+    private final Class<T> objectClass;
+
+    /**
+     * Number of rows after which the persistence context is cleared
+     */
+    private final int clearInterval;
+
+    /**
+     * Number of rows returned since the last clear
+     */
+    private int returned;
+
+    /**
+     * Initializes instance with given parameters
+     * @param entityManager the entity manager which owns the cursor
+     * @param cursor the opened cursor
+     * @param objectClass the entity class
+     * @param clearInterval the number of rows after which returned entities are detached
+     */
+    EntityCursor(EntityManager entityManager, ScrollableCursor cursor, Class<T> objectClass, int clearInterval) {
+        this.entityManager = entityManager;
+        this.cursor = cursor;
+        this.objectClass = objectClass;
+        this.clearInterval = clearInterval;
+        this.returned = 0;
+    }
+
+    /**
+     * Checks whether more rows are available
+     * @return true if next() will return an entity
+     */
+    @Override
+    public boolean hasNext() {
+        return cursor.hasNext();
+    }
+
+    /**
+     * Returns next entity, previously returned entities may already be detached
+     * @return the next entity
+     * @throws NoSuchElementException if there are no more rows
+     */
+    @Override
+    public T next() throws NoSuchElementException {
+        if (!cursor.hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        if (++returned > clearInterval) {
+            entityManager.clear();
+            returned = 1;
+        }
+
+        return objectClass.cast(cursor.next());
+    }
+
+    /**
+     * Closes the cursor and releases its connection
+     */
+    @Override
+    public void close() {
+        cursor.close();
+        entityManager.clear();
+    }
+}
@@ -0,0 +1,55 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import org.eclipse.persistence.config.SessionCustomizer;
+import org.eclipse.persistence.sequencing.Sequence;
+import org.eclipse.persistence.sessions.Session;
+
+/**
+ * Sets how many ids of Author and Book entities are allocated with one update of the ID_SEQUENCE table.
+ * The size is read from the lab1.id.allocation-size persistence unit property
+ * or, when missing, from the system property of the same name. Without it the
+ * allocationSize of the table generators is used. Larger blocks mean fewer
+ * sequence updates, ids skipped by a closed application are not reused.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class IdSequenceCustomizer implements SessionCustomizer {
+
+    /**
+     * Name of the property holding the number of ids allocated at once
+     */
+    public static final String ALLOCATION_SIZE_PROPERTY = "lab1.id.allocation-size";
+
+    /**
+     * Sets preallocation size of sequences used by entity descriptors
+     * @param session the session being deployed
+     * @throws NumberFormatException if the property is not a number
+     */
+    @Override
+    public void customize(Session session) throws NumberFormatException {
+        Object value = session.getProperty(ALLOCATION_SIZE_PROPERTY);
+
+        if (value == null) {
+            value = System.getProperty(ALLOCATION_SIZE_PROPERTY);
+        }
+
+        if (value == null) {
+            return;
+        }
+
+        int size = Integer.parseInt(value.toString().trim());
+
+        if (size <= 0) {
+            return;
+        }
+
+        for (Class<?> type : new Class<?>[] {Author.class, Book.class}) {
+            String name = session.getDescriptor(type).getSequenceNumberName();
+            Sequence sequence = name == null ? null : session.getDatasourceLogin().getSequence(name);
+
+            if (sequence != null) {
+                sequence.setPreallocationSize(size);
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+/**
+ * Summary of finished bulk import
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class ImportResult {
+
+    /**
+     * Number of imported rows
+     */
+    private final long rows;
+
+    /**
+     * Import duration in nanoseconds
+     */
+    private final long elapsedNanos;
+
+    /**
+     * Initializes instance with given parameters
+     * @param rows the number of imported rows
+     * @param elapsedNanos the import duration in nanoseconds
+     */
+    public ImportResult(long rows, long elapsedNanos) {
+        this.rows = rows;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Calculates import throughput
+     * @return the number of rows imported per second
+     */
+    public double getRowsPerSecond() {
+        if (elapsedNanos <= 0) {
+            return 0.0;
+        }
+
+        return rows * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Formats this summary in the form of string
+     * @return the string representing this summary
+     */
+    @Override
+    public String toString() {
+        return String.format("Imported %d rows in %.3f s (%.1f rows/s)",
+                rows, elapsedNanos / 1e9, getRowsPerSecond());
+    }
+}
@@ -0,0 +1,182 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe histogram of latencies in nanoseconds with fixed relative precision.
+ * Values are counted in log-linear buckets the same way as in HdrHistogram:
+ * values below SUB_BUCKETS have own buckets, larger values are split into
+ * powers of two and every power into SUB_BUCKETS / 2 linear buckets, so a
+ * value is reported with an error of at most 1 / 32 (about 3%). Recording
+ * is one index calculation and one atomic increment, without allocation.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class LatencyHistogram {
+
+    /**
+     * Number of bits of precision kept for every value
+     */
+    private static final int SUB_BUCKET_BITS = 6;
+
+    /**
+     * Number of buckets below the first power of two split into halves
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Number of linear buckets in every higher power of two
+     */
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+    /**
+     * Highest recorded power of two, larger values (about 2.4 hours) go to the last bucket
+     */
+    private static final int MAX_MAGNITUDE = 43;
+
+    /**
+     * Counts of values in buckets
+     */
+    private final AtomicLongArray counts;
+
+    /**
+     * Number of recorded values
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Sum of recorded values
+     */
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Largest recorded value
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Creates empty histogram
+     */
+    public LatencyHistogram() {
+        counts = new AtomicLongArray(bucketIndex(Long.MAX_VALUE) + 1);
+    }
+
+    /**
+     * Records single value
+     * @param nanos the latency in nanoseconds, negative values are recorded as zero
+     */
+    public void record(long nanos) {
+        long value = Math.max(0L, nanos);
+        counts.incrementAndGet(bucketIndex(value));
+        count.increment();
+        sum.add(value);
+
+        long current = max.get();
+
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Calculates the mean of recorded values
+     * @return the mean in nanoseconds, 0 when nothing was recorded
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0.0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Returns value below or equal to which given percent of recorded values fall
+     * The result is the highest value of the bucket holding the percentile.
+     * @param percentile the percentile between 0 and 100
+     * @return the value in nanoseconds, 0 when nothing was recorded
+     * @throws IllegalArgumentException if the percentile is out of range
+     */
+    public long getValueAtPercentile(double percentile) throws IllegalArgumentException {
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+
+        long total = 0;
+
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+
+        if (total == 0) {
+            return 0L;
+        }
+
+        long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+
+            if (seen >= rank) {
+                // the last bucket also counts all values beyond the range
+                return i == counts.length() - 1 ? max.get() : Math.min(highestValue(i), max.get());
+            }
+        }
+
+        return max.get();
+    }
+
+    /**
+     * Removes all recorded values
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0L);
+        }
+
+        count.reset();
+        sum.reset();
+        max.set(0L);
+    }
+
+    /**
+     * Calculates index of the bucket counting given value
+     * @param value the non negative value
+     * @return the bucket index
+     */
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int magnitude = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_MAGNITUDE);
+        int shift = magnitude - SUB_BUCKET_BITS + 1;
+        long subBucket = Math.min(value >>> shift, SUB_BUCKETS - 1);
+
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) (subBucket - HALF_SUB_BUCKETS);
+    }
+
+    /**
+     * Calculates the highest value counted by given bucket
+     * @param index the bucket index
+     * @return the highest value of the bucket
+     */
+    private static long highestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
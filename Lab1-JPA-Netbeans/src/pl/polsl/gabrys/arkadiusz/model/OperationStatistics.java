@@ -0,0 +1,118 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe counters and latency histogram of one database operation
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class OperationStatistics {
+
+    /**
+     * Nanoseconds in one millisecond
+     */
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    /**
+     * Operation name
+     */
+    private final String name;
+
+    /**
+     * Number of calls, including failed ones
+     */
+    private final LongAdder calls = new LongAdder();
+
+    /**
+     * Number of calls which threw an exception
+     */
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Number of rows returned or changed
+     */
+    private final LongAdder rows = new LongAdder();
+
+    /**
+     * Latencies of all calls
+     */
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * Creates empty statistics of given operation
+     * @param name the operation name
+     */
+    OperationStatistics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Counts single call
+     * @param nanos the call latency in nanoseconds
+     * @param rowCount the number of rows returned or changed
+     * @param failed true if the call threw an exception
+     */
+    void record(long nanos, long rowCount, boolean failed) {
+        calls.increment();
+        rows.add(rowCount);
+        latency.record(nanos);
+
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Returns latency percentile in milliseconds
+     * @param percentile the percentile between 0 and 100
+     * @return the latency in milliseconds
+     * @throws IllegalArgumentException if the percentile is out of range
+     */
+    public double getPercentileMillis(double percentile) throws IllegalArgumentException {
+        return latency.getValueAtPercentile(percentile) / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Resets all counters to zero
+     */
+    public void reset() {
+        calls.reset();
+        errors.reset();
+        rows.reset();
+        latency.reset();
+    }
+
+    /**
+     * Formats counters in the form of one summary line with latencies in milliseconds
+     * @return the string representing counters
+     */
+    @Override
+    public String toString() {
+        return String.format("%-26s %8d %7d %10d %9.3f %9.3f %9.3f %9.3f %9.3f",
+                name, getCalls(), getErrors(), getRows(),
+                latency.getMean() / NANOS_PER_MILLI,
+                getPercentileMillis(50.0), getPercentileMillis(90.0),
+                getPercentileMillis(99.0), latency.getMax() / NANOS_PER_MILLI);
+    }
+}
@@ -0,0 +1,237 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread safe cache of named query results keyed by query name and parameters.
+ * Only ids of the resulting entities are kept, the entities themselves are
+ * resolved through the shared entity cache. Entries are evicted in least
+ * recently used order when the entry count or estimated memory limit is
+ * exceeded, and all entries of an entity type are dropped when that type
+ * is written.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class QueryResultCache {
+
+    /**
+     * Estimated fixed memory cost of one entry in bytes
+     */
+    private final Integer ENTRY_OVERHEAD = 96;
+
+    /**
+     * Maximum number of cached results
+     */
+    private final int maxEntries;
+
+    /**
+     * Maximum estimated memory used by cached results in bytes
+     */
+    private final long maxBytes;
+
+    /**
+     * Cached results in access order
+     */
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * Write generation of every entity type, results computed in an older generation are not stored
+     */
+    private final Map<Class<?>, Long> generations;
+
+    /**
+     * Estimated memory used by cached results in bytes
+     */
+    private long usedBytes;
+
+    /**
+     * Number of lookups served from the cache
+     */
+    private long hits;
+
+    /**
+     * Number of lookups not found in the cache
+     */
+    private long misses;
+
+    /**
+     * Single cached result
+     */
+    private static class Entry {
+
+        /**
+         * Entity type returned by the query
+         */
+        private final Class<?> type;
+
+        /**
+         * Ids of the resulting entities in result order
+         */
+        private final long[] ids;
+
+        /**
+         * Estimated memory used by this entry in bytes
+         */
+        private final long bytes;
+
+        /**
+         * Initializes entry with given parameters
+         * @param type the entity type
+         * @param ids the ids of resulting entities
+         * @param bytes the estimated memory used
+         */
+        private Entry(Class<?> type, long[] ids, long bytes) {
+            this.type = type;
+            this.ids = ids;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Initializes cache with given limits
+     * @param maxEntries the maximum number of cached results, 0 disables the cache
+     * @param maxBytes the maximum estimated memory used by cached results
+     */
+    public QueryResultCache(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.generations = new HashMap<>();
+    }
+
+    /**
+     * Builds cache key from query name and parameter values
+     * @param queryName the named query name
+     * @param parameters the parameter values in fixed order
+     * @return the cache key
+     */
+    public static String key(String queryName, Object... parameters) {
+        StringBuilder key = new StringBuilder(queryName);
+
+        for (Object parameter : parameters) {
+            key.append('\u0000').append(parameter);
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * Returns cached ids for given key
+     * @param key the cache key
+     * @return the ids of resulting entities or null if not cached
+     */
+    public synchronized long[] get(String key) {
+        Entry entry = entries.get(key);
+
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return entry.ids;
+    }
+
+    /**
+     * Returns current write generation of given entity type
+     * Must be read before running the query whose result is stored with put().
+     * @param type the entity type
+     * @return the write generation
+     */
+    public synchronized long generation(Class<?> type) {
+        Long generation = generations.get(type);
+        return generation == null ? 0L : generation;
+    }
+
+    /**
+     * Stores query result unless the entity type was written since given generation
+     * @param type the entity type returned by the query
+     * @param key the cache key
+     * @param ids the ids of resulting entities
+     * @param generation the write generation read before the query was run
+     */
+    public synchronized void put(Class<?> type, String key, long[] ids, long generation) {
+        if (maxEntries <= 0 || generation != generation(type)) {
+            return;
+        }
+
+        long bytes = ENTRY_OVERHEAD + 2L * key.length() + 8L * ids.length;
+
+        if (bytes > maxBytes) {
+            return;
+        }
+
+        Entry previous = entries.put(key, new Entry(type, ids, bytes));
+
+        if (previous != null) {
+            usedBytes -= previous.bytes;
+        }
+
+        usedBytes += bytes;
+        Iterator<Entry> eldest = entries.values().iterator();
+
+        while (entries.size() > maxEntries || usedBytes > maxBytes) {
+            usedBytes -= eldest.next().bytes;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Drops all results of given entity type
+     * @param type the written entity type
+     */
+    public synchronized void invalidate(Class<?> type) {
+        generations.put(type, generation(type) + 1);
+        Iterator<Entry> iterator = entries.values().iterator();
+
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+
+            if (entry.type == type) {
+                usedBytes -= entry.bytes;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops all results
+     */
+    public synchronized void clear() {
+        for (Class<?> type : generations.keySet()) {
+            generations.put(type, generation(type) + 1);
+        }
+
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Formats cache state in the form of string
+     * @return the string representing cache state
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("query cache entries: %d; bytes: %d; hits: %d; misses: %d",
+                entries.size(), usedBytes, hits, misses);
+    }
+}
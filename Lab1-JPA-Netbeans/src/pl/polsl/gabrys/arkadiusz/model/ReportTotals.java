@@ -0,0 +1,65 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+/**
+ * Totals of the whole library, numbers of authors, books and pages
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public final class ReportTotals {
+
+    /**
+     * Number of authors
+     */
+    private final long authors;
+
+    /**
+     * Number of books
+     */
+    private final long books;
+
+    /**
+     * Sum of pages of all books
+     */
+    private final long pages;
+
+    /**
+     * Initializes instance with given parameters
+     * @param authors the number of authors
+     * @param books the number of books
+     * @param pages the sum of pages
+     */
+    public ReportTotals(long authors, long books, long pages) {
+        this.authors = authors;
+        this.books = books;
+        this.pages = pages;
+    }
+
+    public long getAuthors() {
+        return authors;
+    }
+
+    public long getBooks() {
+        return books;
+    }
+
+    public long getPages() {
+        return pages;
+    }
+
+    /**
+     * Calculates average number of pages of one book
+     * @return the average number of pages, 0 if there are no books
+     */
+    public double getAveragePages() {
+        return books == 0 ? 0.0 : (double) pages / books;
+    }
+
+    /**
+     * Formats totals in the form of string
+     * @return the string representing totals
+     */
+    @Override
+    public String toString() {
+        return String.format("%d; %d; %d; %.1f", authors, books, pages, getAveragePages());
+    }
+}
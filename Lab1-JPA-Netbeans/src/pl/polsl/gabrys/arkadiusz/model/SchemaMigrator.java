@@ -0,0 +1,378 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+
+/**
+ * Applies versioned SQL scripts from META-INF/migrations in order.
+ * Applied versions are recorded in the SCHEMA_VERSION table, so on every
+ * later start only the check for the table and one query reading the
+ * current version are executed. MySQL commits every DDL statement at once,
+ * so a script interrupted halfway stays partly applied. Scripts are
+ * therefore written to be run again where possible: tables are created IF
+ * NOT EXISTS, and CREATE INDEX or DROP INDEX statements are skipped when the
+ * index already exists or is already gone, because MySQL has no IF NOT
+ * EXISTS for indexes. Applied scripts are never edited, changes of the
+ * schema go to a new version. On MySQL concurrent migrations of many
+ * processes are serialized with GET_LOCK.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class SchemaMigrator {
+
+    /**
+     * Scripts in order of versions, the version is the number after V
+     */
+    private final String[] MIGRATIONS = {
+        "V1__create_tables.sql",
+        "V2__create_indexes.sql",
+        "V3__create_id_sequence.sql",
+        "V4__create_author_totals.sql",
+        "V5__create_book_pages_index.sql",
+        "V6__drop_book_author_index.sql"
+    };
+
+    /**
+     * Classpath directory with migration scripts
+     */
+    private final String MIGRATIONS_PATH = "META-INF/migrations/";
+
+    /**
+     * Name of the table with applied versions
+     */
+    private final String VERSION_TABLE = "SCHEMA_VERSION";
+
+    /**
+     * Name of the MySQL lock held while migrating
+     */
+    private final String LOCK_NAME = "lab1.schema.migration";
+
+    /**
+     * Seconds to wait for the migration lock held by another process
+     */
+    private final Integer LOCK_TIMEOUT = 60;
+
+    /**
+     * EclipseLink property which makes the entity manager keep one connection
+     * The MySQL lock belongs to the connection, it must outlive single transactions.
+     */
+    private final String EXCLUSIVE_CONNECTION_PROPERTY = "eclipselink.jdbc.exclusive-connection.mode";
+
+    /**
+     * CREATE INDEX statement, groups are the index and the table name
+     */
+    private final Pattern CREATE_INDEX = Pattern.compile("(?i)^CREATE\\s+(?:UNIQUE\\s+)?INDEX\\s+(\\w+)\\s+ON\\s+(\\w+).*");
+
+    /**
+     * DROP INDEX statement, groups are the index and the table name
+     */
+    private final Pattern DROP_INDEX = Pattern.compile("(?i)^DROP\\s+INDEX\\s+(\\w+)\\s+ON\\s+(\\w+).*");
+
+    /**
+     * Context whose database is migrated
+     */
+    private final DatabaseContext context;
+
+    /**
+     * Initializes instance with given parameter
+     * @param context the context whose database is migrated
+     */
+    public SchemaMigrator(DatabaseContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Applies all scripts newer than the current schema version
+     * The version table is created only when scripts are pending, after
+     * the migration lock is taken and the version is read again.
+     * @return the number of applied scripts
+     * @throws PersistenceException if a script cannot be read or executed or the lock cannot be taken
+     */
+    public int migrate() throws PersistenceException {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(EXCLUSIVE_CONNECTION_PROPERTY, "Always");
+        EntityManager entityManager = context.getEntityManagerFactory().createEntityManager(properties);
+        int latest = versionOf(MIGRATIONS[MIGRATIONS.length - 1]);
+        int applied = 0;
+        boolean locked = false;
+
+        try {
+            entityManager.getTransaction().begin();
+            Connection connection = entityManager.unwrap(Connection.class);
+            int current = tableExists(connection, VERSION_TABLE) ? currentVersion(connection) : 0;
+
+            if (current >= latest) {
+                entityManager.getTransaction().commit();
+                return 0;
+            }
+
+            locked = lock(connection);
+
+            if (!tableExists(connection, VERSION_TABLE)) {
+                createVersionTable(connection);
+            }
+
+            // another process may have migrated while this one waited for the lock
+            current = currentVersion(connection);
+            entityManager.getTransaction().commit();
+
+            for (String script : MIGRATIONS) {
+                int version = versionOf(script);
+
+                if (version <= current) {
+                    continue;
+                }
+
+                entityManager.getTransaction().begin();
+                connection = entityManager.unwrap(Connection.class);
+
+                for (String sql : readStatements(script)) {
+                    if (!isApplied(connection, sql)) {
+                        try (Statement statement = connection.createStatement()) {
+                            statement.execute(sql);
+                        }
+                    }
+                }
+
+                recordVersion(connection, version, script);
+                entityManager.getTransaction().commit();
+                applied++;
+            }
+        } catch (SQLException | IOException ex) {
+            throw new PersistenceException("Schema migration failed: " + ex.getMessage(), ex);
+        } finally {
+            if (entityManager.getTransaction().isActive()) {
+                entityManager.getTransaction().rollback();
+            }
+
+            if (locked) {
+                unlock(entityManager);
+            }
+
+            entityManager.close();
+        }
+
+        return applied;
+    }
+
+    /**
+     * Takes the migration lock on MySQL, other databases are not locked
+     * Embedded databases of benchmarks are opened by a single process.
+     * @param connection the connection which holds the lock
+     * @return true if the lock has been taken
+     * @throws SQLException if the lock query fails
+     * @throws PersistenceException if the lock is not released by another process in time
+     */
+    private boolean lock(Connection connection) throws SQLException, PersistenceException {
+        if (!connection.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql")) {
+            return false;
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            statement.setString(1, LOCK_NAME);
+            statement.setInt(2, LOCK_TIMEOUT);
+
+            try (ResultSet result = statement.executeQuery()) {
+                if (!result.next() || result.getInt(1) != 1) {
+                    throw new PersistenceException("Schema migration lock is held by another process");
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Releases the migration lock, failures are ignored because closing the connection releases it as well
+     * @param entityManager the entity manager whose connection holds the lock
+     */
+    private void unlock(EntityManager entityManager) {
+        try {
+            entityManager.getTransaction().begin();
+            Connection connection = entityManager.unwrap(Connection.class);
+
+            try (PreparedStatement statement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+                statement.setString(1, LOCK_NAME);
+                statement.executeQuery().close();
+            }
+
+            entityManager.getTransaction().commit();
+        } catch (SQLException | PersistenceException ex) {
+            if (entityManager.getTransaction().isActive()) {
+                entityManager.getTransaction().rollback();
+            }
+        }
+    }
+
+    /**
+     * Checks whether table exists in the current database
+     * @param connection the connection
+     * @param table the table name
+     * @return true if the table exists
+     * @throws SQLException if reading metadata fails
+     */
+    private boolean tableExists(Connection connection, String table) throws SQLException {
+        try (ResultSet result = connection.getMetaData().getTables(connection.getCatalog(), null, table, null)) {
+            return result.next();
+        }
+    }
+
+    /**
+     * Checks whether index exists on table of the current database
+     * @param connection the connection
+     * @param table the table name
+     * @param index the index name
+     * @return true if the index exists
+     * @throws SQLException if reading metadata fails
+     */
+    private boolean indexExists(Connection connection, String table, String index) throws SQLException {
+        try (ResultSet result = connection.getMetaData().getIndexInfo(connection.getCatalog(), null, table, false, true)) {
+            while (result.next()) {
+                if (index.equalsIgnoreCase(result.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks whether index statement has already taken effect
+     * Other statements are idempotent themselves and always executed.
+     * @param connection the connection
+     * @param sql the statement
+     * @return true if the statement creates an existing index or drops a missing one
+     * @throws SQLException if reading metadata fails
+     */
+    private boolean isApplied(Connection connection, String sql) throws SQLException {
+        Matcher create = CREATE_INDEX.matcher(sql);
+
+        if (create.matches()) {
+            return indexExists(connection, create.group(2), create.group(1));
+        }
+
+        Matcher drop = DROP_INDEX.matcher(sql);
+
+        if (drop.matches()) {
+            return !indexExists(connection, drop.group(2), drop.group(1));
+        }
+
+        return false;
+    }
+
+    /**
+     * Creates table with applied versions
+     * @param connection the connection
+     * @throws SQLException if the statement fails
+     */
+    private void createVersionTable(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + VERSION_TABLE + " ("
+                    + "VERSION INTEGER NOT NULL, "
+                    + "SCRIPT VARCHAR(255) NOT NULL, "
+                    + "APPLIED_ON TIMESTAMP NOT NULL, "
+                    + "PRIMARY KEY (VERSION))");
+        }
+    }
+
+    /**
+     * Reads the highest applied version
+     * @param connection the connection
+     * @return the current version, 0 for an empty database
+     * @throws SQLException if the query fails
+     */
+    private int currentVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+                ResultSet result = statement.executeQuery("SELECT MAX(VERSION) FROM " + VERSION_TABLE)) {
+            return result.next() ? result.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Records applied script
+     * @param connection the connection
+     * @param version the script version
+     * @param script the script name
+     * @throws SQLException if the statement fails
+     */
+    private void recordVersion(Connection connection, int version, String script) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO " + VERSION_TABLE + " (VERSION, SCRIPT, APPLIED_ON) VALUES (?, ?, ?)")) {
+            statement.setInt(1, version);
+            statement.setString(2, script);
+            statement.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Extracts version from script name
+     * @param script the script name in the form V{version}__{description}.sql
+     * @return the script version
+     * @throws NumberFormatException if the name doesn't follow the pattern
+     */
+    private int versionOf(String script) throws NumberFormatException {
+        return Integer.parseInt(script.substring(1, script.indexOf("__")));
+    }
+
+    /**
+     * Reads statements of single script, statements end with a semicolon
+     * and lines starting with -- are comments
+     * @param script the script name
+     * @return the list of statements
+     * @throws IOException if the script cannot be read
+     */
+    private List<String> readStatements(String script) throws IOException {
+        InputStream stream = SchemaMigrator.class.getClassLoader().getResourceAsStream(MIGRATIONS_PATH + script);
+
+        if (stream == null) {
+            throw new IOException("Missing migration script: " + script);
+        }
+
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+
+                if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                    continue;
+                }
+
+                current.append(trimmed).append(' ');
+
+                if (trimmed.endsWith(";")) {
+                    statements.add(current.substring(0, current.lastIndexOf(";")).trim());
+                    current.setLength(0);
+                }
+            }
+        }
+
+        if (current.toString().trim().length() > 0) {
+            statements.add(current.toString().trim());
+        }
+
+        return statements;
+    }
+}
@@ -0,0 +1,35 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import org.eclipse.persistence.config.SessionCustomizer;
+import org.eclipse.persistence.sessions.Session;
+
+/**
+ * Runs all session customizers of the persistence unit.
+ * EclipseLink accepts only one class in the eclipselink.session.customizer
+ * property, so this one is registered and delegates to the others in order.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class SessionSetup implements SessionCustomizer {
+
+    /**
+     * Customizers run in order
+     */
+    private final SessionCustomizer[] customizers = {
+        new EntityCacheCustomizer(),
+        new IdSequenceCustomizer(),
+        new SqlLogCustomizer()
+    };
+
+    /**
+     * Runs all customizers
+     * @param session the session being deployed
+     * @throws Exception if any customizer fails
+     */
+    @Override
+    public void customize(Session session) throws Exception {
+        for (SessionCustomizer customizer : customizers) {
+            customizer.customize(session);
+        }
+    }
+}
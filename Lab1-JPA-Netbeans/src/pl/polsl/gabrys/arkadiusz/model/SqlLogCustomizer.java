@@ -0,0 +1,217 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import org.eclipse.persistence.config.SessionCustomizer;
+import org.eclipse.persistence.sessions.Session;
+
+/**
+ * Installs SqlProfiler which writes slow SQL statements to rolling log files.
+ * Run by SessionSetup. Properties are read from the persistence unit or, when
+ * missing, from system properties of the same name. Profiling is opt-in: the
+ * persistence unit doesn't set lab1.sql.log, so the profiler is not installed
+ * and statements are not timed at all unless it is given, for example with
+ * java -Dlab1.sql.log=lab1-sql.%g.log -jar Lab1-JPA.jar ... Log files are
+ * created when the first statement is logged.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class SqlLogCustomizer implements SessionCustomizer {
+
+    /**
+     * Name of the property holding the log file pattern, for example lab1-sql.%g.log
+     */
+    public static final String LOG_FILE_PROPERTY = "lab1.sql.log";
+
+    /**
+     * Name of the property holding the maximum size of one log file in bytes
+     */
+    public static final String LOG_LIMIT_PROPERTY = "lab1.sql.log.limit";
+
+    /**
+     * Name of the property holding the number of rolled log files
+     */
+    public static final String LOG_COUNT_PROPERTY = "lab1.sql.log.count";
+
+    /**
+     * Name of the property holding the duration in milliseconds from which statements are logged
+     */
+    public static final String THRESHOLD_PROPERTY = "lab1.sql.threshold";
+
+    /**
+     * Name of the property which replaces bind values with their types when true
+     */
+    public static final String REDACT_PROPERTY = "lab1.sql.redact";
+
+    /**
+     * Name of the property holding the number of same statements in one call reported as N+1
+     */
+    public static final String N_PLUS_ONE_PROPERTY = "lab1.sql.n-plus-one";
+
+    /**
+     * Log file size used when the property is not set
+     */
+    private final Integer DEFAULT_LOG_LIMIT = 10 << 20;
+
+    /**
+     * Number of log files used when the property is not set
+     */
+    private final Integer DEFAULT_LOG_COUNT = 5;
+
+    /**
+     * Threshold used when the property is not set
+     */
+    private final Long DEFAULT_THRESHOLD = 100L;
+
+    /**
+     * N+1 threshold used when the property is not set
+     */
+    private final Integer DEFAULT_N_PLUS_ONE = 10;
+
+    /**
+     * Handler which opens the log file on first use
+     */
+    private static class LazyFileHandler extends Handler {
+
+        /**
+         * Log file pattern
+         */
+        private final String pattern;
+
+        /**
+         * Maximum size of one file
+         */
+        private final int limit;
+
+        /**
+         * Number of rolled files
+         */
+        private final int count;
+
+        /**
+         * Opened handler or null before the first record
+         */
+        private FileHandler handler;
+
+        /**
+         * Creates handler writing to given files
+         * @param pattern the log file pattern
+         * @param limit the maximum size of one file in bytes
+         * @param count the number of rolled files
+         */
+        private LazyFileHandler(String pattern, int limit, int count) {
+            this.pattern = pattern;
+            this.limit = limit;
+            this.count = count;
+            setFormatter(new LineFormatter());
+        }
+
+        /**
+         * Writes record, opening the log file on the first call
+         * @param record the log record
+         */
+        @Override
+        public synchronized void publish(LogRecord record) {
+            if (!isLoggable(record)) {
+                return;
+            }
+
+            if (handler == null) {
+                try {
+                    handler = new FileHandler(pattern, limit, count, true);
+                    handler.setFormatter(getFormatter());
+                } catch (IOException | SecurityException ex) {
+                    reportError("Cannot open SQL log " + pattern, ex, 0);
+                    return;
+                }
+            }
+
+            handler.publish(record);
+        }
+
+        @Override
+        public synchronized void flush() {
+            if (handler != null) {
+                handler.flush();
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            if (handler != null) {
+                handler.close();
+            }
+        }
+    }
+
+    /**
+     * Formats record as one line with time, level and message
+     */
+    private static class LineFormatter extends Formatter {
+
+        /**
+         * Format of the record time
+         */
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy.MM.dd HH:mm:ss.SSS");
+
+        /**
+         * Formats single record
+         * @param record the log record
+         * @return the formatted line
+         */
+        @Override
+        public synchronized String format(LogRecord record) {
+            return dateFormat.format(new Date(record.getMillis())) + " " + record.getLevel() + " "
+                    + formatMessage(record) + System.lineSeparator();
+        }
+    }
+
+    /**
+     * Installs the profiler when the log file is configured
+     * @param session the session being deployed
+     * @throws NumberFormatException if a numeric property is not a number
+     */
+    @Override
+    public void customize(Session session) throws NumberFormatException {
+        Object file = getProperty(session, LOG_FILE_PROPERTY);
+
+        if (file == null || file.toString().trim().isEmpty()) {
+            return;
+        }
+
+        Object limit = getProperty(session, LOG_LIMIT_PROPERTY);
+        Object count = getProperty(session, LOG_COUNT_PROPERTY);
+        Object threshold = getProperty(session, THRESHOLD_PROPERTY);
+        Object redact = getProperty(session, REDACT_PROPERTY);
+        Object nPlusOne = getProperty(session, N_PLUS_ONE_PROPERTY);
+
+        // one logger per session, so the primary and the replica can log to different files
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(new LazyFileHandler(file.toString().trim(),
+                limit == null ? DEFAULT_LOG_LIMIT : Integer.parseInt(limit.toString().trim()),
+                count == null ? DEFAULT_LOG_COUNT : Integer.parseInt(count.toString().trim())));
+
+        session.setProfiler(new SqlProfiler(logger,
+                threshold == null ? DEFAULT_THRESHOLD : Long.parseLong(threshold.toString().trim()),
+                redact == null || Boolean.parseBoolean(redact.toString().trim()),
+                nPlusOne == null ? DEFAULT_N_PLUS_ONE : Integer.parseInt(nPlusOne.toString().trim())));
+    }
+
+    /**
+     * Reads session property or, when missing, system property of the same name
+     * @param session the session being deployed
+     * @param name the property name
+     * @return the property value or null if it is not set
+     */
+    private Object getProperty(Session session, String name) {
+        Object value = session.getProperty(name);
+        return value == null ? System.getProperty(name) : value;
+    }
+}
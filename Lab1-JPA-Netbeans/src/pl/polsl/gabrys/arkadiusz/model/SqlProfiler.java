@@ -0,0 +1,374 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.eclipse.persistence.internal.sessions.AbstractRecord;
+import org.eclipse.persistence.internal.sessions.AbstractSession;
+import org.eclipse.persistence.queries.DatabaseQuery;
+import org.eclipse.persistence.sessions.Record;
+import org.eclipse.persistence.sessions.SessionProfiler;
+import org.eclipse.persistence.sessions.SessionProfilerAdapter;
+
+/**
+ * Session profiler which logs slow SQL statements and flags N+1 query patterns.
+ * Every query which reached the database is recorded with its SQL, bind values,
+ * number of returned or changed rows and duration without nested queries, for
+ * example the eager loads of Author.books run while Author.findAll is read.
+ * Statements slower than the threshold are written to the logger at WARNING.
+ * Statements are grouped by outermost DatabaseManager call, whether or not
+ * DatabaseStatistics are enabled, when the same SQL runs at least
+ * nPlusOneThreshold times in one call it is logged as a possible N+1.
+ * Installed by SqlLogCustomizer.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class SqlProfiler extends SessionProfilerAdapter {
+
+    /**
+     * Nanoseconds in one millisecond
+     */
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    /**
+     * Statements and queries of the current thread
+     */
+    private static final ThreadLocal<Trace> TRACE = ThreadLocal.withInitial(Trace::new);
+
+    /**
+     * True once any profiler has been created, before that call boundaries are ignored
+     */
+    private static volatile boolean installed;
+
+    /**
+     * Output of slow statements and N+1 warnings
+     */
+    private final Logger logger;
+
+    /**
+     * Duration from which statements are logged in nanoseconds
+     */
+    private final long thresholdNanos;
+
+    /**
+     * True if bind values are replaced with their types
+     */
+    private final boolean redact;
+
+    /**
+     * Number of same statements in one call from which N+1 is reported, 0 to disable
+     */
+    private final int nPlusOneThreshold;
+
+    /**
+     * Number of statements which reached the database
+     */
+    private final LongAdder statements = new LongAdder();
+
+    /**
+     * Number of statements logged as slow
+     */
+    private final LongAdder slowStatements = new LongAdder();
+
+    /**
+     * Number of reported N+1 patterns
+     */
+    private final LongAdder nPlusOnePatterns = new LongAdder();
+
+    /**
+     * Query being executed on the current thread
+     */
+    private static class Frame {
+
+        /**
+         * Executed query
+         */
+        private final DatabaseQuery query;
+
+        /**
+         * Number of nested executions of the same query, for example by the unit of work and its parent session
+         */
+        private int reentries;
+
+        /**
+         * Time spent in nested queries in nanoseconds
+         */
+        private long nestedNanos;
+
+        /**
+         * True if the query sent a statement to the database
+         */
+        private boolean executed;
+
+        /**
+         * Creates frame of given query
+         * @param query the executed query
+         */
+        private Frame(DatabaseQuery query) {
+            this.query = query;
+        }
+    }
+
+    /**
+     * Queries and statements of one thread
+     */
+    private static class Trace {
+
+        /**
+         * Queries being executed, the innermost on top
+         */
+        private final Deque<Frame> frames = new ArrayDeque<>();
+
+        /**
+         * Depth of nested DatabaseManager calls
+         */
+        private int callDepth;
+
+        /**
+         * Number of executions of every SQL in the current DatabaseManager call
+         */
+        private final Map<String, Integer> callStatements = new HashMap<>();
+
+        /**
+         * Profiler which recorded statements of the current call
+         */
+        private SqlProfiler callProfiler;
+    }
+
+    /**
+     * Creates profiler
+     * @param logger the output of slow statements and N+1 warnings
+     * @param thresholdMillis the duration in milliseconds from which statements are logged, 0 logs all
+     * @param redact true to replace bind values with their types
+     * @param nPlusOneThreshold the number of same statements in one call reported as N+1, 0 to disable
+     */
+    public SqlProfiler(Logger logger, long thresholdMillis, boolean redact, int nPlusOneThreshold) {
+        this.logger = logger;
+        this.thresholdNanos = thresholdMillis * 1000000L;
+        this.redact = redact;
+        this.nPlusOneThreshold = nPlusOneThreshold;
+        installed = true;
+    }
+
+    /**
+     * Marks start of a DatabaseManager call, called by DatabaseStatistics
+     */
+    static void enterCall() {
+        if (installed) {
+            TRACE.get().callDepth++;
+        }
+    }
+
+    /**
+     * Marks end of a DatabaseManager call and reports N+1 patterns of the outermost call
+     * @param operation the name of the ending call
+     */
+    static void exitCall(String operation) {
+        if (!installed) {
+            return;
+        }
+
+        Trace trace = TRACE.get();
+
+        if (trace.callDepth > 0 && --trace.callDepth > 0) {
+            return;
+        }
+
+        if (trace.callProfiler != null) {
+            trace.callProfiler.reportNPlusOne(trace.callStatements, operation);
+        }
+
+        trace.callStatements.clear();
+        trace.callProfiler = null;
+    }
+
+    /**
+     * Executes query and records it when it reached the database
+     * @param query the query
+     * @param row the query arguments
+     * @param session the session executing the query
+     * @return the query result
+     */
+    @Override
+    public Object profileExecutionOfQuery(DatabaseQuery query, Record row, AbstractSession session) {
+        Trace trace = TRACE.get();
+        Frame frame = trace.frames.peek();
+
+        if (frame != null && frame.query == query) {
+            frame.reentries++;
+
+            try {
+                return session.internalExecuteQuery(query, (AbstractRecord) row);
+            } finally {
+                frame.reentries--;
+            }
+        }
+
+        frame = new Frame(query);
+        trace.frames.push(frame);
+        long start = System.nanoTime();
+        Object result = null;
+
+        try {
+            result = session.internalExecuteQuery(query, (AbstractRecord) row);
+            return result;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            trace.frames.pop();
+
+            if (frame.executed) {
+                record(trace, query, row, nanos - frame.nestedNanos, rowCount(query, result));
+            }
+
+            Frame parent = trace.frames.peek();
+
+            // time of logging is not counted to the parent query either
+            if (parent != null) {
+                parent.nestedNanos += System.nanoTime() - start;
+            }
+        }
+    }
+
+    /**
+     * Marks the current query as sent to the database
+     * @param operationName the profiled operation
+     * @param query the query of the operation
+     * @param weight the operation weight
+     */
+    @Override
+    public void startOperationProfile(String operationName, DatabaseQuery query, int weight) {
+        if (SessionProfiler.StatementExecute.equals(operationName)) {
+            Frame frame = TRACE.get().frames.peek();
+
+            if (frame != null) {
+                frame.executed = true;
+            }
+        }
+    }
+
+    /**
+     * Returns weight of profiled operations, all of them are needed to see statement executions
+     * @return the profile weight
+     */
+    @Override
+    public int getProfileWeight() {
+        return SessionProfiler.ALL;
+    }
+
+    public long getStatementCount() {
+        return statements.sum();
+    }
+
+    public long getSlowStatementCount() {
+        return slowStatements.sum();
+    }
+
+    public long getNPlusOneCount() {
+        return nPlusOnePatterns.sum();
+    }
+
+    /**
+     * Counts statement and logs it when it is slow
+     * @param trace the trace of the current thread
+     * @param query the executed query
+     * @param row the query arguments
+     * @param nanos the duration without nested queries
+     * @param rows the number of returned or changed rows, -1 if unknown
+     */
+    private void record(Trace trace, DatabaseQuery query, Record row, long nanos, long rows) {
+        String sql = query.getSQLString();
+        statements.increment();
+
+        if (trace.callDepth > 0 && sql != null && nPlusOneThreshold > 0) {
+            trace.callStatements.merge(sql, 1, Integer::sum);
+            trace.callProfiler = this;
+        }
+
+        if (nanos < thresholdNanos || !logger.isLoggable(Level.WARNING)) {
+            return;
+        }
+
+        slowStatements.increment();
+        logger.warning(String.format("slow statement: %.3f ms; rows: %s; query: %s; sql: %s; binds: %s",
+                nanos / NANOS_PER_MILLI,
+                rows < 0 ? "?" : String.valueOf(rows),
+                query.getName() != null && !query.getName().isEmpty() ? query.getName() : query.getClass().getSimpleName(),
+                sql,
+                formatBinds(row)));
+    }
+
+    /**
+     * Logs statements repeated in one DatabaseManager call
+     * @param callStatements the number of executions of every SQL in the call
+     * @param operation the call name
+     */
+    private void reportNPlusOne(Map<String, Integer> callStatements, String operation) {
+        for (Map.Entry<String, Integer> entry : callStatements.entrySet()) {
+            if (entry.getValue() >= nPlusOneThreshold) {
+                nPlusOnePatterns.increment();
+                logger.warning(String.format("possible N+1: %d statements in %s: %s",
+                        entry.getValue(), operation, entry.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Formats query arguments
+     * @param row the query arguments or null
+     * @return the values, or their types when redacted
+     */
+    private String formatBinds(Record row) {
+        if (row == null || row.isEmpty()) {
+            return "[]";
+        }
+
+        Collection<Object> values = row.values();
+        StringBuilder builder = new StringBuilder("[");
+        Iterator<Object> iterator = values.iterator();
+
+        while (iterator.hasNext()) {
+            Object value = iterator.next();
+
+            if (value == null) {
+                builder.append("null");
+            } else if (redact) {
+                builder.append('<').append(value.getClass().getSimpleName()).append('>');
+            } else {
+                builder.append(value);
+            }
+
+            if (iterator.hasNext()) {
+                builder.append(", ");
+            }
+        }
+
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Calculates number of rows returned or changed by a query
+     * @param query the executed query
+     * @param result the query result
+     * @return the number of rows, -1 if unknown
+     */
+    private static long rowCount(DatabaseQuery query, Object result) {
+        if (result instanceof List) {
+            return ((List<?>) result).size();
+        } else if (result instanceof Number && query.isModifyQuery()) {
+            return ((Number) result).longValue();
+        } else if (result == null) {
+            return 0;
+        } else if (result instanceof Collection || result instanceof Iterator) {
+            return -1;
+        }
+
+        return 1;
+    }
+}
@@ -0,0 +1,613 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In memory inverted trigram index for substring and prefix search.
+ * Every document is a folded text identified by entity id: lower cased and
+ * without diacritics, like the case and accent insensitive MySQL collations,
+ * so "Łódź" is found by "lodz". Queries are folded the same way. Each
+ * trigram of a text maps to a posting list of distinct ids kept sorted
+ * in primitive arrays. Updates and removals take the id out of postings
+ * of the old text. A query picks the shortest posting list among its
+ * trigrams and verifies candidates against stored texts in id order, so
+ * the first limit matches are the lowest matching ids.
+ * Queries shorter than a trigram scan all stored texts.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class TextIndex {
+
+    /**
+     * Separator between fields of one document, prefix search matches the start of any field
+     */
+    public static final char FIELD_SEPARATOR = '\n';
+
+    /**
+     * Number of characters in one gram
+     */
+    private final Integer GRAM_LENGTH = 3;
+
+    /**
+     * Initial capacity of hash tables, must be a power of two
+     */
+    private final Integer INITIAL_CAPACITY = 1024;
+
+    /**
+     * Initial capacity of a posting list
+     */
+    private final Integer INITIAL_POSTING_CAPACITY = 4;
+
+    /**
+     * Guards all fields, many readers or one writer
+     */
+    private final ReadWriteLock lock;
+
+    /**
+     * Open addressing table of gram keys, 0 marks an empty slot
+     */
+    private long[] gramKeys;
+
+    /**
+     * Posting lists of distinct ids in ascending order, parallel to gramKeys
+     */
+    private long[][] postings;
+
+    /**
+     * Number of used entries in each posting list, parallel to gramKeys
+     */
+    private int[] postingSizes;
+
+    /**
+     * Number of distinct grams
+     */
+    private int gramCount;
+
+    /**
+     * Open addressing table of document ids, 0 marks an empty slot
+     */
+    private long[] documentIds;
+
+    /**
+     * Folded texts parallel to documentIds, null for removed documents
+     */
+    private String[] documentTexts;
+
+    /**
+     * Number of used document slots including removed documents
+     */
+    private int documentSlots;
+
+    /**
+     * True after the index has been filled with all existing documents
+     */
+    private volatile boolean built;
+
+    /**
+     * Initializes empty index
+     */
+    public TextIndex() {
+        lock = new ReentrantReadWriteLock();
+        clearTables();
+    }
+
+    /**
+     * Checks whether the index has been filled with all existing documents
+     * @return true if the index is built
+     */
+    public boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * Marks the index as not built and drops all documents
+     * The next search through the database manager rebuilds it.
+     */
+    public void invalidate() {
+        lock.writeLock().lock();
+
+        try {
+            clearTables();
+            built = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces whole content with documents read from given source
+     * Searches and writes wait until the build finishes.
+     * @param source the source of all documents
+     */
+    void build(DocumentSource source) {
+        lock.writeLock().lock();
+
+        try {
+            if (built) {
+                return;
+            }
+
+            clearTables();
+            source.forEach(this::putUnlocked);
+            built = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds or replaces document, ignored until the index is built
+     * A write committed before the build starts is read by the build itself.
+     * @param id the document id, must be positive
+     * @param text the document text
+     */
+    public void put(long id, String text) {
+        lock.writeLock().lock();
+
+        try {
+            if (built) {
+                putUnlocked(id, text);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes document together with its postings
+     * @param id the document id
+     */
+    public void remove(long id) {
+        lock.writeLock().lock();
+
+        try {
+            int slot = documentSlot(id);
+
+            if (built && documentIds[slot] == id && documentTexts[slot] != null) {
+                removePostings(documentTexts[slot], id);
+                documentTexts[slot] = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds documents containing given fragment
+     * @param fragment the searched text, case and diacritics insensitive
+     * @param limit the maximum number of returned ids
+     * @return the sorted ids of matching documents
+     */
+    public long[] searchContaining(String fragment, int limit) {
+        return search(fold(fragment), false, limit);
+    }
+
+    /**
+     * Finds documents with a field starting with given prefix
+     * @param prefix the searched prefix, case and diacritics insensitive
+     * @param limit the maximum number of returned ids
+     * @return the sorted ids of matching documents
+     */
+    public long[] searchPrefix(String prefix, int limit) {
+        return search(fold(prefix), true, limit);
+    }
+
+    /**
+     * Returns number of stored documents
+     * @return the number of documents
+     */
+    public int size() {
+        lock.readLock().lock();
+
+        try {
+            int count = 0;
+
+            for (String text : documentTexts) {
+                if (text != null) {
+                    count++;
+                }
+            }
+
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Folds text for matching, lower cased without diacritics
+     * @param text the text
+     * @return the folded text of the same number of characters for precomposed letters
+     */
+    static String fold(String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        int i = 0;
+
+        while (i < lower.length() && lower.charAt(i) < 0x80) {
+            i++;
+        }
+
+        if (i == lower.length()) {
+            return lower;
+        }
+
+        String decomposed = Normalizer.normalize(lower, Normalizer.Form.NFD);
+        StringBuilder folded = new StringBuilder(decomposed.length());
+
+        for (int j = 0; j < decomposed.length(); j++) {
+            char c = decomposed.charAt(j);
+
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                // the stroke of ł is not a combining mark
+                folded.append(c == '\u0142' ? 'l' : c);
+            }
+        }
+
+        return folded.toString();
+    }
+
+    /**
+     * Runs search under read lock
+     * @param query the folded query
+     * @param prefix true to match only at the start of fields
+     * @param limit the maximum number of returned ids
+     * @return the sorted ids of matching documents
+     */
+    private long[] search(String query, boolean prefix, int limit) {
+        lock.readLock().lock();
+
+        try {
+            if (limit <= 0) {
+                return new long[0];
+            }
+
+            long[] result = new long[Math.min(limit, 1024)];
+            int count = 0;
+
+            if (query.length() < GRAM_LENGTH) {
+                // the document table is not ordered by id, all matches are sorted first
+                for (int slot = 0; slot < documentIds.length; slot++) {
+                    String text = documentTexts[slot];
+
+                    if (text != null && matches(text, query, prefix)) {
+                        result = append(result, count++, documentIds[slot]);
+                    }
+                }
+            } else {
+                int shortest = -1;
+
+                for (int i = 0; i + GRAM_LENGTH <= query.length(); i++) {
+                    int slot = gramSlot(gram(query, i));
+
+                    if (gramKeys[slot] == 0 || postingSizes[slot] == 0) {
+                        return new long[0];
+                    }
+
+                    if (shortest < 0 || postingSizes[slot] < postingSizes[shortest]) {
+                        shortest = slot;
+                    }
+                }
+
+                long[] candidates = postings[shortest];
+                int size = postingSizes[shortest];
+
+                // candidates are distinct and ascending, so the first matches are the lowest ids
+                for (int i = 0; i < size && count < limit; i++) {
+                    int slot = documentSlot(candidates[i]);
+                    String text = documentTexts[slot];
+
+                    if (documentIds[slot] == candidates[i] && text != null && matches(text, query, prefix)) {
+                        result = append(result, count++, candidates[i]);
+                    }
+                }
+            }
+
+            long[] ids = sortedUnique(result, count);
+            return ids.length > limit ? Arrays.copyOf(ids, limit) : ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Verifies candidate text
+     * @param text the folded document text
+     * @param query the folded query
+     * @param prefix true to match only at the start of fields
+     * @return true if the text matches
+     */
+    private boolean matches(String text, String query, boolean prefix) {
+        if (!prefix) {
+            return text.contains(query);
+        }
+
+        if (text.startsWith(query)) {
+            return true;
+        }
+
+        for (int i = text.indexOf(FIELD_SEPARATOR); i >= 0; i = text.indexOf(FIELD_SEPARATOR, i + 1)) {
+            if (text.startsWith(query, i + 1)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Adds or replaces document, caller holds the write lock
+     * @param id the document id, must be positive
+     * @param text the document text
+     */
+    private void putUnlocked(long id, String text) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("Document id must be positive");
+        }
+
+        String lower = text == null ? "" : fold(text);
+        int slot = documentSlot(id);
+
+        if (documentIds[slot] == id && lower.equals(documentTexts[slot])) {
+            return;
+        }
+
+        if (documentIds[slot] != id) {
+            documentIds[slot] = id;
+            documentSlots++;
+        } else if (documentTexts[slot] != null) {
+            removePostings(documentTexts[slot], id);
+        }
+
+        documentTexts[slot] = lower;
+
+        for (int i = 0; i + GRAM_LENGTH <= lower.length(); i++) {
+            addPosting(gram(lower, i), id);
+        }
+
+        if (documentSlots * 2 > documentIds.length) {
+            growDocuments();
+        }
+    }
+
+    /**
+     * Inserts id into the posting list of given gram keeping it sorted and distinct
+     * Ids read by the build are ascending, so they are appended without search.
+     * @param key the gram key
+     * @param id the document id
+     */
+    private void addPosting(long key, long id) {
+        int slot = gramSlot(key);
+
+        if (gramKeys[slot] == 0) {
+            gramKeys[slot] = key;
+            postings[slot] = new long[INITIAL_POSTING_CAPACITY];
+            gramCount++;
+        }
+
+        long[] posting = postings[slot];
+        int size = postingSizes[slot];
+        int position = size;
+
+        if (size > 0 && posting[size - 1] >= id) {
+            position = Arrays.binarySearch(posting, 0, size, id);
+
+            // the same gram may occur many times in one text
+            if (position >= 0) {
+                return;
+            }
+
+            position = -position - 1;
+        }
+
+        if (size == posting.length) {
+            posting = Arrays.copyOf(posting, size * 2);
+            postings[slot] = posting;
+        }
+
+        System.arraycopy(posting, position, posting, position + 1, size - position);
+        posting[position] = id;
+        postingSizes[slot] = size + 1;
+
+        if (gramCount * 2 > gramKeys.length) {
+            growGrams();
+        }
+    }
+
+    /**
+     * Removes id from posting lists of all grams of given text
+     * Emptied lists keep their gram slot, searches treat them as missing grams.
+     * @param text the folded document text
+     * @param id the document id
+     */
+    private void removePostings(String text, long id) {
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            int slot = gramSlot(gram(text, i));
+
+            if (gramKeys[slot] == 0) {
+                continue;
+            }
+
+            long[] posting = postings[slot];
+            int size = postingSizes[slot];
+            int position = Arrays.binarySearch(posting, 0, size, id);
+
+            // already removed when the gram occurs many times in the text
+            if (position >= 0) {
+                System.arraycopy(posting, position + 1, posting, position, size - position - 1);
+                postingSizes[slot] = size - 1;
+            }
+        }
+    }
+
+    /**
+     * Packs gram starting at given position, never returns 0
+     * @param text the text
+     * @param start the gram start
+     * @return the gram key
+     */
+    private long gram(String text, int start) {
+        return (((long) text.charAt(start) << 32)
+                | ((long) text.charAt(start + 1) << 16)
+                | text.charAt(start + 2)) + 1;
+    }
+
+    /**
+     * Finds slot of given gram or the empty slot where it belongs
+     * @param key the gram key
+     * @return the slot index
+     */
+    private int gramSlot(long key) {
+        int mask = gramKeys.length - 1;
+        int slot = mix(key) & mask;
+
+        while (gramKeys[slot] != 0 && gramKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    /**
+     * Finds slot of given document or the empty slot where it belongs
+     * @param id the document id
+     * @return the slot index
+     */
+    private int documentSlot(long id) {
+        int mask = documentIds.length - 1;
+        int slot = mix(id) & mask;
+
+        while (documentIds[slot] != 0 && documentIds[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    /**
+     * Spreads bits of a key for hash table indexing
+     * @param key the key
+     * @return the hash code
+     */
+    private int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Doubles the gram table
+     */
+    private void growGrams() {
+        long[] oldKeys = gramKeys;
+        long[][] oldPostings = postings;
+        int[] oldSizes = postingSizes;
+        gramKeys = new long[oldKeys.length * 2];
+        postings = new long[oldKeys.length * 2][];
+        postingSizes = new int[oldKeys.length * 2];
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = gramSlot(oldKeys[i]);
+                gramKeys[slot] = oldKeys[i];
+                postings[slot] = oldPostings[i];
+                postingSizes[slot] = oldSizes[i];
+            }
+        }
+    }
+
+    /**
+     * Doubles the document table, removed documents are dropped
+     */
+    private void growDocuments() {
+        long[] oldIds = documentIds;
+        String[] oldTexts = documentTexts;
+        documentIds = new long[oldIds.length * 2];
+        documentTexts = new String[oldIds.length * 2];
+        documentSlots = 0;
+
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldTexts[i] != null) {
+                int slot = documentSlot(oldIds[i]);
+                documentIds[slot] = oldIds[i];
+                documentTexts[slot] = oldTexts[i];
+                documentSlots++;
+            }
+        }
+    }
+
+    /**
+     * Allocates empty tables
+     */
+    private void clearTables() {
+        gramKeys = new long[INITIAL_CAPACITY];
+        postings = new long[INITIAL_CAPACITY][];
+        postingSizes = new int[INITIAL_CAPACITY];
+        gramCount = 0;
+        documentIds = new long[INITIAL_CAPACITY];
+        documentTexts = new String[INITIAL_CAPACITY];
+        documentSlots = 0;
+    }
+
+    /**
+     * Appends value growing the array when needed
+     * @param array the array
+     * @param count the number of used entries
+     * @param value the appended value
+     * @return the array holding the value
+     */
+    private long[] append(long[] array, int count, long value) {
+        if (count == array.length) {
+            array = Arrays.copyOf(array, Math.max(4, count * 2));
+        }
+
+        array[count] = value;
+        return array;
+    }
+
+    /**
+     * Sorts values and removes duplicates
+     * @param values the values
+     * @param count the number of used entries
+     * @return the sorted distinct values
+     */
+    private long[] sortedUnique(long[] values, int count) {
+        Arrays.sort(values, 0, count);
+        int unique = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || values[unique - 1] != values[i]) {
+                values[unique++] = values[i];
+            }
+        }
+
+        return Arrays.copyOf(values, unique);
+    }
+
+    /**
+     * Supplies all documents while the index is built
+     */
+    interface DocumentSource {
+
+        /**
+         * Passes every document to given consumer
+         * @param consumer the document consumer
+         */
+        void forEach(DocumentConsumer consumer);
+    }
+
+    /**
+     * Receives documents while the index is built
+     */
+    interface DocumentConsumer {
+
+        /**
+         * Accepts single document
+         * @param id the document id
+         * @param text the document text
+         */
+        void accept(long id, String text);
+    }
+}
@@ -0,0 +1,18 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+/**
+ * Work done with one database manager inside one transaction, see DatabaseManager.inTransaction().
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ * @param <T> the type of the work result
+ */
+@FunctionalInterface
+public interface UnitOfWork<T> {
+
+    /**
+     * Does the work, the transaction is committed when it returns and rolled back when it throws
+     * @param db the manager with started transaction, valid only during this call
+     * @return the work result
+     */
+    T execute(DatabaseManager db);
+}
@@ -0,0 +1,83 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+/**
+ * Row of the release year report, number of books and pages released in one year
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public final class YearReport {
+
+    /**
+     * Release year
+     */
+    private final int year;
+
+    /**
+     * Number of books released in the year
+     */
+    private final long books;
+
+    /**
+     * Sum of pages of books released in the year
+     */
+    private final long pages;
+
+    /**
+     * Initializes instance with given parameters
+     * @param year the release year
+     * @param books the number of books
+     * @param pages the sum of pages
+     */
+    public YearReport(int year, long books, long pages) {
+        this.year = year;
+        this.books = books;
+        this.pages = pages;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public long getBooks() {
+        return books;
+    }
+
+    public long getPages() {
+        return pages;
+    }
+
+    /**
+     * Compares current object with the given one
+     * @param obj the object to compare
+     * @return comparison result
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof YearReport))
+            return false;
+
+        if (obj == this)
+            return true;
+
+        YearReport rhs = (YearReport) obj;
+        return year == rhs.year && books == rhs.books && pages == rhs.pages;
+    }
+
+    /**
+     * Formats this row in the form of string
+     * @return the string representing this row
+     */
+    @Override
+    public String toString() {
+        return String.format("%d; %d; %d", year, books, pages);
+    }
+
+    /**
+     * Calculates hash code which represents current object
+     * @return the number which represents current object
+     */
+    @Override
+    public int hashCode() {
+        return (year * 31 + Long.hashCode(books)) * 31 + Long.hashCode(pages);
+    }
+}
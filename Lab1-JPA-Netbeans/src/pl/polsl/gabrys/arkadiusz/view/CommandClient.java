@@ -0,0 +1,96 @@
+package pl.polsl.gabrys.arkadiusz.view;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sends commands to the local CommandServer and prints its responses
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class CommandClient implements AutoCloseable {
+
+    /**
+     * Connection to the server
+     */
+    private final Socket socket;
+
+    /**
+     * Server responses
+     */
+    private final BufferedReader reader;
+
+    /**
+     * Requests sent to the server
+     */
+    private final Writer writer;
+
+    /**
+     * Connects to the server listening on the loopback interface
+     * @param port the server port
+     * @throws IOException if the connection cannot be opened
+     */
+    public CommandClient(int port) throws IOException {
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sends single command and copies the response to given output
+     * @param args the command arguments
+     * @param out the output for the response
+     * @return the error code returned by the server
+     * @throws IOException if the connection fails or the response is malformed
+     */
+    public Integer send(String[] args, PrintStream out) throws IOException {
+        StringBuilder request = new StringBuilder();
+
+        for (String arg : args) {
+            if (request.length() > 0) {
+                request.append(' ');
+            }
+
+            request.append('"').append(arg.replace("\"", "")).append('"');
+        }
+
+        writer.write(request.toString());
+        writer.write('\n');
+        writer.flush();
+
+        String line;
+
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith(CommandServer.END_OF_RESPONSE)) {
+                try {
+                    return Integer.parseInt(line.substring(CommandServer.END_OF_RESPONSE.length()).trim());
+                } catch (NumberFormatException ex) {
+                    throw new IOException("Malformed response end: " + line);
+                }
+            }
+
+            // lines starting with a dot are escaped by the server with another dot
+            out.println(line.startsWith("..") ? line.substring(1) : line);
+        }
+
+        throw new IOException("Connection closed by server");
+    }
+
+    /**
+     * Closes the connection
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
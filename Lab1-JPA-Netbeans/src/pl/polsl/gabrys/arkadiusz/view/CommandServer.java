@@ -0,0 +1,202 @@
+package pl.polsl.gabrys.arkadiusz.view;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import pl.polsl.gabrys.arkadiusz.model.DatabaseContext;
+
+/**
+ * Serves CLI commands to local clients over a line based protocol.
+ * A request is one line with the same arguments as the command line,
+ * double quotes group words. The response is the command output where
+ * lines starting with a dot get one more dot, followed by a line made
+ * of END_OF_RESPONSE and the error code. The output is sent while the
+ * command runs, so large results are not held in memory. All connections
+ * share one entity manager factory, every request runs with its own entity
+ * manager. Clients are not authenticated, so requests cannot connect to
+ * other servers and import or export only files inside the file directory.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class CommandServer {
+
+    /**
+     * Port used when none is given
+     */
+    public static final int DEFAULT_PORT = 4444;
+
+    /**
+     * Prefix of the line which ends every response
+     */
+    public static final String END_OF_RESPONSE = ". ";
+
+    /**
+     * Maximum number of pending connections
+     */
+    private final Integer BACKLOG = 128;
+
+    /**
+     * Size of the buffer between command output and the connection
+     */
+    private final Integer OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Port the server listens on
+     */
+    private final int port;
+
+    /**
+     * Shared persistence unit context
+     */
+    private final DatabaseContext context;
+
+    /**
+     * Directory with files of import and export requests, null if files are rejected
+     */
+    private final Path fileDirectory;
+
+    /**
+     * Threads serving connections, one per connection
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Output stream which writes command output in the response format
+     * Lines starting with a dot get one more dot. The dot and the line
+     * feed are single bytes in UTF-8, so the output is not decoded.
+     */
+    private static class ResponseOutputStream extends FilterOutputStream {
+
+        /**
+         * True if the next byte starts a line
+         */
+        private boolean lineStart = true;
+
+        /**
+         * Initializes stream with given parameter
+         * @param out the connection output
+         */
+        ResponseOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (lineStart && b == '.') {
+                out.write('.');
+            }
+
+            out.write(b);
+            lineStart = b == '\n';
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int start = off;
+
+            for (int i = off; i < off + len; i++) {
+                if (lineStart && b[i] == '.') {
+                    out.write(b, start, i - start);
+                    out.write('.');
+                    start = i;
+                }
+
+                lineStart = b[i] == '\n';
+            }
+
+            out.write(b, start, off + len - start);
+        }
+
+        /**
+         * Ends the output with a line feed when the last line has none
+         * The stream is not closed, the connection serves further requests.
+         * @throws IOException if writing fails
+         */
+        void finish() throws IOException {
+            if (!lineStart) {
+                out.write('\n');
+                lineStart = true;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * Initializes server with given parameters
+     * @param port the port to listen on
+     * @param context the shared persistence unit context
+     * @param fileDirectory the directory with files of import and export requests or null to reject files
+     */
+    public CommandServer(int port, DatabaseContext context, Path fileDirectory) {
+        this.port = port;
+        this.context = context;
+        this.fileDirectory = fileDirectory;
+        this.executor = Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Accepts connections on the loopback interface until the process ends
+     * @throws IOException if the server socket cannot be opened
+     */
+    public void run() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress())) {
+            while (true) {
+                Socket socket = serverSocket.accept();
+                executor.execute(() -> serve(socket));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Executes requests of single connection until the client disconnects
+     * @param socket the client connection
+     */
+    private void serve(Socket socket) {
+        try (Socket client = socket) {
+            client.setTcpNoDelay(true);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+            OutputStream connection = new BufferedOutputStream(client.getOutputStream(), OUTPUT_BUFFER_SIZE);
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                String[] args = View.splitArguments(line);
+
+                if (args.length == 0) {
+                    continue;
+                }
+
+                ResponseOutputStream response = new ResponseOutputStream(connection);
+                PrintStream out = new PrintStream(response, false, StandardCharsets.UTF_8.name());
+                Integer errorCode = new View(out, context, fileDirectory).executeRequest(args);
+                out.flush();
+
+                if (out.checkError()) {
+                    throw new IOException("Cannot write response");
+                }
+
+                response.finish();
+                connection.write((END_OF_RESPONSE + errorCode + "\n").getBytes(StandardCharsets.UTF_8));
+                connection.flush();
+            }
+        } catch (IOException ex) {
+            // client disconnected, nothing to clean up besides the socket
+        }
+    }
+}
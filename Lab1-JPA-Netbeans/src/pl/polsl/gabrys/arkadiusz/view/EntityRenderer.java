@@ -0,0 +1,457 @@
+package pl.polsl.gabrys.arkadiusz.view;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.Date;
+import pl.polsl.gabrys.arkadiusz.model.Author;
+import pl.polsl.gabrys.arkadiusz.model.AuthorReport;
+import pl.polsl.gabrys.arkadiusz.model.AuthorSummary;
+import pl.polsl.gabrys.arkadiusz.model.Book;
+import pl.polsl.gabrys.arkadiusz.model.BookSummary;
+import pl.polsl.gabrys.arkadiusz.model.DataFormat;
+import pl.polsl.gabrys.arkadiusz.model.ReportTotals;
+import pl.polsl.gabrys.arkadiusz.model.YearReport;
+
+/**
+ * Writes entities and report rows in the selected output format.
+ * Fields are appended to one reused line buffer and copied to a buffered
+ * UTF-8 writer, so printing a row does not format patterns or flush the output.
+ * CSV and JSON text fields are escaped the same way as exported files.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class EntityRenderer implements AutoCloseable {
+
+    /**
+     * Size of the output buffer
+     */
+    private final Integer BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Author field names used as JSON keys
+     */
+    private final String[] AUTHOR_FIELDS = {"id", "name", "lastName"};
+
+    /**
+     * Book field names used as JSON keys
+     */
+    private final String[] BOOK_FIELDS = {"id", "title", "pages", "releaseDate", "authorId"};
+
+    /**
+     * Author report field names used as JSON keys
+     */
+    private final String[] AUTHOR_REPORT_FIELDS = {"authorId", "name", "lastName", "books", "pages"};
+
+    /**
+     * Release year report field names used as JSON keys
+     */
+    private final String[] YEAR_REPORT_FIELDS = {"year", "books", "pages"};
+
+    /**
+     * Report totals field names used as JSON keys
+     */
+    private final String[] TOTALS_FIELDS = {"authors", "books", "pages", "averagePages"};
+
+    /**
+     * Selected output format
+     */
+    private final OutputFormat format;
+
+    /**
+     * Buffered output
+     */
+    private final Writer writer;
+
+    /**
+     * Reused line buffer
+     */
+    private final StringBuilder line;
+
+    /**
+     * Reused array the line is copied to before writing
+     */
+    private char[] chars;
+
+    /**
+     * Reused calendar for release dates
+     */
+    private final Calendar calendar;
+
+    /**
+     * Index of the next field in the current line
+     */
+    private int field;
+
+    /**
+     * Initializes renderer writing to given stream
+     * @param out the output stream, flushed but not closed by close()
+     * @param format the output format
+     */
+    public EntityRenderer(OutputStream out, OutputFormat format) {
+        this.format = format;
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.line = new StringBuilder(256);
+        this.chars = new char[256];
+        this.calendar = Calendar.getInstance();
+    }
+
+    /**
+     * Writes single author
+     * @param author the author
+     * @throws IOException if writing fails
+     */
+    public void write(Author author) throws IOException {
+        writeAuthor(author.getId(), author.getName(), author.getLastName());
+    }
+
+    /**
+     * Writes single author projection, the same way as the author entity
+     * @param author the author projection
+     * @throws IOException if writing fails
+     */
+    public void write(AuthorSummary author) throws IOException {
+        writeAuthor(author.getId(), author.getName(), author.getLastName());
+    }
+
+    /**
+     * Writes single book
+     * @param book the book
+     * @throws IOException if writing fails
+     */
+    public void write(Book book) throws IOException {
+        Author author = book.getAuthor();
+        writeBook(book.getId(), book.getTitle(), book.getPages(), book.getReleaseDate(),
+                author != null ? author.getId() : Long.valueOf(0));
+    }
+
+    /**
+     * Writes single book projection, the same way as the book entity
+     * @param book the book projection
+     * @throws IOException if writing fails
+     */
+    public void write(BookSummary book) throws IOException {
+        writeBook(book.getId(), book.getTitle(), book.getPages(), book.getReleaseDate(),
+                book.getAuthorId() != null ? book.getAuthorId() : Long.valueOf(0));
+    }
+
+    /**
+     * Writes all authors
+     * @param authors the authors
+     * @throws IOException if writing fails
+     */
+    public void writeAuthors(Iterable<Author> authors) throws IOException {
+        for (Author author : authors) {
+            write(author);
+        }
+    }
+
+    /**
+     * Writes all books
+     * @param books the books
+     * @throws IOException if writing fails
+     */
+    public void writeBooks(Iterable<Book> books) throws IOException {
+        for (Book book : books) {
+            write(book);
+        }
+    }
+
+    /**
+     * Writes all author projections
+     * @param authors the author projections
+     * @throws IOException if writing fails
+     */
+    public void writeAuthorSummaries(Iterable<AuthorSummary> authors) throws IOException {
+        for (AuthorSummary author : authors) {
+            write(author);
+        }
+    }
+
+    /**
+     * Writes all book projections
+     * @param books the book projections
+     * @throws IOException if writing fails
+     */
+    public void writeBookSummaries(Iterable<BookSummary> books) throws IOException {
+        for (BookSummary book : books) {
+            write(book);
+        }
+    }
+
+    /**
+     * Writes single row of the author report
+     * @param report the report row
+     * @throws IOException if writing fails
+     */
+    public void write(AuthorReport report) throws IOException {
+        startLine();
+        appendNumber(AUTHOR_REPORT_FIELDS[0], report.getAuthorId());
+        appendText(AUTHOR_REPORT_FIELDS[1], report.getName());
+        appendText(AUTHOR_REPORT_FIELDS[2], report.getLastName());
+        appendNumber(AUTHOR_REPORT_FIELDS[3], report.getBooks());
+        appendNumber(AUTHOR_REPORT_FIELDS[4], report.getPages());
+        endLine();
+    }
+
+    /**
+     * Writes single row of the release year report
+     * @param report the report row
+     * @throws IOException if writing fails
+     */
+    public void write(YearReport report) throws IOException {
+        startLine();
+        appendNumber(YEAR_REPORT_FIELDS[0], (long) report.getYear());
+        appendNumber(YEAR_REPORT_FIELDS[1], report.getBooks());
+        appendNumber(YEAR_REPORT_FIELDS[2], report.getPages());
+        endLine();
+    }
+
+    /**
+     * Writes report totals, the average is rounded to one decimal place
+     * @param totals the totals
+     * @throws IOException if writing fails
+     */
+    public void write(ReportTotals totals) throws IOException {
+        startLine();
+        appendNumber(TOTALS_FIELDS[0], totals.getAuthors());
+        appendNumber(TOTALS_FIELDS[1], totals.getBooks());
+        appendNumber(TOTALS_FIELDS[2], totals.getPages());
+        separate(TOTALS_FIELDS[3]);
+        line.append(Math.round(totals.getAveragePages() * 10.0) / 10.0);
+        endLine();
+    }
+
+    /**
+     * Writes all rows of the author report
+     * @param reports the report rows
+     * @throws IOException if writing fails
+     */
+    public void writeAuthorReports(Iterable<AuthorReport> reports) throws IOException {
+        for (AuthorReport report : reports) {
+            write(report);
+        }
+    }
+
+    /**
+     * Writes all rows of the release year report
+     * @param reports the report rows
+     * @throws IOException if writing fails
+     */
+    public void writeYearReports(Iterable<YearReport> reports) throws IOException {
+        for (YearReport report : reports) {
+            write(report);
+        }
+    }
+
+    /**
+     * Flushes buffered output
+     * @throws IOException if writing fails
+     */
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * Flushes buffered output, the underlying stream stays open
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * Writes author fields
+     * @param id the author id
+     * @param name the author name
+     * @param lastName the author last name
+     * @throws IOException if writing fails
+     */
+    private void writeAuthor(Long id, String name, String lastName) throws IOException {
+        startLine();
+        appendNumber(AUTHOR_FIELDS[0], id);
+        appendText(AUTHOR_FIELDS[1], name);
+        appendText(AUTHOR_FIELDS[2], lastName);
+        endLine();
+    }
+
+    /**
+     * Writes book fields
+     * @param id the book id
+     * @param title the book title
+     * @param pages the number of pages
+     * @param releaseDate the release date
+     * @param authorId the author id, 0 if the book has no author
+     * @throws IOException if writing fails
+     */
+    private void writeBook(Long id, String title, Long pages, Date releaseDate, Long authorId) throws IOException {
+        startLine();
+        appendNumber(BOOK_FIELDS[0], id);
+        appendText(BOOK_FIELDS[1], title);
+        appendNumber(BOOK_FIELDS[2], pages);
+
+        if (format == OutputFormat.TEXT) {
+            // keeps the output of Book.toString()
+            separate(BOOK_FIELDS[3]);
+            line.append(releaseDate != null ? releaseDate : new Date());
+        } else {
+            appendDate(BOOK_FIELDS[3], releaseDate);
+        }
+
+        appendNumber(BOOK_FIELDS[4], authorId);
+        endLine();
+    }
+
+    /**
+     * Resets the line buffer
+     */
+    private void startLine() {
+        line.setLength(0);
+        field = 0;
+
+        if (format == OutputFormat.JSON) {
+            line.append('{');
+        }
+    }
+
+    /**
+     * Copies the line buffer to the writer
+     * @throws IOException if writing fails
+     */
+    private void endLine() throws IOException {
+        if (format == OutputFormat.JSON) {
+            line.append('}');
+        }
+
+        line.append('\n');
+        int length = line.length();
+
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+
+        line.getChars(0, length, chars, 0);
+        writer.write(chars, 0, length);
+    }
+
+    /**
+     * Appends field separator and JSON key
+     * @param name the field name
+     */
+    private void separate(String name) {
+        if (field++ > 0) {
+            switch (format) {
+                case TEXT:
+                    line.append("; ");
+                    break;
+                case TSV:
+                    line.append('\t');
+                    break;
+                default:
+                    line.append(',');
+            }
+        }
+
+        if (format == OutputFormat.JSON) {
+            line.append('"').append(name).append("\":");
+        }
+    }
+
+    /**
+     * Appends numeric field
+     * @param name the field name
+     * @param value the field value
+     */
+    private void appendNumber(String name, Long value) {
+        separate(name);
+
+        if (value == null) {
+            appendNull();
+        } else {
+            line.append(value.longValue());
+        }
+    }
+
+    /**
+     * Appends text field escaped for the selected format
+     * @param name the field name
+     * @param value the field value
+     * @throws IOException if writing fails
+     */
+    private void appendText(String name, String value) throws IOException {
+        separate(name);
+
+        if (value == null) {
+            appendNull();
+            return;
+        }
+
+        switch (format) {
+            case CSV:
+                DataFormat.CSV.writeText(line, value);
+                break;
+            case TSV:
+                for (int i = 0; i < value.length(); i++) {
+                    char c = value.charAt(i);
+                    line.append(c == '\t' || c == '\n' || c == '\r' ? ' ' : c);
+                }
+                break;
+            case JSON:
+                DataFormat.JSONL.writeText(line, value);
+                break;
+            default:
+                line.append(value);
+        }
+    }
+
+    /**
+     * Appends date field as yyyy.MM.dd
+     * @param name the field name
+     * @param value the field value
+     */
+    private void appendDate(String name, Date value) {
+        separate(name);
+
+        if (value == null) {
+            appendNull();
+            return;
+        }
+
+        calendar.setTime(value);
+
+        if (format == OutputFormat.JSON) {
+            line.append('"');
+        }
+
+        line.append(calendar.get(Calendar.YEAR)).append('.');
+        appendTwoDigits(calendar.get(Calendar.MONTH) + 1);
+        line.append('.');
+        appendTwoDigits(calendar.get(Calendar.DAY_OF_MONTH));
+
+        if (format == OutputFormat.JSON) {
+            line.append('"');
+        }
+    }
+
+    /**
+     * Appends missing value, empty field in CSV and TSV
+     */
+    private void appendNull() {
+        if (format == OutputFormat.TEXT || format == OutputFormat.JSON) {
+            line.append("null");
+        }
+    }
+
+    /**
+     * Appends number with leading zero
+     * @param value the number between 0 and 99
+     */
+    private void appendTwoDigits(int value) {
+        line.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+}
@@ -0,0 +1,45 @@
+package pl.polsl.gabrys.arkadiusz.view;
+
+/**
+ * Formats of entities printed by the find command
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public enum OutputFormat {
+
+    /**
+     * Fields separated with semicolons, same as toString() of entities
+     */
+    TEXT,
+
+    /**
+     * Comma separated values
+     */
+    CSV,
+
+    /**
+     * Tab separated values
+     */
+    TSV,
+
+    /**
+     * One JSON object per line
+     */
+    JSON;
+
+    /**
+     * Finds format by name ignoring letter case
+     * @param name the format name
+     * @return the format
+     * @throws IllegalArgumentException if there is no format with given name
+     */
+    public static OutputFormat fromName(String name) throws IllegalArgumentException {
+        for (OutputFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name.trim())) {
+                return format;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown output format: " + name);
+    }
+}
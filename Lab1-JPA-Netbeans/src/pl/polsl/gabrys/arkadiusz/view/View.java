@@ -1,9 +1,25 @@
 package pl.polsl.gabrys.arkadiusz.view;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import javax.persistence.PersistenceException;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -12,7 +28,18 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.OptionGroup;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
+import pl.polsl.gabrys.arkadiusz.model.Author;
+import pl.polsl.gabrys.arkadiusz.model.AuthorSummary;
+import pl.polsl.gabrys.arkadiusz.model.Book;
+import pl.polsl.gabrys.arkadiusz.model.BookFilter;
+import pl.polsl.gabrys.arkadiusz.model.BookSummary;
+import pl.polsl.gabrys.arkadiusz.model.DataExporter;
+import pl.polsl.gabrys.arkadiusz.model.DataFormat;
+import pl.polsl.gabrys.arkadiusz.model.DataImporter;
+import pl.polsl.gabrys.arkadiusz.model.DatabaseContext;
 import pl.polsl.gabrys.arkadiusz.model.DatabaseManager;
+import pl.polsl.gabrys.arkadiusz.model.DatabaseStatistics;
+import pl.polsl.gabrys.arkadiusz.model.ImportResult;
 
 /**
  * Class provides CLI and interactive console interface
@@ -52,17 +79,28 @@ public class View {
             + "    java -jar Lab1-JPA.jar -h f\n"
             + "    java -jar Lab1-JPA.jar -h find\n";
     
-//    /**
-//     * Help message for interactive option
-//     */
-//    private final String HELP_INTERACTIVE = "interactive\n"
-//            + "usage: interactive\n"
-//            + "\n"
-//            + "Starts interactive console interface.\n"
-//            + "\n"
-//            + "Examples:\n"
-//            + "    java -jar Lab1-JPA.jar -i\n"
-//            + "    java -jar Lab1-JPA.jar -interactive\n";
+    /**
+     * Help message for interactive option
+     */
+    private final String HELP_INTERACTIVE = "interactive\n"
+            + "usage: interactive\n"
+            + "\n"
+            + "Starts interactive console interface.\n"
+            + "Every line is one command with the same arguments as\n"
+            + "on the command line, the leading dash may be omitted.\n"
+            + "The database connection is opened once and reused by\n"
+            + "all commands. Type exit or quit to leave.\n"
+            + "\n"
+            + "Examples:\n"
+            + "    java -jar Lab1-JPA.jar -i\n"
+            + "    java -jar Lab1-JPA.jar -interactive\n"
+            + "    > find Author Name Stephen\n"
+            + "    > -p Book \"The Waste Lands\" 351 \"1991.01.23\" 1\n";
+    
+    /**
+     * Prompt printed in interactive mode
+     */
+    private final String PROMPT = "> ";
     
     /**
      * Help message for persist option
@@ -86,15 +124,81 @@ public class View {
             + "       find Author All\n"
             + "       find Author Id <id>\n"
             + "       find Author Name <name>\n"
+            + "       find Author After <lastId> [pageSize]\n"
+            + "       find Author Prefix <prefix> [limit]\n"
             + "       find Book   All\n"
             + "       find Book   Id <id>\n"
             + "       find Book   Title <title>\n"
+            + "       find Book   After <lastId> [pageSize]\n"
+            + "       find Book   Contains <fragment> [limit]\n"
+            + "       find Book   Where <condition>...\n"
             + "\n"
             + "Finds all entities or entities with given value.\n"
+            + "After returns one page of entities with id greater than\n"
+            + "lastId (0 for the first page), default page size is 100.\n"
+            + "Prefix matches the start of name or last name, Contains\n"
+            + "matches any part of the title, both ignore letter case\n"
+            + "and return at most 100 entities by default.\n"
+            + "Where returns books matching all given conditions:\n"
+            + "    pages=<min>..<max>       number of pages, inclusive\n"
+            + "    released=<from>..<to>    release date yyyy.MM.dd, to is exclusive\n"
+            + "    author=<id>[,<id>...]    books of given authors\n"
+            + "    title=<prefix>           title starting with prefix\n"
+            + "    order=<attribute>[:desc] id, title, pages or released\n"
+            + "    limit=<limit>            at most 100 books by default\n"
+            + "Either side of a range can be left empty.\n"
             + "\n"
             + "Examples:\n"
             + "    java -jar Lab1-JPA.jar -f Author Name Stephen\n"
-            + "    java -jar Lab1-JPA.jar -find Book All\n";
+            + "    java -jar Lab1-JPA.jar -find Book All\n"
+            + "    java -jar Lab1-JPA.jar -find Book After 0 50\n"
+            + "    java -jar Lab1-JPA.jar -find Book Contains tower\n"
+            + "    java -jar Lab1-JPA.jar -find Book Where pages=100..300 order=released:desc\n"
+            + "    java -jar Lab1-JPA.jar -find Book Where author=1,2 released=2000.01.01..\n"
+            + "    java -jar Lab1-JPA.jar -o json -find Book All\n";
+    
+    /**
+     * Help message for report option
+     */
+    private final String HELP_REPORT = "report\n"
+            + "usage:\n"
+            + "       report Authors\n"
+            + "       report Years\n"
+            + "       report Totals\n"
+            + "       report Rebuild\n"
+            + "\n"
+            + "Prints numbers aggregated by the database.\n"
+            + "Authors prints id, name, last name, number of books and\n"
+            + "pages of every author. Years prints number of books and\n"
+            + "pages released in every year. Totals prints numbers of\n"
+            + "authors, books, pages and average pages of one book.\n"
+            + "With lab1.report.summary enabled in persistence.xml Authors\n"
+            + "and Totals read the AUTHOR_TOTALS table kept up to date on\n"
+            + "every change of books. Rebuild computes that table again\n"
+            + "from all books, after enabling it on an existing database.\n"
+            + "\n"
+            + "Examples:\n"
+            + "    java -jar Lab1-JPA.jar -R Authors\n"
+            + "    java -jar Lab1-JPA.jar -o csv -report Years\n";
+    
+    /**
+     * Help message for output option
+     */
+    private final String HELP_OUTPUT = "output\n"
+            + "usage: output <Format> <find or report command>\n"
+            + "\n"
+            + "Selects the format of entities printed by find and rows printed by report.\n"
+            + "Formats: text (default), csv, tsv and json (one object per line).\n"
+            + "Dates are written as yyyy.MM.dd in csv, tsv and json.\n"
+            + "\n"
+            + "Examples:\n"
+            + "    java -jar Lab1-JPA.jar -o csv -f Author All\n"
+            + "    java -jar Lab1-JPA.jar -output json -find Book Title \"The Gunslinger\"\n";
+    
+    /**
+     * Number of entities on one page when page size is not given
+     */
+    private final Integer DEFAULT_PAGE_SIZE = 100;
     
     /**
      * Help message for merge option
@@ -103,36 +207,213 @@ public class View {
             + "usage:\n"
             + "       merge Author <Id> <Name> <LastName>\n"
             + "       merge Book   <Id> <Title> <Pages> <Date> <AuthorId>\n"
+            + "       merge Author Ids <Name> <LastName> <Id> [Id...]\n"
             + "\n"
             + "Changes values for entity with given id.\n"
+            + "Ids sets the same name and last name of all given authors\n"
+            + "with one statement, without loading them.\n"
             + "\n"
             + "Examples:\n"
             + "    java -jar Lab1-JPA.jar -m 1 Author Stephen King\n"
-            + "    java -jar Lab1-JPA.jar -merge 2 Book \"Drawing of the Three\" 284 \"1987.03.13\" 1\n";
+            + "    java -jar Lab1-JPA.jar -merge 2 Book \"Drawing of the Three\" 284 \"1987.03.13\" 1\n"
+            + "    java -jar Lab1-JPA.jar -m Author Ids Stephen King 1 7 12\n";
     
     /**
      * Help message for remove option
      */
     private final String HELP_REMOVE = "remove\n"
             + "usage:\n"
-            + "       remove Author <Id>\n"
+            + "       remove Author <Id> [Id...]\n"
             + "       remove Book   <Id>\n"
+            + "       remove Book   Author <AuthorId> [AuthorId...]\n"
+            + "       remove Book   Before <Date>\n"
             + "\n"
-            + "Removes entity with given id.\n"
+            + "Removes entity with given id. Removing authors removes\n"
+            + "their books too. Author and Before remove all books of\n"
+            + "given authors or released before given date (yyyy.MM.dd).\n"
+            + "Many entities are removed with one statement per table,\n"
+            + "without loading them.\n"
             + "\n"
             + "Examples:\n"
             + "    java -jar Lab1-JPA.jar -r 1\n"
-            + "    java -jar Lab1-JPA.jar -remove 2\n";
+            + "    java -jar Lab1-JPA.jar -remove 2\n"
+            + "    java -jar Lab1-JPA.jar -r Book Author 1 2\n"
+            + "    java -jar Lab1-JPA.jar -r Book Before \"1980.01.01\"\n";
+    
+    /**
+     * Help message for import option
+     */
+    private final String HELP_IMPORT = "import\n"
+            + "usage:\n"
+            + "       import Author <File> [BatchSize]\n"
+            + "       import Book   <File> [BatchSize]\n"
+            + "\n"
+            + "Imports entities from a file, one entity per line.\n"
+            + "Files ending with .json or .jsonl are read as JSON lines,\n"
+            + "other files as CSV. Quoted CSV fields may contain commas,\n"
+            + "doubled quotes and line breaks. CSV columns are:\n"
+            + "       Author: Name,LastName\n"
+            + "       Book:   Title,Pages,Date,AuthorId\n"
+            + "JSON objects use name, lastName, title, pages, releaseDate\n"
+            + "and authorId keys. Rows are committed every BatchSize\n"
+            + "rows (default 1000).\n"
+            + "\n"
+            + "Import is not atomic. When a row fails only its batch is\n"
+            + "rolled back, earlier batches stay in the database. The\n"
+            + "error tells how many rows were committed and from which\n"
+            + "line the rest of the file should be imported.\n"
+            + "\n"
+            + "Examples:\n"
+            + "    java -jar Lab1-JPA.jar -I Author authors.csv\n"
+            + "    java -jar Lab1-JPA.jar -import Book books.jsonl 5000\n";
+    
+    /**
+     * Help message for export option
+     */
+    private final String HELP_EXPORT = "export\n"
+            + "usage:\n"
+            + "       export Author [File]\n"
+            + "       export Book   [File]\n"
+            + "\n"
+            + "Writes all entities to a file or to the standard output.\n"
+            + "Files ending with .json or .jsonl are written as JSON lines,\n"
+            + "other files and the standard output as CSV. The first column\n"
+            + "is the entity id, the others are the same as for import.\n"
+            + "\n"
+            + "Examples:\n"
+            + "    java -jar Lab1-JPA.jar -E Author authors.csv\n"
+            + "    java -jar Lab1-JPA.jar -export Book books.jsonl\n";
+    
+    /**
+     * Help message for connect option
+     */
+    private final String HELP_CONNECT = "connect\n"
+            + "usage: connect <Port> <command>\n"
+            + "\n"
+            + "Sends the command to the server listening on the local port\n"
+            + "instead of opening the database in this process. The server\n"
+            + "is started with:\n"
+            + "    java -cp Lab1-JPA.jar pl.polsl.gabrys.arkadiusz.Server [Port] [Directory]\n"
+            + "Requests sent to the server can import and export files only\n"
+            + "inside the directory given to the server, file names are\n"
+            + "relative to it. Without the directory files are rejected.\n"
+            + "\n"
+            + "Examples:\n"
+            + "    java -jar Lab1-JPA.jar -c 4444 -f Author All\n"
+            + "    java -jar Lab1-JPA.jar -connect 4444 -i\n";
+    
+    /**
+     * Help message for stats option
+     */
+    private final String HELP_STATS = "stats\n"
+            + "usage: stats <command>\n"
+            + "\n"
+            + "Prints statistics of database operations when the command ends.\n"
+            + "For every operation the number of calls, failed calls and rows\n"
+            + "returned or changed is printed together with latencies in\n"
+            + "milliseconds, followed by entity cache and query cache counters.\n"
+            + "Statistics are also published through JMX as\n"
+            + "pl.polsl.gabrys.arkadiusz:type=DatabaseStatistics.\n"
+            + "\n"
+            + "Examples:\n"
+            + "    java -jar Lab1-JPA.jar -s -f Author All\n"
+            + "    java -jar Lab1-JPA.jar -stats -i\n";
+    
+    /**
+     * Size of the output buffer used by export
+     */
+    private final Integer EXPORT_BUFFER_SIZE = 1 << 16;
     
     /**
      * Options structure for parsing
      */
     private final Options options;
+    
+    /**
+     * Input for interactive mode, null if interactive mode is not available
+     */
+    private final InputStream in;
+    
+    /**
+     * Output for command results
+     */
+    private final PrintStream out;
+    
+    /**
+     * Shared persistence unit context, null for the default one
+     */
+    private final DatabaseContext context;
+    
+    /**
+     * True if commands are requests of clients of the server
+     */
+    private final boolean remote;
+    
+    /**
+     * Directory with files of remote import and export, null if files are rejected
+     */
+    private final Path fileDirectory;
+    
+    /**
+     * Database manager shared by all commands, created on first use
+     */
+    private DatabaseManager databaseManager;
+    
+    /**
+     * True while interactive mode is running
+     */
+    private boolean interactiveMode;
+    
+    /**
+     * Format of entities printed by the current command
+     */
+    private OutputFormat outputFormat = OutputFormat.TEXT;
+    
+    /**
+     * True if statistics are printed when the current command ends
+     */
+    private boolean statisticsRequested;
+    
+    /**
+     * Statistics of the database used by the current command, null if not requested or not used
+     */
+    private DatabaseStatistics statistics;
 
     /**
-     * Creates options structure for parsing
+     * Creates options structure for parsing, uses standard input and output
      */
     public View() {
+        this(System.in, System.out, null, false, null);
+    }
+    
+    /**
+     * Creates view which executes requests of server clients against given shared context
+     * Interactive mode and connect are not available, every command uses its own
+     * entity manager which is closed when the command finishes. Import and export
+     * read and write only files inside given directory.
+     * @param out the output for command results
+     * @param context the shared persistence unit context
+     * @param fileDirectory the directory with imported and exported files or null to reject files
+     */
+    public View(PrintStream out, DatabaseContext context, Path fileDirectory) {
+        this(null, out, context, true, fileDirectory);
+    }
+    
+    /**
+     * Creates options structure for parsing
+     * @param in the input for interactive mode or null if not available
+     * @param out the output for command results
+     * @param context the shared persistence unit context or null for the default one
+     * @param remote true if commands are requests of server clients
+     * @param fileDirectory the directory with files of remote import and export or null
+     */
+    private View(InputStream in, PrintStream out, DatabaseContext context, boolean remote, Path fileDirectory) {
+        this.in = in;
+        this.out = out;
+        this.context = context;
+        this.remote = remote;
+        this.fileDirectory = fileDirectory == null ? null : fileDirectory.toAbsolutePath().normalize();
+        
         // create options structure
         options = new Options();
         OptionGroup interactiveHelpCRUD = new OptionGroup();
@@ -145,10 +426,10 @@ public class View {
                 .desc("prints this help or option help")
                 .build());
         
-//        interactiveHelpCRUD.addOption(Option.builder("i")
-//                .longOpt("interactive")
-//                .desc("interactive mode")
-//                .build());
+        interactiveHelpCRUD.addOption(Option.builder("i")
+                .longOpt("interactive")
+                .desc("interactive mode")
+                .build());
         
         interactiveHelpCRUD.addOption(Option.builder("p")
                 .longOpt("persist")
@@ -163,7 +444,7 @@ public class View {
                 .longOpt("find")
                 .hasArgs()
                 .argName("args")
-                .numberOfArgs(3)
+                .numberOfArgs(Option.UNLIMITED_VALUES)
                 .optionalArg(true)
                 .desc("finds entities")
                 .build());
@@ -172,8 +453,7 @@ public class View {
                 .longOpt("merge")
                 .hasArgs()
                 .argName("args")
-                .numberOfArgs(5)
-                .optionalArg(true)
+                .numberOfArgs(Option.UNLIMITED_VALUES)
                 .desc("merges entity")
                 .build());
         
@@ -181,12 +461,56 @@ public class View {
                 .longOpt("remove")
                 .hasArgs()
                 .argName("args")
-                .numberOfArgs(2)
+                .numberOfArgs(Option.UNLIMITED_VALUES)
                 .desc("removes entity")
                 .build());
         
+        interactiveHelpCRUD.addOption(Option.builder("I")
+                .longOpt("import")
+                .hasArgs()
+                .argName("args")
+                .numberOfArgs(3)
+                .optionalArg(true)
+                .desc("imports entities from file")
+                .build());
+        
+        interactiveHelpCRUD.addOption(Option.builder("E")
+                .longOpt("export")
+                .hasArgs()
+                .argName("args")
+                .numberOfArgs(2)
+                .optionalArg(true)
+                .desc("exports entities to file")
+                .build());
+        
+        interactiveHelpCRUD.addOption(Option.builder("R")
+                .longOpt("report")
+                .hasArg()
+                .argName("report")
+                .desc("prints aggregated report")
+                .build());
+        
         interactiveHelpCRUD.setRequired(true);
         options.addOptionGroup(interactiveHelpCRUD);
+        
+        options.addOption(Option.builder("c")
+                .longOpt("connect")
+                .hasArg()
+                .argName("port")
+                .desc("sends the command to a local server")
+                .build());
+        
+        options.addOption(Option.builder("o")
+                .longOpt("output")
+                .hasArg()
+                .argName("format")
+                .desc("selects the format of found entities")
+                .build());
+        
+        options.addOption(Option.builder("s")
+                .longOpt("stats")
+                .desc("prints statistics of database operations at exit")
+                .build());
     }
 
     /**
@@ -199,29 +523,65 @@ public class View {
         Integer errorCode = ERROR_CODE_OK;
         
         CommandLine commandLine;
-        HelpFormatter formatter = new HelpFormatter();
         CommandLineParser parser = new DefaultParser();
         
         try {
             commandLine = parser.parse(options, args);
         } catch (ParseException pe) {
-            formatter.printHelp("java -jar Lab1-JPA.jar", "\nLibrary database CRUD", options, "\n" + pe.getMessage());
+            printUsage("\n" + pe.getMessage());
             return ERROR_CODE_OPTION_ERROR;
         } catch (Exception ex) {
-            formatter.printHelp("java -jar Lab1-JPA.jar", "\nLibrary database CRUD", options, "\nUndefined error");
+            printUsage("\nUndefined error");
             return ERROR_CODE_UNKNOWN_ERROR;
         }
         
-        // only one option can be passed
-        Option selected = commandLine.getOptions()[0];
+        // values the selected option didn't take would be silently ignored
+        if (!commandLine.getArgList().isEmpty()) {
+            printUsage("\nUnexpected arguments: " + String.join(" ", commandLine.getArgList()));
+            return ERROR_CODE_OPTION_ERROR;
+        }
+        
+        // only one option from the group can be passed
+        Option selected = null;
+        
+        for (Option option : commandLine.getOptions()) {
+            if (!option.getOpt().equals("c") && !option.getOpt().equals("o") && !option.getOpt().equals("s")) {
+                selected = option;
+            }
+        }
+        
+        try {
+            outputFormat = commandLine.hasOption("o")
+                    ? OutputFormat.fromName(commandLine.getOptionValue("o"))
+                    : OutputFormat.TEXT;
+        } catch (IllegalArgumentException ex) {
+            out.println(ex.getMessage() + "\n");
+            out.println(HELP_OUTPUT);
+            return ERROR_CODE_OPTION_ERROR;
+        }
+        
+        // commands of interactive mode are covered by statistics of the whole session
+        if (!interactiveMode) {
+            statisticsRequested = commandLine.hasOption("s");
+            statistics = null;
+        }
+        
+        if (commandLine.hasOption("c")) {
+            if (remote) {
+                out.println("Connect is not available in requests sent to the server.\n");
+                return ERROR_CODE_OPTION_ERROR;
+            }
+            
+            return forward(commandLine.getOptionValue("c"), selected);
+        }
         
         switch (selected.getOpt()) {
             case "h":
                 errorCode = help(selected);
                 break;
-//            case "i":
-//                System.out.println("i");
-//                break;
+            case "i":
+                errorCode = interactive();
+                break;
             case "p":
                 errorCode = persist(selected);
                 break;
@@ -234,134 +594,433 @@ public class View {
             case "r":
                 errorCode = remove(selected);
                 break;
+            case "I":
+                errorCode = importData(selected);
+                break;
+            case "E":
+                errorCode = exportData(selected);
+                break;
+            case "R":
+                errorCode = report(selected);
+                break;
+        }
+        
+        if (statistics != null && !interactiveMode) {
+            printStatistics();
         }
         
         return errorCode;
     }
     
     /**
-     * Manages help messages
-     * @param option the one of CLI options
+     * Returns database manager shared by all commands
+     * The manager and its connection are created on the first call.
+     * @return the database manager
+     */
+    private DatabaseManager getDatabaseManager() {
+        if (databaseManager == null) {
+            databaseManager = context == null
+                    ? new DatabaseManager()
+                    : new DatabaseManager(context);
+            
+            if (statisticsRequested) {
+                statistics = databaseManager.getStatistics();
+                statistics.setEnabled(true);
+            }
+        }
+        
+        return databaseManager;
+    }
+    
+    /**
+     * Reads commands from the standard input until exit or end of input
+     * All commands share one database manager, so the persistence unit
+     * is bootstrapped only once.
      * @return the error code
      */
-    private Integer help(Option option) {
-        String value = option.getValue();
+    private Integer interactive() {
+        if (interactiveMode) {
+            out.println("Interactive mode is already running.\n");
+            return ERROR_CODE_OPTION_ERROR;
+        }
         
-        if (value == null || value.isEmpty())
-        {
-            HelpFormatter formatter = new HelpFormatter();
-            formatter.printHelp("java -jar Lab1-JPA.jar",
-                    "\nLibrary database CRUD",
-                    options,
-                    "\nFor details type -h with option name.");
-            return ERROR_CODE_OK;
-        } else {
+        if (in == null) {
+            out.println("Interactive mode is not available.\n");
+            return ERROR_CODE_OPTION_ERROR;
+        }
+        
+        interactiveMode = true;
+        BufferedReader input = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        
+        try {
+            String line;
+            out.print(PROMPT);
+            out.flush();
             
-            switch(value) {
-                case "h":
-                case "help":
-                    System.out.println(HELP_HELP);
-                    break;
-                    
-//                case "i":
-//                case "interactive":
-//                    System.out.println(HELP_INTERACTIVE);
-//                    break;
-                    
-                case "p":
-                case "persist":
-                    System.out.println(HELP_PERSIST);
-                    break;
-                    
-                case "f":
-                case "find":
-                    System.out.println(HELP_FIND);
-                    break;
-                    
-                case "m":
-                case "merge":
-                    System.out.println(HELP_MERGE);
-                    break;
-                    
-                case "r":
-                case "remove":
-                    System.out.println(HELP_REMOVE);
+            while ((line = input.readLine()) != null) {
+                line = line.trim();
+                
+                if (line.equals("exit") || line.equals("quit")) {
                     break;
-                    
-                default:
-                    System.out.println("UNKNOWN OPTION!\n");
-                    System.out.println(HELP_HELP);
-                    return ERROR_CODE_OPTION_ERROR;
+                }
+                
+                if (!line.isEmpty()) {
+                    executeInteractiveCommand(splitArguments(line));
+                }
+                
+                out.print(PROMPT);
+                out.flush();
             }
+        } catch (IOException ex) {
+            out.println("Cannot read standard input.\n");
+            return ERROR_CODE_UNKNOWN_ERROR;
+        } finally {
+            interactiveMode = false;
             
-            return ERROR_CODE_OK;
+            if (databaseManager != null) {
+                databaseManager.close();
+                databaseManager = null;
+            }
         }
+        
+        return ERROR_CODE_OK;
     }
-
+    
     /**
-     * Persists new entity specified in parameters
-     * @param selected the given parameters
+     * Executes single command with its own entity manager
+     * Used by the server, the entity manager is closed afterwards.
+     * @param args the command arguments
      * @return the error code
      */
-    private Integer persist(Option selected) {
-        DatabaseManager db = new DatabaseManager();
-        List<String> values = selected.getValuesList();
+    public Integer executeRequest(String[] args) {
+        try {
+            return manageUserInput(args);
+        } catch (RuntimeException ex) {
+            out.println("Command failed: " + ex.getMessage() + "\n");
+            return ERROR_CODE_UNKNOWN_ERROR;
+        } finally {
+            if (databaseManager != null) {
+                if (databaseManager.isTransactionActive()) {
+                    databaseManager.rollbackTransaction();
+                }
+                
+                databaseManager.close();
+                databaseManager = null;
+            }
+        }
+    }
+    
+    /**
+     * Sends selected command to the server and prints its response
+     * With the interactive option every input line is sent over one connection.
+     * @param port the server port
+     * @param selected the selected command option
+     * @return the error code returned by the server
+     */
+    private Integer forward(String port, Option selected) {
+        Integer portNumber;
         
-        if (values.size() < 2) {
-            System.out.println(HELP_PERSIST);
+        try {
+            portNumber = Integer.parseInt(port);
+        } catch (NumberFormatException ex) {
+            out.println("Port is not an integer number!\n");
             return ERROR_CODE_OPTION_ERROR;
         }
         
-            String entity = values.get(0).toLowerCase().trim();
+        try (CommandClient client = new CommandClient(portNumber)) {
+            if (!selected.getOpt().equals("i")) {
+                List<String> args = new ArrayList<>();
+                args.add("-" + selected.getOpt());
+                
+                if (outputFormat != OutputFormat.TEXT) {
+                    args.add(0, outputFormat.name());
+                    args.add(0, "-o");
+                }
+                
+                if (statisticsRequested) {
+                    args.add(0, "-s");
+                }
+                
+                if (selected.getValuesList() != null) {
+                    args.addAll(selected.getValuesList());
+                }
+                
+                return client.send(args.toArray(new String[args.size()]), out);
+            }
             
-            switch(entity) {
-                case "author":
-                    if (values.size() < 3) {
-                        System.out.println(HELP_PERSIST);
-                        return ERROR_CODE_OPTION_ERROR;
-                    }
-                    
-                    String name = values.get(1).trim();
-                    String lastName = values.get(2).trim();
-                    
-                    db.startTransaction();
-                    db.persistAuthor(name, lastName);
-                    db.commitTransaction();                    
+            BufferedReader input = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            out.print(PROMPT);
+            out.flush();
+            
+            while ((line = input.readLine()) != null) {
+                line = line.trim();
+                
+                if (line.equals("exit") || line.equals("quit")) {
                     break;
+                }
+                
+                if (!line.isEmpty()) {
+                    String[] args = splitArguments(line);
                     
-                case "book":
-                    if (values.size() < 5) {
-                        System.out.println(HELP_PERSIST);
-                        return ERROR_CODE_OPTION_ERROR;
+                    if (!args[0].startsWith("-")) {
+                        args[0] = "-" + args[0];
                     }
                     
-                    String title = values.get(1).trim();
-                    Long pages = 0L;
-                    Date date;
-                    Long authorId = 0L;
-                    
-                    try {
-                        pages = Long.parseLong(values.get(2));
-                    } catch (Exception ex) {
-                        System.out.println("Wrong nuber of pages parameter!\n");
-                        System.out.println(HELP_PERSIST);
-                        return ERROR_CODE_OPTION_ERROR;
+                    client.send(args, out);
+                }
+                
+                out.print(PROMPT);
+                out.flush();
+            }
+        } catch (IOException ex) {
+            out.println("Cannot communicate with server on port " + port + ": " + ex.getMessage() + "\n");
+            return ERROR_CODE_UNKNOWN_ERROR;
+        }
+        
+        return ERROR_CODE_OK;
+    }
+    
+    /**
+     * Prints statistics of database operations done by the current command
+     * In the server mode the statistics cover all commands since they were enabled.
+     */
+    private void printStatistics() {
+        out.println("Statistics:");
+        
+        for (String line : statistics.getSummary()) {
+            out.println(line);
+        }
+        
+        out.println();
+    }
+    
+    /**
+     * Prints main help message
+     * @param footer the text printed after options
+     */
+    private void printUsage(String footer) {
+        HelpFormatter formatter = new HelpFormatter();
+        PrintWriter writer = new PrintWriter(out);
+        formatter.printHelp(writer,
+                formatter.getWidth(),
+                "java -jar Lab1-JPA.jar",
+                "\nLibrary database CRUD",
+                options,
+                formatter.getLeftPadding(),
+                formatter.getDescPadding(),
+                footer);
+        writer.flush();
+    }
+    
+    /**
+     * Executes single interactive command and resets the persistence context
+     * @param args the command arguments
+     */
+    private void executeInteractiveCommand(String[] args) {
+        if (!args[0].startsWith("-")) {
+            args[0] = "-" + args[0];
+        }
+        
+        try {
+            manageUserInput(args);
+        } catch (RuntimeException ex) {
+            out.println("Command failed: " + ex.getMessage() + "\n");
+        } finally {
+            // never leak a failed transaction or stale entities into the next command
+            if (databaseManager != null) {
+                if (databaseManager.isTransactionActive()) {
+                    databaseManager.rollbackTransaction();
+                }
+                
+                databaseManager.clear();
+            }
+        }
+    }
+    
+    /**
+     * Splits command line into arguments, double quotes group words
+     * @param line the command line
+     * @return the arguments without quotes
+     */
+    public static String[] splitArguments(String line) {
+        List<String> args = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        boolean hasToken = false;
+        
+        for (char c : line.toCharArray()) {
+            if (c == '"') {
+                quoted = !quoted;
+                hasToken = true;
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (hasToken) {
+                    args.add(current.toString());
+                    current.setLength(0);
+                    hasToken = false;
+                }
+            } else {
+                current.append(c);
+                hasToken = true;
+            }
+        }
+        
+        if (hasToken) {
+            args.add(current.toString());
+        }
+        
+        return args.toArray(new String[args.size()]);
+    }
+    
+    /**
+     * Manages help messages
+     * @param option the one of CLI options
+     * @return the error code
+     */
+    private Integer help(Option option) {
+        String value = option.getValue();
+        
+        if (value == null || value.isEmpty())
+        {
+            printUsage("\nFor details type -h with option name.");
+            return ERROR_CODE_OK;
+        } else {
+            
+            switch(value) {
+                case "h":
+                case "help":
+                    out.println(HELP_HELP);
+                    break;
+                    
+                case "i":
+                case "interactive":
+                    out.println(HELP_INTERACTIVE);
+                    break;
+                    
+                case "p":
+                case "persist":
+                    out.println(HELP_PERSIST);
+                    break;
+                    
+                case "f":
+                case "find":
+                    out.println(HELP_FIND);
+                    break;
+                    
+                case "m":
+                case "merge":
+                    out.println(HELP_MERGE);
+                    break;
+                    
+                case "r":
+                case "remove":
+                    out.println(HELP_REMOVE);
+                    break;
+                    
+                case "I":
+                case "import":
+                    out.println(HELP_IMPORT);
+                    break;
+                    
+                case "E":
+                case "export":
+                    out.println(HELP_EXPORT);
+                    break;
+                    
+                case "c":
+                case "connect":
+                    out.println(HELP_CONNECT);
+                    break;
+                    
+                case "o":
+                case "output":
+                    out.println(HELP_OUTPUT);
+                    break;
+                    
+                case "R":
+                case "report":
+                    out.println(HELP_REPORT);
+                    break;
+                    
+                case "s":
+                case "stats":
+                    out.println(HELP_STATS);
+                    break;
+                    
+                default:
+                    out.println("UNKNOWN OPTION!\n");
+                    out.println(HELP_HELP);
+                    return ERROR_CODE_OPTION_ERROR;
+            }
+            
+            return ERROR_CODE_OK;
+        }
+    }
+
+    /**
+     * Persists new entity specified in parameters
+     * @param selected the given parameters
+     * @return the error code
+     */
+    private Integer persist(Option selected) {
+        DatabaseManager db = getDatabaseManager();
+        List<String> values = selected.getValuesList();
+        
+        if (values.size() < 2) {
+            out.println(HELP_PERSIST);
+            return ERROR_CODE_OPTION_ERROR;
+        }
+        
+            String entity = values.get(0).toLowerCase().trim();
+            
+            switch(entity) {
+                case "author":
+                    if (values.size() < 3) {
+                        out.println(HELP_PERSIST);
+                        return ERROR_CODE_OPTION_ERROR;
+                    }
+                    
+                    String name = values.get(1).trim();
+                    String lastName = values.get(2).trim();
+                    
+                    db.startTransaction();
+                    db.persistAuthor(name, lastName);
+                    db.commitTransaction();                    
+                    break;
+                    
+                case "book":
+                    if (values.size() < 5) {
+                        out.println(HELP_PERSIST);
+                        return ERROR_CODE_OPTION_ERROR;
+                    }
+                    
+                    String title = values.get(1).trim();
+                    Long pages = 0L;
+                    Date date;
+                    Long authorId = 0L;
+                    
+                    try {
+                        pages = Long.parseLong(values.get(2));
+                    } catch (Exception ex) {
+                        out.println("Wrong nuber of pages parameter!\n");
+                        out.println(HELP_PERSIST);
+                        return ERROR_CODE_OPTION_ERROR;
                     }
                    
                     try {
                         DateFormat df = new SimpleDateFormat("yyyy.MM.dd");
                         date = df.parse(values.get(3));
                     } catch (Exception ex) {
-                        System.out.println("Wrong date format!\n");
-                        System.out.println(HELP_PERSIST);
+                        out.println("Wrong date format!\n");
+                        out.println(HELP_PERSIST);
                         return ERROR_CODE_OPTION_ERROR;
                     }
                     
                     try {
                         authorId = Long.parseLong(values.get(4));
                     } catch (Exception ex) {
-                        System.out.println("Wrong author id!\n");
-                        System.out.println(HELP_PERSIST);
+                        out.println("Wrong author id!\n");
+                        out.println(HELP_PERSIST);
                         return ERROR_CODE_OPTION_ERROR;
                     }
                     
@@ -370,14 +1029,14 @@ public class View {
                         db.persistBook(title, pages, date, authorId);
                         db.commitTransaction();
                     } catch (IllegalArgumentException ex) {
-                        System.out.println(ex.getMessage());
+                        out.println(ex.getMessage());
                         return ERROR_CODE_OPTION_ERROR;
                     }
                     break;
                     
                 default:
-                    System.out.println("Wrong entity name!\n");
-                    System.out.println(HELP_PERSIST);
+                    out.println("Wrong entity name!\n");
+                    out.println(HELP_PERSIST);
 
                     return ERROR_CODE_OPTION_ERROR;
             }
@@ -391,11 +1050,27 @@ public class View {
      * @return the error code
      */
     private Integer find(Option selected) {
-        DatabaseManager db = new DatabaseManager();
+        try (EntityRenderer renderer = new EntityRenderer(out, outputFormat)) {
+            return find(selected, renderer);
+        } catch (IOException ex) {
+            out.println("Cannot write found entities.\n");
+            return ERROR_CODE_UNKNOWN_ERROR;
+        }
+    }
+    
+    /**
+     * Finds entities and writes them with given renderer
+     * @param selected the selected option
+     * @param renderer the renderer of found entities
+     * @return the error code
+     * @throws IOException if writing fails
+     */
+    private Integer find(Option selected, EntityRenderer renderer) throws IOException {
+        DatabaseManager db = getDatabaseManager();
         List<String> values = selected.getValuesList();
         
         if (values.size() < 2) {
-            System.out.println(HELP_FIND);
+            out.println(HELP_FIND);
             return ERROR_CODE_OPTION_ERROR;
         }
         
@@ -406,36 +1081,65 @@ public class View {
             case "author":               
 
                 if (key.equals("all")) {
-                    for (Object o: db.findAllAuthors()) {
-                        System.out.println(o.toString());
-                    }
+                    renderer.writeAuthorSummaries(db.listAllAuthors());
                 } else if (key.equals("id")) {
                     Long id = null;
                     
                     try {
                         id = Long.parseLong(values.get(2));
                     } catch (Exception ex) {
-                        System.out.println("Given id is not an integer number!\n");                        
+                        out.println("Given id is not an integer number!\n");                        
                         return ERROR_CODE_OPTION_ERROR;
                     }
                     
-                    Object o = db.findAuthorById(id);
+                    Author author = db.findAuthorById(id);
                     
-                    if (o != null) {
-                        System.out.println(o.toString());
+                    if (author != null) {
+                        renderer.write(author);
                     } else {
-                        System.out.println("No author with given id found.\n");
+                        out.println("No author with given id found.\n");
                     }
                     
                 } else if (key.equals("name")) {
                     String pattern = values.get(2).trim();
                     
-                    for (Object o: db.findAuthorsByName(pattern)) {
-                        System.out.println(o.toString());
+                    renderer.writeAuthorSummaries(db.listAuthorsByName(pattern));
+                } else if (key.equals("after")) {
+                    Long lastId;
+                    Integer pageSize;
+                    
+                    try {
+                        lastId = Long.parseLong(values.get(2));
+                        pageSize = values.size() > 3 ? Integer.parseInt(values.get(3)) : DEFAULT_PAGE_SIZE;
+                    } catch (Exception ex) {
+                        out.println("Given id or page size is not an integer number!\n");
+                        return ERROR_CODE_OPTION_ERROR;
+                    }
+                    
+                    if (pageSize <= 0) {
+                        out.println("Page size must be a positive number!\n");
+                        return ERROR_CODE_OPTION_ERROR;
+                    }
+                    
+                    List<AuthorSummary> page = db.listAuthorsAfter(lastId, pageSize);
+                    
+                    renderer.writeAuthorSummaries(page);
+                    
+                    if (page.size() == pageSize) {
+                        renderer.flush();
+                        printNextPage("Author", page.get(page.size() - 1).getId(), pageSize);
                     }
+                } else if (key.equals("prefix")) {
+                    Integer limit = parseLimit(values);
+                    
+                    if (limit == null) {
+                        return ERROR_CODE_OPTION_ERROR;
+                    }
+                    
+                    renderer.writeAuthorSummaries(db.listAuthorsByPrefix(values.get(2).trim(), limit));
                 } else {
-                    System.out.println("Wrong search option!\n");
-                    System.out.println(HELP_FIND);
+                    out.println("Wrong search option!\n");
+                    out.println(HELP_FIND);
                     
                     return ERROR_CODE_OPTION_ERROR;
                 }
@@ -444,44 +1148,81 @@ public class View {
 
             case "book":               
                 if (key.equals("all")) {
-                    for (Object o: db.findAllBooks()) {
-                        System.out.println(o.toString());
-                    }
+                    renderer.writeBookSummaries(db.listAllBooks());
                 } else if (key.equals("id")) {
                     Long id = null;
                     
                     try {
                         id = Long.parseLong(values.get(2));
                     } catch (Exception ex) {
-                        System.out.println("Given id is not an integer number!\n");                        
+                        out.println("Given id is not an integer number!\n");                        
                         return ERROR_CODE_OPTION_ERROR;
                     }
                     
-                    Object o = db.findBookById(id);
+                    Book book = db.findBookById(id);
                     
-                    if (o != null) {
-                        System.out.println(o.toString());
+                    if (book != null) {
+                        renderer.write(book);
                     } else {
-                        System.out.println("No book with given id found.\n");
+                        out.println("No book with given id found.\n");
                     }
                     
                 } else if (key.equals("title")) {
                     String pattern = values.get(2).trim();
                     
-                    for (Object o: db.findBooksByTitle(pattern)) {
-                        System.out.println(o.toString());
+                    renderer.writeBookSummaries(db.listBooksByTitle(pattern));
+                } else if (key.equals("after")) {
+                    Long lastId;
+                    Integer pageSize;
+                    
+                    try {
+                        lastId = Long.parseLong(values.get(2));
+                        pageSize = values.size() > 3 ? Integer.parseInt(values.get(3)) : DEFAULT_PAGE_SIZE;
+                    } catch (Exception ex) {
+                        out.println("Given id or page size is not an integer number!\n");
+                        return ERROR_CODE_OPTION_ERROR;
+                    }
+                    
+                    if (pageSize <= 0) {
+                        out.println("Page size must be a positive number!\n");
+                        return ERROR_CODE_OPTION_ERROR;
                     }
+                    
+                    List<BookSummary> page = db.listBooksAfter(lastId, pageSize);
+                    
+                    renderer.writeBookSummaries(page);
+                    
+                    if (page.size() == pageSize) {
+                        renderer.flush();
+                        printNextPage("Book", page.get(page.size() - 1).getId(), pageSize);
+                    }
+                } else if (key.equals("contains")) {
+                    Integer limit = parseLimit(values);
+                    
+                    if (limit == null) {
+                        return ERROR_CODE_OPTION_ERROR;
+                    }
+                    
+                    renderer.writeBookSummaries(db.listBooksContaining(values.get(2).trim(), limit));
+                } else if (key.equals("where")) {
+                    BookFilter filter = parseBookFilter(values.subList(2, values.size()));
+                    
+                    if (filter == null) {
+                        return ERROR_CODE_OPTION_ERROR;
+                    }
+                    
+                    renderer.writeBookSummaries(db.listBooks(filter));
                 } else {
-                    System.out.println("Wrong search option!\n");
-                    System.out.println(HELP_FIND);
+                    out.println("Wrong search option!\n");
+                    out.println(HELP_FIND);
                     
                     return ERROR_CODE_OPTION_ERROR;
                 }
                 break;
 
             default:
-                System.out.println("Wrong entity name!\n");
-                System.out.println(HELP_FIND);
+                out.println("Wrong entity name!\n");
+                out.println(HELP_FIND);
 
                 return ERROR_CODE_OPTION_ERROR;
         }
@@ -489,6 +1230,222 @@ public class View {
         return ERROR_CODE_OK;
     }
 
+    /**
+     * Prints report selected by the option value
+     * @param selected the selected option
+     * @return the error code
+     */
+    private Integer report(Option selected) {
+        String name = selected.getValue() == null ? "" : selected.getValue().toLowerCase().trim();
+        DatabaseManager db = getDatabaseManager();
+        
+        if (name.equals("rebuild")) {
+            db.startTransaction();
+            int count = db.rebuildReportSummary();
+            db.commitTransaction();
+            out.println("Computed totals of " + count + " authors.\n");
+            
+            return ERROR_CODE_OK;
+        }
+        
+        try (EntityRenderer renderer = new EntityRenderer(out, outputFormat)) {
+            switch (name) {
+                case "authors":
+                    renderer.writeAuthorReports(db.reportAuthors());
+                    break;
+                    
+                case "years":
+                    renderer.writeYearReports(db.reportReleaseYears());
+                    break;
+                    
+                case "totals":
+                    renderer.write(db.reportTotals());
+                    break;
+                    
+                default:
+                    out.println("Wrong report name!\n");
+                    out.println(HELP_REPORT);
+                    
+                    return ERROR_CODE_OPTION_ERROR;
+            }
+        } catch (IOException ex) {
+            out.println("Cannot write the report.\n");
+            return ERROR_CODE_UNKNOWN_ERROR;
+        }
+        
+        return ERROR_CODE_OK;
+    }
+    
+    /**
+     * Reads optional result limit given after the searched text
+     * @param values the find option values
+     * @return the limit or null if it is not a positive integer number or the text is missing
+     */
+    private Integer parseLimit(List<String> values) {
+        if (values.size() < 3) {
+            out.println(HELP_FIND);
+            return null;
+        }
+        
+        if (values.size() < 4) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        
+        try {
+            Integer limit = Integer.parseInt(values.get(3));
+            
+            if (limit > 0) {
+                return limit;
+            }
+        } catch (NumberFormatException ex) {
+            // reported below
+        }
+        
+        out.println("Limit must be a positive integer number!\n");
+        return null;
+    }
+    
+    /**
+     * Reads conditions of find Book Where, each given as name=value
+     * @param conditions the option values following Where
+     * @return the filter or null if any condition is invalid
+     */
+    private BookFilter parseBookFilter(List<String> conditions) {
+        BookFilter filter = new BookFilter().limit(DEFAULT_PAGE_SIZE);
+        
+        for (String condition : conditions) {
+            String[] pair = condition.replace("\"", "").split("=", 2);
+            
+            if (pair.length < 2) {
+                out.println("Condition " + condition + " has no value!\n");
+                out.println(HELP_FIND);
+                return null;
+            }
+            
+            String name = pair[0].toLowerCase().trim();
+            String value = pair[1].trim();
+            
+            try {
+                switch (name) {
+                    case "pages":
+                        String[] pages = parseRange(value);
+                        filter.pages(pages[0].isEmpty() ? null : Long.parseLong(pages[0]),
+                                pages[1].isEmpty() ? null : Long.parseLong(pages[1]));
+                        break;
+                        
+                    case "released":
+                        String[] dates = parseRange(value);
+                        DateFormat df = new SimpleDateFormat("yyyy.MM.dd");
+                        filter.released(dates[0].isEmpty() ? null : df.parse(dates[0]),
+                                dates[1].isEmpty() ? null : df.parse(dates[1]));
+                        break;
+                        
+                    case "author":
+                        List<Long> ids = new ArrayList<>();
+                        
+                        for (String id : value.split(",")) {
+                            ids.add(Long.parseLong(id.trim()));
+                        }
+                        
+                        filter.authors(ids);
+                        break;
+                        
+                    case "title":
+                        filter.titleStartsWith(value);
+                        break;
+                        
+                    case "order":
+                        String[] order = value.toLowerCase().split(":", 2);
+                        boolean descending = order.length > 1 && order[1].equals("desc");
+                        
+                        if (order.length > 1 && !descending && !order[1].equals("asc")) {
+                            throw new IllegalArgumentException("Order direction must be asc or desc");
+                        }
+                        
+                        filter.orderBy(parseOrder(order[0]), descending);
+                        break;
+                        
+                    case "limit":
+                        Integer limit = Integer.parseInt(value);
+                        
+                        if (limit <= 0) {
+                            throw new IllegalArgumentException("Limit must be a positive integer number");
+                        }
+                        
+                        filter.limit(limit);
+                        break;
+                        
+                    default:
+                        out.println("Unknown condition " + pair[0] + "!\n");
+                        out.println(HELP_FIND);
+                        return null;
+                }
+            } catch (NumberFormatException ex) {
+                out.println("Condition " + condition + " needs integer numbers!\n");
+                return null;
+            } catch (java.text.ParseException ex) {
+                out.println("Condition " + condition + " needs dates in format yyyy.MM.dd!\n");
+                return null;
+            } catch (IllegalArgumentException ex) {
+                out.println("Condition " + condition + " is invalid: " + ex.getMessage() + "!\n");
+                return null;
+            }
+        }
+        
+        return filter;
+    }
+    
+    /**
+     * Splits range given as min..max, either side can be empty
+     * @param value the range
+     * @return the two trimmed sides of the range
+     * @throws IllegalArgumentException if the value has no .. separator
+     */
+    private String[] parseRange(String value) throws IllegalArgumentException {
+        int separator = value.indexOf("..");
+        
+        if (separator < 0) {
+            throw new IllegalArgumentException("Range must be given as min..max");
+        }
+        
+        return new String[] {value.substring(0, separator).trim(), value.substring(separator + 2).trim()};
+    }
+    
+    /**
+     * Returns ordering attribute with given name
+     * @param name the attribute name, id, title, pages or released
+     * @return the ordering attribute
+     * @throws IllegalArgumentException if there is no attribute with given name
+     */
+    private BookFilter.Order parseOrder(String name) throws IllegalArgumentException {
+        switch (name.trim()) {
+            case "id":
+                return BookFilter.Order.ID;
+                
+            case "title":
+                return BookFilter.Order.TITLE;
+                
+            case "pages":
+                return BookFilter.Order.PAGES;
+                
+            case "released":
+                return BookFilter.Order.RELEASE_DATE;
+                
+            default:
+                throw new IllegalArgumentException("Books can be ordered by id, title, pages or released");
+        }
+    }
+    
+    /**
+     * Prints the command which shows the next page
+     * @param entity the entity name
+     * @param lastId the id of the last entity on the current page
+     * @param pageSize the page size
+     */
+    private void printNextPage(String entity, Long lastId, Integer pageSize) {
+        out.println("\nNext page: -find " + entity + " After " + lastId + " " + pageSize);
+    }
+
     /**
      * Merges entity specified in parameters
      * @param selected the given parameters
@@ -498,26 +1455,30 @@ public class View {
         String entity = null;
         Long id = null;
         
-        DatabaseManager db = new DatabaseManager();
+        DatabaseManager db = getDatabaseManager();
         List<String> values = selected.getValuesList();
         
         if (values.size() < 2) {
-            System.out.println(HELP_MERGE);
+            out.println(HELP_MERGE);
             return ERROR_CODE_OPTION_ERROR;
         }
         
+        if (values.get(0).trim().equalsIgnoreCase("author") && values.get(1).trim().equalsIgnoreCase("ids")) {
+            return renameAuthors(values);
+        }
+        
         try {
             entity = values.get(0).toLowerCase().trim();
             id = Long.parseLong(values.get(1));
         } catch (NumberFormatException ex) {
-            System.out.println("Id parameter is not an integer number!\n");
+            out.println("Id parameter is not an integer number!\n");
             return ERROR_CODE_OPTION_ERROR;
         }
 
         switch(entity) {
             case "author":
                 if (values.size() < 4) {
-                    System.out.println(HELP_MERGE);
+                    out.println(HELP_MERGE);
                     return ERROR_CODE_OPTION_ERROR;
                 }
 
@@ -529,14 +1490,14 @@ public class View {
                     db.mergeAuthor(id, name, lastName);
                     db.commitTransaction();
                 } catch (IllegalArgumentException ex) {
-                    System.out.println(ex.getMessage());
+                    out.println(ex.getMessage());
                     return ERROR_CODE_OPTION_ERROR;
                 }
                 break;
 
             case "book":
                 if (values.size() < 6) {
-                    System.out.println(HELP_MERGE);
+                    out.println(HELP_MERGE);
                     return ERROR_CODE_OPTION_ERROR;
                 }
 
@@ -548,25 +1509,25 @@ public class View {
                 try {
                     pages = Long.parseLong(values.get(3));
                 } catch (Exception ex) {
-                    System.out.println("Wrong nuber of pages parameter!\n");
-                    System.out.println(HELP_MERGE);
+                    out.println("Wrong nuber of pages parameter!\n");
+                    out.println(HELP_MERGE);
                     return ERROR_CODE_OPTION_ERROR;
                 }
 
                 try {
                     DateFormat df = new SimpleDateFormat("yyyy.MM.dd");
-                    date = df.parse(values.get(3));
+                    date = df.parse(values.get(4));
                 } catch (Exception ex) {
-                    System.out.println("Wrong date format!\n");
-                    System.out.println(HELP_MERGE);
+                    out.println("Wrong date format!\n");
+                    out.println(HELP_MERGE);
                     return ERROR_CODE_OPTION_ERROR;
                 }
 
                 try {
                     authorId = Long.parseLong(values.get(5));
                 } catch (Exception ex) {
-                    System.out.println("Author id is not an integer number!\n");
-                    System.out.println(HELP_MERGE);
+                    out.println("Author id is not an integer number!\n");
+                    out.println(HELP_MERGE);
                     return ERROR_CODE_OPTION_ERROR;
                 }
 
@@ -575,14 +1536,14 @@ public class View {
                     db.mergeBook(id, title, pages, date, authorId);
                     db.commitTransaction();
                 } catch (IllegalArgumentException ex) {
-                    System.out.println(ex.getMessage());
+                    out.println(ex.getMessage());
                     return ERROR_CODE_OPTION_ERROR;
                 }
                 break;
 
             default:
-                System.out.println("Wrong entity name!\n");
-                System.out.println(HELP_MERGE);
+                out.println("Wrong entity name!\n");
+                out.println(HELP_MERGE);
 
                 return ERROR_CODE_OPTION_ERROR;
         }
@@ -599,30 +1560,44 @@ public class View {
         String entity = null;
         Long id = null;
         
-        DatabaseManager db = new DatabaseManager();
+        DatabaseManager db = getDatabaseManager();
         List<String> values = selected.getValuesList();
         
         if (values.size() < 2) {
-            System.out.println(HELP_REMOVE);
+            out.println(HELP_REMOVE);
             return ERROR_CODE_OPTION_ERROR;
         }
         
+        if (values.get(0).trim().equalsIgnoreCase("book")) {
+            String key = values.get(1).toLowerCase().trim();
+            
+            if (key.equals("author")) {
+                return removeBooksOfAuthors(values);
+            } else if (key.equals("before")) {
+                return removeBooksReleasedBefore(values);
+            }
+        }
+        
         try {
             entity = values.get(0).toLowerCase().trim();
             id = Long.parseLong(values.get(1));
         } catch (NumberFormatException ex) {
-            System.out.println("Id parameter is not an integer number!\n");
+            out.println("Id parameter is not an integer number!\n");
             return ERROR_CODE_OPTION_ERROR;
         }
 
         switch (entity) {
             case "author":
+                if (values.size() > 2) {
+                    return removeAuthors(values);
+                }
+                
                 try {
                     db.startTransaction();
                     db.removeAuthor(id);
                     db.commitTransaction();
                 } catch (IllegalArgumentException ex) {
-                    System.out.println(ex.getMessage());
+                    out.println(ex.getMessage());
                     return ERROR_CODE_OPTION_ERROR;
                 }
                 break;
@@ -633,19 +1608,337 @@ public class View {
                     db.removeBook(id);
                     db.commitTransaction();
                 } catch (IllegalArgumentException ex) {
-                    System.out.println(ex.getMessage());
+                    out.println(ex.getMessage());
                     return ERROR_CODE_OPTION_ERROR;
                 }
                 break;
 
             default:
-                System.out.println("Wrong entity name!\n");
-                System.out.println(HELP_REMOVE);
+                out.println("Wrong entity name!\n");
+                out.println(HELP_REMOVE);
 
                 return ERROR_CODE_OPTION_ERROR;
         }
         
         return ERROR_CODE_OK;
     }
+
+    /**
+     * Removes authors with ids given from the second parameter together with their books
+     * @param values the option values
+     * @return the error code
+     */
+    private Integer removeAuthors(List<String> values) {
+        List<Long> ids = parseIds(values, 1);
+        
+        if (ids == null) {
+            return ERROR_CODE_OPTION_ERROR;
+        }
+        
+        DatabaseManager db = getDatabaseManager();
+        int count;
+        
+        try {
+            db.startTransaction();
+            count = db.removeAuthors(ids);
+            db.commitTransaction();
+        } catch (PersistenceException ex) {
+            return reportFailure(db, ex);
+        }
+        
+        out.println("Removed " + count + " authors.\n");
+        
+        return ERROR_CODE_OK;
+    }
     
+    /**
+     * Removes all books of authors with ids given from the third parameter
+     * @param values the option values
+     * @return the error code
+     */
+    private Integer removeBooksOfAuthors(List<String> values) {
+        List<Long> ids = parseIds(values, 2);
+        
+        if (ids == null) {
+            return ERROR_CODE_OPTION_ERROR;
+        }
+        
+        DatabaseManager db = getDatabaseManager();
+        int count;
+        
+        try {
+            db.startTransaction();
+            count = db.removeBooksOfAuthors(ids);
+            db.commitTransaction();
+        } catch (PersistenceException ex) {
+            return reportFailure(db, ex);
+        }
+        
+        out.println("Removed " + count + " books.\n");
+        
+        return ERROR_CODE_OK;
+    }
+    
+    /**
+     * Removes all books released before date given in the third parameter
+     * @param values the option values
+     * @return the error code
+     */
+    private Integer removeBooksReleasedBefore(List<String> values) {
+        Date date;
+        
+        try {
+            DateFormat df = new SimpleDateFormat("yyyy.MM.dd");
+            date = df.parse(values.get(2));
+        } catch (Exception ex) {
+            out.println("Wrong date format!\n");
+            out.println(HELP_REMOVE);
+            return ERROR_CODE_OPTION_ERROR;
+        }
+        
+        DatabaseManager db = getDatabaseManager();
+        int count;
+        
+        try {
+            db.startTransaction();
+            count = db.removeBooksReleasedBefore(date);
+            db.commitTransaction();
+        } catch (PersistenceException ex) {
+            return reportFailure(db, ex);
+        }
+        
+        out.println("Removed " + count + " books.\n");
+        
+        return ERROR_CODE_OK;
+    }
+    
+    /**
+     * Sets name and last name given in the third and fourth parameter
+     * of all authors with ids given from the fifth parameter
+     * @param values the option values
+     * @return the error code
+     */
+    private Integer renameAuthors(List<String> values) {
+        if (values.size() < 5) {
+            out.println(HELP_MERGE);
+            return ERROR_CODE_OPTION_ERROR;
+        }
+        
+        List<Long> ids = parseIds(values, 4);
+        
+        if (ids == null) {
+            return ERROR_CODE_OPTION_ERROR;
+        }
+        
+        DatabaseManager db = getDatabaseManager();
+        int count;
+        
+        try {
+            db.startTransaction();
+            count = db.renameAuthors(ids, values.get(2).trim(), values.get(3).trim());
+            db.commitTransaction();
+        } catch (PersistenceException ex) {
+            return reportFailure(db, ex);
+        }
+        
+        out.println("Updated " + count + " authors.\n");
+        
+        return ERROR_CODE_OK;
+    }
+    
+    /**
+     * Rolls back the transaction of failed command and prints the error
+     * @param db the database manager of the command
+     * @param ex the error
+     * @return the error code
+     */
+    private Integer reportFailure(DatabaseManager db, PersistenceException ex) {
+        if (db.isTransactionActive()) {
+            db.rollbackTransaction();
+        }
+        
+        out.println("Command failed: " + ex.getMessage() + "\n");
+        return ERROR_CODE_UNKNOWN_ERROR;
+    }
+    
+    /**
+     * Parses ids from given position to the end of option values
+     * Prints error message if any of them is not a number or there is none.
+     * @param values the option values
+     * @param from the position of the first id
+     * @return the list of ids or null if they are wrong
+     */
+    private List<Long> parseIds(List<String> values, int from) {
+        List<Long> ids = new ArrayList<>();
+        
+        try {
+            for (String value : values.subList(Math.min(from, values.size()), values.size())) {
+                ids.add(Long.parseLong(value.trim()));
+            }
+        } catch (NumberFormatException ex) {
+            out.println("Id parameter is not an integer number!\n");
+            return null;
+        }
+        
+        if (ids.isEmpty()) {
+            out.println("No ids given!\n");
+            return null;
+        }
+        
+        return ids;
+    }
+    
+    /**
+     * Imports entities from file specified in parameters
+     * @param selected the given parameters
+     * @return the error code
+     */
+    private Integer importData(Option selected) {
+        List<String> values = selected.getValuesList();
+        
+        if (values.size() < 2) {
+            out.println(HELP_IMPORT);
+            return ERROR_CODE_OPTION_ERROR;
+        }
+        
+        String entity = values.get(0).toLowerCase().trim();
+        String fileName = values.get(1).trim();
+        Integer batchSize = DataImporter.DEFAULT_BATCH_SIZE;
+        
+        if (!entity.equals("author") && !entity.equals("book")) {
+            out.println("Wrong entity name!\n");
+            out.println(HELP_IMPORT);
+            return ERROR_CODE_OPTION_ERROR;
+        }
+        
+        if (values.size() > 2) {
+            try {
+                batchSize = Integer.parseInt(values.get(2));
+            } catch (NumberFormatException ex) {
+                out.println("Batch size is not an integer number!\n");
+                return ERROR_CODE_OPTION_ERROR;
+            }
+            
+            if (batchSize <= 0) {
+                out.println("Batch size must be a positive number!\n");
+                return ERROR_CODE_OPTION_ERROR;
+            }
+        }
+        
+        DataFormat format = DataFormat.fromFileName(fileName);
+        Path file = resolveFile(fileName);
+        
+        if (file == null) {
+            return ERROR_CODE_OPTION_ERROR;
+        }
+        
+        DatabaseManager db = getDatabaseManager();
+        
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            DataImporter importer = new DataImporter(db, batchSize);
+            ImportResult result = entity.equals("author")
+                    ? importer.importAuthors(reader, format)
+                    : importer.importBooks(reader, format);
+            out.println(result.toString());
+        } catch (IOException ex) {
+            out.println("Cannot read file: " + fileName + "\n" + ex.getMessage() + "\n");
+            return ERROR_CODE_OPTION_ERROR;
+        } catch (IllegalArgumentException ex) {
+            out.println(ex.getMessage());
+            return ERROR_CODE_OPTION_ERROR;
+        } catch (PersistenceException ex) {
+            return reportFailure(db, ex);
+        }
+        
+        return ERROR_CODE_OK;
+    }
+
+    /**
+     * Exports entities to file specified in parameters or to the standard output
+     * @param selected the given parameters
+     * @return the error code
+     */
+    private Integer exportData(Option selected) {
+        List<String> values = selected.getValuesList();
+        
+        if (values == null || values.isEmpty()) {
+            out.println(HELP_EXPORT);
+            return ERROR_CODE_OPTION_ERROR;
+        }
+        
+        String entity = values.get(0).toLowerCase().trim();
+        String fileName = values.size() > 1 ? values.get(1).trim() : null;
+        
+        if (!entity.equals("author") && !entity.equals("book")) {
+            out.println("Wrong entity name!\n");
+            out.println(HELP_EXPORT);
+            return ERROR_CODE_OPTION_ERROR;
+        }
+        
+        DataFormat format = fileName == null ? DataFormat.CSV : DataFormat.fromFileName(fileName);
+        Path file = fileName == null ? null : resolveFile(fileName);
+        
+        if (fileName != null && file == null) {
+            return ERROR_CODE_OPTION_ERROR;
+        }
+        
+        DatabaseManager db = getDatabaseManager();
+        DataExporter exporter = new DataExporter(db);
+        
+        try {
+            if (fileName == null) {
+                // standard output is flushed but must stay open
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), EXPORT_BUFFER_SIZE);
+                
+                if (entity.equals("author")) {
+                    exporter.exportAuthors(writer, format);
+                } else {
+                    exporter.exportBooks(writer, format);
+                }
+            } else {
+                long rows;
+                
+                try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), EXPORT_BUFFER_SIZE)) {
+                    rows = entity.equals("author")
+                            ? exporter.exportAuthors(writer, format)
+                            : exporter.exportBooks(writer, format);
+                }
+                
+                out.println("Exported " + rows + " rows to " + fileName);
+            }
+        } catch (IOException ex) {
+            out.println("Cannot write file: " + fileName + "\n");
+            return ERROR_CODE_UNKNOWN_ERROR;
+        } catch (PersistenceException ex) {
+            return reportFailure(db, ex);
+        }
+        
+        return ERROR_CODE_OK;
+    }
+
+    /**
+     * Returns path of file read or written by import or export
+     * Requests of server clients can only use files inside the file directory.
+     * @param fileName the file name given in the command
+     * @return the file path or null if the file is not allowed, the reason is printed
+     */
+    private Path resolveFile(String fileName) {
+        if (!remote) {
+            return Paths.get(fileName);
+        }
+        
+        if (fileDirectory == null) {
+            out.println("Requests sent to the server cannot read or write files.\n");
+            return null;
+        }
+        
+        Path file = fileDirectory.resolve(fileName).normalize();
+        
+        if (!file.startsWith(fileDirectory)) {
+            out.println("File must be inside the server directory: " + fileName + "\n");
+            return null;
+        }
+        
+        return file;
+    }
 }
@@ -0,0 +1,155 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that many threads sharing one context read and write correct data.
+ * Every worker persists authors and books with DatabaseManager.inTransaction()
+ * and after every write reads its own data back by name and title, which goes
+ * through the shared entity cache, the query result cache and the connection
+ * pool while other workers invalidate them. At the end the row counts and ids
+ * are verified.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class ConcurrencyStressTest {
+
+    /**
+     * Operations done by every worker
+     */
+    private static final int OPERATIONS = 200;
+
+    /**
+     * Runs one worker
+     * @throws Exception if a worker fails
+     */
+    @Test
+    public void singleWorkerReadsItsWrites() throws Exception {
+        run(1);
+    }
+
+    /**
+     * Runs workers on many threads sharing the caches and the connection pool
+     * @throws Exception if a worker fails
+     */
+    @Test
+    public void concurrentWorkersReadTheirWrites() throws Exception {
+        run(8);
+    }
+
+    /**
+     * Runs workers on a fresh database and verifies the result
+     * @param threads the number of workers
+     * @throws Exception if a worker fails
+     */
+    private static void run(int threads) throws Exception {
+        DatabaseContext context = TestDatabase.open(TestDatabase.newName("stress"));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+
+            for (int worker = 0; worker < threads; worker++) {
+                final int id = worker;
+                futures.add(executor.submit(() -> work(context, id)));
+            }
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    // rethrows the assertion of the worker
+                    if (ex.getCause() instanceof Error) {
+                        throw (Error) ex.getCause();
+                    }
+
+                    throw ex;
+                }
+            }
+
+            verify(context, threads);
+        } finally {
+            executor.shutdownNow();
+            context.close();
+        }
+    }
+
+    /**
+     * Persists authors and books of one worker and reads them back after every write
+     * @param context the shared context
+     * @param worker the worker number
+     */
+    private static void work(DatabaseContext context, int worker) {
+        String name = "Worker " + worker;
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            final String lastName = "Operation " + i;
+            final String title = name + " " + lastName;
+
+            DatabaseManager.inTransaction(context, db -> {
+                db.persistAuthor(name, lastName);
+                return null;
+            });
+
+            List<Author> authors = DatabaseManager.inTransaction(context, db -> db.findAuthorsByName(name));
+            assertEquals(name + " sees wrong number of authors", i + 1, authors.size());
+            Long authorId = null;
+
+            for (Author author : authors) {
+                assertEquals(name + " found author of another worker", name, author.getName());
+
+                if (author.getLastName().equals(lastName)) {
+                    authorId = author.getId();
+                }
+            }
+
+            assertNotNull(name + " cannot find " + lastName, authorId);
+            final Long bookAuthorId = authorId;
+
+            DatabaseManager.inTransaction(context, db -> {
+                db.persistBook(title, 100L, TestDatabase.releaseDate(), bookAuthorId);
+                return null;
+            });
+
+            List<Book> books = DatabaseManager.inTransaction(context, db -> db.findBooksByTitle(title));
+            assertEquals(title + " found wrong number of times", 1, books.size());
+            assertEquals(title + " has wrong author", bookAuthorId, books.get(0).getAuthor().getId());
+        }
+    }
+
+    /**
+     * Verifies row counts and uniqueness of ids after all workers finished
+     * @param context the shared context
+     * @param threads the number of workers
+     */
+    private static void verify(DatabaseContext context, int threads) {
+        int expected = threads * OPERATIONS;
+        List<Author> authors = DatabaseManager.inTransaction(context, db -> db.findAllAuthors());
+        List<Book> books = DatabaseManager.inTransaction(context, db -> db.findAllBooks());
+        Set<Long> ids = new HashSet<>();
+
+        for (Author author : authors) {
+            assertTrue("duplicate author id " + author.getId(), ids.add(author.getId()));
+        }
+
+        ids.clear();
+
+        for (Book book : books) {
+            assertTrue("duplicate book id " + book.getId(), ids.add(book.getId()));
+        }
+
+        assertEquals("number of authors", expected, authors.size());
+        assertEquals("number of books", expected, books.size());
+    }
+}
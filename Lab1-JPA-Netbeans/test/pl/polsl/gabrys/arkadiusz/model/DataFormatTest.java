@@ -0,0 +1,98 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that rows written by the exporter are read back unchanged by the importer.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class DataFormatTest {
+
+    /**
+     * Field names of the written rows
+     */
+    private static final String[] FIELDS = {"title", "pages", "note"};
+
+    /**
+     * Rows with quotes, commas and line breaks
+     */
+    private static final Object[][] ROWS = {
+        {"Plain", 1L, "none"},
+        {"Smith, \"Jr\"", 2L, "first line\nsecond, \"quoted\" line"},
+        {"\"", 3L, "\n\n"},
+        {"", 4L, "ends with break\n"}
+    };
+
+    /**
+     * CSV rows are read back with their quotes, commas and line breaks
+     * @throws IOException if reading fails
+     */
+    @Test
+    public void csvRoundTrip() throws IOException {
+        assertRoundTrip(DataFormat.CSV);
+    }
+
+    /**
+     * JSON lines are read back with their quotes, commas and line breaks
+     * @throws IOException if reading fails
+     */
+    @Test
+    public void jsonLinesRoundTrip() throws IOException {
+        assertRoundTrip(DataFormat.JSONL);
+    }
+
+    /**
+     * Unterminated quoted field is reported instead of reading the rest as one field
+     * @throws IOException if reading fails
+     */
+    @Test
+    public void unterminatedQuoteRejected() throws IOException {
+        BufferedReader lines = new BufferedReader(new StringReader("\"Open,1,field\nnext,2,row\n"));
+        String row = DataFormat.CSV.readRow(lines);
+
+        try {
+            DataFormat.CSV.parse(row, FIELDS);
+            fail("Unterminated field was parsed");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("Unterminated"));
+        }
+
+        assertEquals(null, DataFormat.CSV.readRow(lines));
+    }
+
+    /**
+     * Writes all rows in given format and checks the values read back
+     * @param format the tested format
+     * @throws IOException if reading fails
+     */
+    private static void assertRoundTrip(DataFormat format) throws IOException {
+        StringBuilder out = new StringBuilder();
+
+        for (Object[] values : ROWS) {
+            format.write(out, FIELDS, values);
+            out.append('\n');
+        }
+
+        BufferedReader lines = new BufferedReader(new StringReader(out.toString()));
+
+        for (Object[] values : ROWS) {
+            String[] expected = new String[values.length];
+
+            for (int i = 0; i < values.length; i++) {
+                expected[i] = values[i].toString();
+            }
+
+            assertEquals(Arrays.asList(expected), Arrays.asList(format.parse(format.readRow(lines), FIELDS)));
+        }
+
+        assertEquals(null, format.readRow(lines));
+    }
+}
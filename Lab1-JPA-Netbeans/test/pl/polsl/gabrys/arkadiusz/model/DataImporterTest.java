@@ -0,0 +1,93 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.io.IOException;
+import java.io.StringReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks batches of the bulk import on an embedded database.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class DataImporterTest {
+
+    /**
+     * Number of rows committed in one transaction
+     */
+    private static final int BATCH_SIZE = 2;
+
+    /**
+     * Context of the tested database
+     */
+    private DatabaseContext context;
+
+    /**
+     * Manager of the tested context
+     */
+    private DatabaseManager db;
+
+    /**
+     * Opens a new empty database
+     */
+    @Before
+    public void setUp() {
+        context = TestDatabase.open(TestDatabase.newName("import"));
+        db = new DatabaseManager(context);
+    }
+
+    /**
+     * Closes the manager and the context
+     */
+    @After
+    public void tearDown() {
+        db.close();
+        context.close();
+    }
+
+    /**
+     * Failed row rolls back only its batch and the error tells where to resume
+     * @throws IOException if reading fails
+     */
+    @Test
+    public void failureReportsCommittedRows() throws IOException {
+        String rows = "Anna,One\nBeata,Two\nCelina,Three\nDorota\nEwa,Five\n";
+
+        try {
+            new DataImporter(db, BATCH_SIZE).importAuthors(new StringReader(rows), DataFormat.CSV);
+            fail("Malformed row was imported");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().startsWith("Line 4: "));
+            assertTrue(ex.getMessage(), ex.getMessage().contains("2 rows were committed"));
+            assertTrue(ex.getMessage(), ex.getMessage().contains("from line 3"));
+        }
+
+        assertEquals(2, db.findAllAuthors().size());
+    }
+
+    /**
+     * Quoted fields spanning lines are imported whole and lines are counted physically
+     * @throws IOException if reading fails
+     */
+    @Test
+    public void quotedLineBreaksImported() throws IOException {
+        String rows = "\"Anna\nMaria\",\"O\"\"Brien, Jr\"\nBeata,\"Two\n\n\"\nCelina\n";
+
+        try {
+            new DataImporter(db, BATCH_SIZE).importAuthors(new StringReader(rows), DataFormat.CSV);
+            fail("Malformed row was imported");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().startsWith("Line 6: "));
+            assertTrue(ex.getMessage(), ex.getMessage().contains("from line 6"));
+        }
+
+        assertEquals(2, db.findAllAuthors().size());
+        assertEquals("Anna\nMaria", db.findAuthorById(1L).getName());
+        assertEquals("O\"Brien, Jr", db.findAuthorById(1L).getLastName());
+        assertEquals("Two\n\n", db.findAuthorById(2L).getLastName());
+    }
+}
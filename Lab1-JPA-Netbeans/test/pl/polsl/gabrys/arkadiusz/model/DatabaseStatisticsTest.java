@@ -0,0 +1,102 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that DatabaseManager calls are counted once, by their outermost operation.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class DatabaseStatisticsTest {
+
+    /**
+     * Number of generated books
+     */
+    private static final int BOOKS = 20;
+
+    /**
+     * Context with statistics enabled
+     */
+    private DatabaseContext context;
+
+    /**
+     * Manager of the tested context
+     */
+    private DatabaseManager db;
+
+    /**
+     * Statistics of the tested context
+     */
+    private DatabaseStatistics statistics;
+
+    /**
+     * Opens and fills a new database with statistics enabled
+     */
+    @Before
+    public void setUp() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(DatabaseStatistics.ENABLED_PROPERTY, "true");
+
+        context = TestDatabase.open(TestDatabase.newName("statistics"), properties);
+        TestDatabase.fill(context, BOOKS);
+        db = new DatabaseManager(context);
+        statistics = context.getStatistics();
+    }
+
+    /**
+     * Closes the manager and the context
+     */
+    @After
+    public void tearDown() {
+        db.close();
+        context.close();
+    }
+
+    /**
+     * Overload delegating to another public overload is counted once
+     */
+    @Test
+    public void delegatingOverloadCountedOnce() {
+        long calls = statistics.getCalls("findAuthorsByName");
+        db.findAuthorsByName("Name 1");
+
+        assertEquals(calls + 1, statistics.getCalls("findAuthorsByName"));
+    }
+
+    /**
+     * Finds and persists run by another operation are not counted on their own
+     */
+    @Test
+    public void nestedOperationsNotCounted() {
+        long finds = statistics.getCalls("findAuthorById");
+        long persists = statistics.getCalls("persistBook");
+        long rows = statistics.getRows("persistBook");
+
+        db.startTransaction();
+        db.persistBook("Counted once", 10L, TestDatabase.releaseDate(), 1L);
+        db.commitTransaction();
+
+        assertEquals(finds, statistics.getCalls("findAuthorById"));
+        assertEquals(persists + 1, statistics.getCalls("persistBook"));
+        assertEquals(rows + 1, statistics.getRows("persistBook"));
+    }
+
+    /**
+     * Work of inTransaction() is part of the inTransaction operation
+     */
+    @Test
+    public void workOfUnitCountedByUnit() {
+        long units = statistics.getCalls("inTransaction");
+        long finds = statistics.getCalls("findAllAuthors");
+
+        DatabaseManager.inTransaction(context, manager -> manager.findAllAuthors());
+
+        assertEquals(units + 1, statistics.getCalls("inTransaction"));
+        assertEquals(finds, statistics.getCalls("findAllAuthors"));
+    }
+}
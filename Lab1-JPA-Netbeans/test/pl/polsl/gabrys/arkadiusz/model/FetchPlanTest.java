@@ -0,0 +1,209 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that object graphs are loaded with a bounded number of SQL statements.
+ * Every load runs on two embedded databases of different size with an empty
+ * shared cache and persistence context, then touches the author of every book
+ * and the books of every author. Statements are counted by SqlProfiler. A load
+ * passes when it needs at most MAX_STATEMENTS statements on both databases
+ * and the same number on both, so the count doesn't grow with the rows.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class FetchPlanTest {
+
+    /**
+     * Number of books in the compared databases
+     */
+    private static final int[] BOOKS = {100, 1000};
+
+    /**
+     * Maximum number of statements of one load
+     */
+    private static final long MAX_STATEMENTS = 2L;
+
+    /**
+     * Number of entities returned by paged and limited loads
+     */
+    private static final int PAGE_SIZE = 50;
+
+    /**
+     * Contexts of the databases in the order of BOOKS
+     */
+    private static DatabaseContext[] contexts;
+
+    /**
+     * Opens and fills the databases
+     * @throws IOException if the SQL log file cannot be created
+     */
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+        contexts = new DatabaseContext[BOOKS.length];
+
+        for (int i = 0; i < BOOKS.length; i++) {
+            File log = File.createTempFile("lab1-fetch", ".log");
+            log.deleteOnExit();
+            Map<String, Object> properties = new HashMap<>();
+            properties.put(SqlLogCustomizer.LOG_FILE_PROPERTY, log.getPath());
+            properties.put(SqlLogCustomizer.THRESHOLD_PROPERTY, String.valueOf(Long.MAX_VALUE));
+
+            contexts[i] = TestDatabase.open(TestDatabase.newName("fetch"), properties);
+            TestDatabase.fill(contexts[i], BOOKS[i]);
+            DatabaseManager db = new DatabaseManager(contexts[i]);
+
+            try {
+                // text indexes are built with a full scan on the first search
+                db.findBooksContaining("Title", 1);
+                db.findAuthorsByPrefix("Name", 1);
+            } finally {
+                db.close();
+            }
+        }
+    }
+
+    /**
+     * Closes the databases
+     */
+    @AfterClass
+    public static void tearDownClass() {
+        for (DatabaseContext context : contexts) {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    /**
+     * All books with their authors
+     */
+    @Test
+    public void findAllBooks() {
+        check(db -> db.findAllBooks());
+    }
+
+    /**
+     * Page of books with their authors
+     */
+    @Test
+    public void findBooksAfter() {
+        check(db -> db.findBooksAfter(0L, PAGE_SIZE));
+    }
+
+    /**
+     * Books with given title and their authors
+     */
+    @Test
+    public void findBooksByTitle() {
+        check(db -> db.findBooksByTitle(TestDatabase.title(1L), false));
+    }
+
+    /**
+     * Books found by the title index with their authors
+     */
+    @Test
+    public void findBooksContaining() {
+        check(db -> db.findBooksContaining("Title 1", PAGE_SIZE));
+    }
+
+    /**
+     * Books matching a filter with their authors
+     */
+    @Test
+    public void findBooks() {
+        check(db -> db.findBooks(new BookFilter().pages(50L, null).limit(PAGE_SIZE)));
+    }
+
+    /**
+     * Authors found by the name index with their books
+     */
+    @Test
+    public void findAuthorsByPrefix() {
+        check(db -> db.findAuthorsByPrefix("Last", PAGE_SIZE));
+    }
+
+    /**
+     * All authors with their books loaded on access
+     */
+    @Test
+    public void findAllAuthors() {
+        check(db -> db.findAllAuthors());
+    }
+
+    /**
+     * All authors with the books entity graph
+     */
+    @Test
+    public void findAllAuthorsWithBooks() {
+        check(db -> db.findAllAuthors(Author.GRAPH_WITH_BOOKS));
+    }
+
+    /**
+     * Page of authors with the books entity graph
+     */
+    @Test
+    public void findAuthorsAfterWithBooks() {
+        check(db -> db.findAuthorsAfter(0L, PAGE_SIZE, Author.GRAPH_WITH_BOOKS));
+    }
+
+    /**
+     * Runs load on every database and compares the numbers of statements
+     * @param load the load
+     */
+    private static void check(Function<DatabaseManager, List<?>> load) {
+        long[] counts = new long[BOOKS.length];
+
+        for (int i = 0; i < BOOKS.length; i++) {
+            counts[i] = count(contexts[i], load);
+            assertTrue(BOOKS[i] + " books: " + counts[i] + " statements", counts[i] <= MAX_STATEMENTS);
+        }
+
+        for (int i = 1; i < BOOKS.length; i++) {
+            assertEquals(BOOKS[i] + " books", counts[0], counts[i]);
+        }
+    }
+
+    /**
+     * Counts statements of load with empty caches
+     * @param context the database context
+     * @param load the load
+     * @return the number of statements
+     */
+    private static long count(DatabaseContext context, Function<DatabaseManager, List<?>> load) {
+        DatabaseManager db = new DatabaseManager(context);
+
+        try {
+            context.getEntityManagerFactory().getCache().evictAll();
+            long before = context.getSqlProfiler().getStatementCount();
+            touch(load.apply(db));
+            return context.getSqlProfiler().getStatementCount() - before;
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * Reads relationships of loaded entities, as rendering them would
+     * @param entities the loaded books or authors
+     */
+    private static void touch(List<?> entities) {
+        for (Object entity : entities) {
+            if (entity instanceof Book) {
+                ((Book) entity).getAuthor().getLastName();
+            } else {
+                ((Author) entity).getBooks().size();
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that cached query results never include writes which were not committed.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class QueryResultCacheTest {
+
+    /**
+     * Number of generated books
+     */
+    private static final int BOOKS = 20;
+
+    /**
+     * Context of the tested database
+     */
+    private DatabaseContext context;
+
+    /**
+     * Manager of the tested context
+     */
+    private DatabaseManager db;
+
+    /**
+     * Opens and fills a new database
+     */
+    @Before
+    public void setUp() {
+        context = TestDatabase.open(TestDatabase.newName("query-cache"));
+        TestDatabase.fill(context, BOOKS);
+        db = new DatabaseManager(context);
+    }
+
+    /**
+     * Closes the manager and the context
+     */
+    @After
+    public void tearDown() {
+        db.close();
+        context.close();
+    }
+
+    /**
+     * Result read after an uncommitted removal is not served after rollback
+     */
+    @Test
+    public void rolledBackRemovalNotCached() {
+        String title = TestDatabase.title(1L);
+        assertEquals(1, db.findBooksByTitle(title).size());
+
+        db.startTransaction();
+        db.removeBook(1L);
+        assertEquals(0, db.findBooksByTitle(title).size());
+        db.rollbackTransaction();
+        db.clear();
+
+        assertEquals(1, db.findBooksByTitle(title).size());
+    }
+
+    /**
+     * Result read after an uncommitted insert is not served after rollback
+     */
+    @Test
+    public void rolledBackInsertNotCached() {
+        db.startTransaction();
+        db.persistBook("Rolled back", 10L, TestDatabase.releaseDate(), 1L);
+        assertEquals(1, db.findBooksByTitle("Rolled back").size());
+        db.rollbackTransaction();
+        db.clear();
+
+        assertEquals(0, db.findBooksByTitle("Rolled back").size());
+    }
+
+    /**
+     * Committed write is visible to reads outside the transaction
+     */
+    @Test
+    public void committedRemovalVisible() {
+        String title = TestDatabase.title(2L);
+        assertEquals(1, db.findBooksByTitle(title).size());
+
+        db.startTransaction();
+        db.removeBook(2L);
+        db.commitTransaction();
+
+        assertEquals(0, db.findBooksByTitle(title).size());
+    }
+}
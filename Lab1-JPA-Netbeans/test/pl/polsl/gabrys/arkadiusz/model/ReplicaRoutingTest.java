@@ -0,0 +1,160 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.persistence.EntityManagerFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks which database reads are routed to when a read replica is configured.
+ * The primary and the replica are two separate embedded databases, an author
+ * present only in the replica tells which one answered the query. Reads right
+ * after a write and reads inside transactions must go to the primary, reads
+ * after the tolerated lag must go to the replica, and their results must not
+ * be served from the query result cache to reads of the primary.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class ReplicaRoutingTest {
+
+    /**
+     * Tolerated replica lag used by the test in milliseconds
+     */
+    private static final long MAX_LAG = 200L;
+
+    /**
+     * Name of the author stored only in the replica
+     */
+    private static final String REPLICA_NAME = "Replica";
+
+    /**
+     * Name of the author stored only in the primary
+     */
+    private static final String PRIMARY_NAME = "Primary";
+
+    /**
+     * Context of the primary with the replica
+     */
+    private DatabaseContext context;
+
+    /**
+     * Manager of the tested context
+     */
+    private DatabaseManager db;
+
+    /**
+     * Creates the replica with its own author and the primary without it
+     */
+    @Before
+    public void setUp() {
+        String replicaName = TestDatabase.newName("replica-secondary");
+        DatabaseContext seed = TestDatabase.open(replicaName);
+
+        try {
+            DatabaseManager.inTransaction(seed, db -> {
+                db.persistAuthor(REPLICA_NAME, REPLICA_NAME);
+                return null;
+            });
+        } finally {
+            seed.close();
+        }
+
+        Map<String, Object> primaryProperties = new HashMap<>();
+        primaryProperties.put(DatabaseContext.REPLICA_MAX_LAG_PROPERTY, String.valueOf(MAX_LAG));
+
+        Map<String, Object> replicaProperties = new HashMap<>();
+        replicaProperties.put(DatabaseContext.SCHEMA_MIGRATE_PROPERTY, "false");
+
+        EntityManagerFactory primary = TestDatabase.createEntityManagerFactory(TestDatabase.newName("replica-primary"), primaryProperties);
+        EntityManagerFactory replica = TestDatabase.createEntityManagerFactory(replicaName, replicaProperties);
+        context = new DatabaseContext(primary, replica);
+        db = new DatabaseManager(context);
+    }
+
+    /**
+     * Closes the manager and both databases
+     */
+    @After
+    public void tearDown() {
+        db.close();
+        context.close();
+    }
+
+    /**
+     * Reads without any write go to the replica
+     */
+    @Test
+    public void readsWithoutWritesGoToReplica() {
+        assertEquals(1, count(REPLICA_NAME));
+    }
+
+    /**
+     * Reads inside a transaction go to the primary
+     */
+    @Test
+    public void readsInsideTransactionGoToPrimary() {
+        db.startTransaction();
+        db.persistAuthor(PRIMARY_NAME, PRIMARY_NAME);
+        assertEquals(0, count(REPLICA_NAME));
+        db.commitTransaction();
+    }
+
+    /**
+     * Reads within the tolerated lag after a write go to the primary
+     */
+    @Test
+    public void readsRightAfterWriteGoToPrimary() {
+        writePrimaryAuthor();
+        assertEquals(1, count(PRIMARY_NAME));
+    }
+
+    /**
+     * Reads after the tolerated lag go to the replica again
+     * @throws InterruptedException if the wait is interrupted
+     */
+    @Test
+    public void readsAfterLagGoToReplica() throws InterruptedException {
+        writePrimaryAuthor();
+        Thread.sleep(MAX_LAG * 2);
+        db.clear();
+
+        assertEquals(0, count(PRIMARY_NAME));
+        assertEquals(1, count(REPLICA_NAME));
+    }
+
+    /**
+     * Results read from a replica which is behind are not served to reads of the primary
+     * @throws InterruptedException if the wait is interrupted
+     */
+    @Test
+    public void replicaResultsAreNotCached() throws InterruptedException {
+        writePrimaryAuthor();
+        Thread.sleep(MAX_LAG * 2);
+
+        assertEquals(0, db.findAuthorsByName(PRIMARY_NAME, true).size());
+        db.startTransaction();
+        assertEquals(1, db.findAuthorsByName(PRIMARY_NAME, true).size());
+        db.commitTransaction();
+    }
+
+    /**
+     * Stores author which the replica doesn't have
+     */
+    private void writePrimaryAuthor() {
+        db.startTransaction();
+        db.persistAuthor(PRIMARY_NAME, PRIMARY_NAME);
+        db.commitTransaction();
+    }
+
+    /**
+     * Counts authors with given name bypassing the query result cache
+     * @param name the author name
+     * @return the number of authors
+     */
+    private int count(String name) {
+        return db.findAuthorsByName(name, false).size();
+    }
+}
@@ -0,0 +1,186 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the AUTHOR_TOTALS summary stays equal to totals grouped from books.
+ * One context with the summary enabled writes to an embedded database, a
+ * second context on the same database with the summary disabled groups the
+ * books. After every kind of write both author reports and totals must match.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class ReportSummaryTest {
+
+    /**
+     * Number of generated books
+     */
+    private static final int BOOKS = 1000;
+
+    /**
+     * Context with the summary enabled
+     */
+    private DatabaseContext summaryContext;
+
+    /**
+     * Context of the same database with the summary disabled
+     */
+    private DatabaseContext groupingContext;
+
+    /**
+     * Manager writing through the summary
+     */
+    private DatabaseManager db;
+
+    /**
+     * Manager grouping totals from books
+     */
+    private DatabaseManager grouping;
+
+    /**
+     * Opens both contexts on a new database and fills it
+     */
+    @Before
+    public void setUp() {
+        String name = TestDatabase.newName("report-summary");
+        Map<String, Object> enabled = new HashMap<>();
+        enabled.put(DatabaseContext.REPORT_SUMMARY_PROPERTY, "true");
+        Map<String, Object> disabled = new HashMap<>();
+        disabled.put(DatabaseContext.REPORT_SUMMARY_PROPERTY, "false");
+
+        summaryContext = TestDatabase.open(name, enabled);
+        groupingContext = TestDatabase.open(name, disabled);
+        db = new DatabaseManager(summaryContext);
+        grouping = new DatabaseManager(groupingContext);
+        TestDatabase.fill(summaryContext, BOOKS);
+    }
+
+    /**
+     * Closes managers and contexts
+     */
+    @After
+    public void tearDown() {
+        db.close();
+        grouping.close();
+        groupingContext.close();
+        summaryContext.close();
+    }
+
+    /**
+     * Summary of persisted authors and books
+     */
+    @Test
+    public void persistedAuthorsAndBooks() {
+        compare();
+    }
+
+    /**
+     * Summary after books changed pages and author
+     */
+    @Test
+    public void mergedBooks() {
+        db.startTransaction();
+        db.mergeBook(1L, "Moved", 321L, TestDatabase.releaseDate(), 2L);
+        db.mergeBook(2L, "Longer", 999L, TestDatabase.releaseDate(), TestDatabase.authorOf(2L, BOOKS));
+        db.commitTransaction();
+        compare();
+    }
+
+    /**
+     * Summary after a book was removed and an author without books was added
+     */
+    @Test
+    public void removedBookAndAuthorWithoutBooks() {
+        db.startTransaction();
+        db.removeBook(3L);
+        db.persistAuthor("New", "Author");
+        db.commitTransaction();
+        compare();
+    }
+
+    /**
+     * Summary after bulk removal of books of authors
+     */
+    @Test
+    public void removedBooksOfAuthors() {
+        db.startTransaction();
+        db.persistBook("Old", 10L, date(1960), 5L);
+        db.persistBook("Older", 20L, date(1950), 6L);
+        db.removeBooksOfAuthors(Arrays.asList(7L, 8L));
+        db.commitTransaction();
+        compare();
+    }
+
+    /**
+     * Summary after bulk removal of books released before a date
+     */
+    @Test
+    public void removedBooksReleasedBefore() {
+        db.startTransaction();
+        db.persistBook("Old", 10L, date(1960), 5L);
+        db.commitTransaction();
+
+        db.startTransaction();
+        db.removeBooksReleasedBefore(date(1965));
+        db.persistBook("After removal", 30L, TestDatabase.releaseDate(), 9L);
+        db.commitTransaction();
+        compare();
+    }
+
+    /**
+     * Summary after bulk removal of authors with their books
+     */
+    @Test
+    public void removedAuthors() {
+        db.startTransaction();
+        db.persistBook("Removed with author", 40L, TestDatabase.releaseDate(), 10L);
+        db.removeAuthors(Collections.singletonList(10L));
+        db.commitTransaction();
+        compare();
+    }
+
+    /**
+     * Summary rebuilt from books
+     */
+    @Test
+    public void rebuiltSummary() {
+        db.startTransaction();
+        db.rebuildReportSummary();
+        db.commitTransaction();
+        compare();
+    }
+
+    /**
+     * Compares reports read from the summary with reports grouped from books
+     */
+    private void compare() {
+        db.clear();
+        grouping.clear();
+        ReportTotals summary = db.reportTotals();
+        ReportTotals grouped = grouping.reportTotals();
+
+        assertEquals(grouping.reportAuthors(), db.reportAuthors());
+        assertEquals("authors", grouped.getAuthors(), summary.getAuthors());
+        assertEquals("books", grouped.getBooks(), summary.getBooks());
+        assertEquals("pages", grouped.getPages(), summary.getPages());
+    }
+
+    /**
+     * Returns first day of given year
+     * @param year the year
+     * @return the date
+     */
+    private static Date date(int year) {
+        return new GregorianCalendar(year, Calendar.JANUARY, 1).getTime();
+    }
+}
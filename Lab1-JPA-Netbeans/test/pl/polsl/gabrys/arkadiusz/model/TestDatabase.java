@@ -0,0 +1,168 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.PersistenceException;
+
+/**
+ * Opens and fills embedded databases used by the tests.
+ * The persistence unit of the application is deployed with its connection
+ * replaced by an in-memory H2 database in MySQL mode, whose schema is created
+ * by the migrations. Every database lives until the JVM exits, so every test
+ * asks for a new name. Ids of a fresh database start with 1, book with id i
+ * has title "Title i" and author with id (i % authors) + 1.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class TestDatabase {
+
+    /**
+     * Number of books per author
+     */
+    public static final int BOOKS_PER_AUTHOR = 10;
+
+    /**
+     * Number of entities written in one transaction by fill()
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Release date of generated books
+     */
+    private static final Date RELEASE_DATE = new Date(0L);
+
+    /**
+     * Number of the next database, keeps names unique
+     */
+    private static final AtomicInteger nextNumber = new AtomicInteger(1);
+
+    /**
+     * Class has only static methods
+     */
+    private TestDatabase() {
+    }
+
+    /**
+     * Returns name of a database no other test uses
+     * @param prefix the start of the name
+     * @return the database name
+     */
+    public static String newName(String prefix) {
+        return prefix + nextNumber.getAndIncrement();
+    }
+
+    /**
+     * Creates entity manager factory of the embedded database with given name
+     * The SQL log of the persistence unit is turned off unless the properties set it.
+     * @param name the database name
+     * @param properties the persistence unit properties overriding persistence.xml
+     * @return the entity manager factory
+     * @throws PersistenceException if the persistence unit cannot be deployed
+     */
+    public static EntityManagerFactory createEntityManagerFactory(String name, Map<String, Object> properties) throws PersistenceException {
+        Map<String, Object> unitProperties = new HashMap<>();
+        unitProperties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        unitProperties.put("javax.persistence.jdbc.driver", "org.h2.Driver");
+        unitProperties.put("javax.persistence.jdbc.user", "sa");
+        unitProperties.put("javax.persistence.jdbc.password", "");
+        unitProperties.put(SqlLogCustomizer.LOG_FILE_PROPERTY, "");
+        unitProperties.putAll(properties);
+
+        return Persistence.createEntityManagerFactory(DatabaseContext.PERSISTANCE_UNIT_NAME, unitProperties);
+    }
+
+    /**
+     * Opens context of the embedded database with given name
+     * @param name the database name
+     * @return the context, the schema is migrated when it doesn't exist
+     * @throws PersistenceException if the persistence unit cannot be deployed
+     */
+    public static DatabaseContext open(String name) throws PersistenceException {
+        return open(name, new HashMap<String, Object>());
+    }
+
+    /**
+     * Opens context of the embedded database with given name and properties
+     * @param name the database name
+     * @param properties the persistence unit properties overriding persistence.xml
+     * @return the context, the schema is migrated when it doesn't exist
+     * @throws PersistenceException if the persistence unit cannot be deployed
+     */
+    public static DatabaseContext open(String name, Map<String, Object> properties) throws PersistenceException {
+        return new DatabaseContext(createEntityManagerFactory(name, properties));
+    }
+
+    /**
+     * Fills fresh database with given number of books and their authors
+     * @param context the context of an empty database
+     * @param books the number of books
+     * @throws PersistenceException if writing fails
+     */
+    public static void fill(DatabaseContext context, int books) throws PersistenceException {
+        int authors = authorCount(books);
+
+        for (int i = 1; i <= authors; i += BATCH_SIZE) {
+            final int first = i;
+
+            DatabaseManager.inTransaction(context, db -> {
+                for (int j = first; j < first + BATCH_SIZE && j <= authors; j++) {
+                    db.persistAuthor("Name " + j, "LastName " + j);
+                }
+
+                return null;
+            });
+        }
+
+        for (int i = 1; i <= books; i += BATCH_SIZE) {
+            final int first = i;
+
+            DatabaseManager.inTransaction(context, db -> {
+                for (int j = first; j < first + BATCH_SIZE && j <= books; j++) {
+                    db.persistBook(title(j), 100L, RELEASE_DATE, db.getAuthorReference(authorOf(j, books)));
+                }
+
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Returns number of authors generated for given number of books
+     * @param books the number of books
+     * @return the number of authors
+     */
+    public static int authorCount(int books) {
+        return Math.max(1, books / BOOKS_PER_AUTHOR);
+    }
+
+    /**
+     * Returns id of the author of given generated book
+     * @param bookId the book id
+     * @param books the number of generated books
+     * @return the author id
+     */
+    public static long authorOf(long bookId, int books) {
+        return bookId % authorCount(books) + 1;
+    }
+
+    /**
+     * Returns title of given generated book
+     * @param bookId the book id
+     * @return the book title
+     */
+    public static String title(long bookId) {
+        return "Title " + bookId;
+    }
+
+    /**
+     * Returns release date of generated books
+     * @return the release date
+     */
+    public static Date releaseDate() {
+        return new Date(RELEASE_DATE.getTime());
+    }
+}
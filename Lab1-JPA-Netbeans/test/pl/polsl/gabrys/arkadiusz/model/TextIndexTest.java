@@ -0,0 +1,205 @@
+package pl.polsl.gabrys.arkadiusz.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks searches of the trigram index and its updates by committed writes.
+ * Updates are checked through DatabaseManager on an embedded database, so
+ * they go through updateTextIndexes() run by commitTransaction().
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class TextIndexTest {
+
+    /**
+     * Number of generated books
+     */
+    private static final int BOOKS = 20;
+
+    /**
+     * Maximum number of results of searches
+     */
+    private static final int LIMIT = 100;
+
+    /**
+     * Context of the tested database
+     */
+    private DatabaseContext context;
+
+    /**
+     * Manager of the tested context
+     */
+    private DatabaseManager db;
+
+    /**
+     * Opens and fills a new database and builds both indexes
+     */
+    @Before
+    public void setUp() {
+        context = TestDatabase.open(TestDatabase.newName("text-index"));
+        TestDatabase.fill(context, BOOKS);
+        db = new DatabaseManager(context);
+        db.findBooksContaining("Title", 1);
+        db.findAuthorsByPrefix("Name", 1);
+    }
+
+    /**
+     * Closes the manager and the context
+     */
+    @After
+    public void tearDown() {
+        db.close();
+        context.close();
+    }
+
+    /**
+     * Query of many words matches them as one phrase in the same order
+     */
+    @Test
+    public void multiTokenQueryMatchesPhrase() {
+        TextIndex index = index("The Old Man and the Sea", "Old Sea Man", "The Sea Wolf");
+
+        assertArrayEquals(new long[] {1L}, index.searchContaining("old man and", LIMIT));
+        assertArrayEquals(new long[] {2L}, index.searchContaining("sea man", LIMIT));
+        assertArrayEquals(new long[] {1L, 3L}, index.searchContaining("the sea", LIMIT));
+        assertArrayEquals(new long[0], index.searchContaining("man old", LIMIT));
+    }
+
+    /**
+     * Prefix of many words matches the start of any field
+     */
+    @Test
+    public void multiTokenPrefixMatchesField() {
+        TextIndex index = index("Jan" + TextIndex.FIELD_SEPARATOR + "Van Der Berg",
+                "Van" + TextIndex.FIELD_SEPARATOR + "Morrison");
+
+        assertArrayEquals(new long[] {1L}, index.searchPrefix("van der", LIMIT));
+        assertArrayEquals(new long[] {1L, 2L}, index.searchPrefix("van", LIMIT));
+        assertArrayEquals(new long[0], index.searchPrefix("der berg", LIMIT));
+    }
+
+    /**
+     * Case and diacritics of texts and queries are ignored
+     */
+    @Test
+    public void caseAndDiacriticsFolded() {
+        TextIndex index = index("Łódź Stories", "Crème Brûlée", "ZAŻÓŁĆ GĘŚLĄ JAŹŃ");
+
+        assertArrayEquals(new long[] {1L}, index.searchContaining("LODZ", LIMIT));
+        assertArrayEquals(new long[] {1L}, index.searchContaining("łódź", LIMIT));
+        assertArrayEquals(new long[] {2L}, index.searchContaining("creme brulee", LIMIT));
+        assertArrayEquals(new long[] {3L}, index.searchContaining("Zażółć gęślą", LIMIT));
+        assertArrayEquals(new long[] {3L}, index.searchPrefix("zazolc", LIMIT));
+        assertEquals("zazolc gesla jazn", TextIndex.fold("ZAŻÓŁĆ GĘŚLĄ JAŹŃ"));
+    }
+
+    /**
+     * Merged title replaces the old one after commit
+     */
+    @Test
+    public void mergeUpdatesIndex() {
+        db.startTransaction();
+        db.mergeBook(1L, "Renamed Volume", 100L, TestDatabase.releaseDate(), TestDatabase.authorOf(1L, BOOKS));
+        db.commitTransaction();
+
+        assertEquals(ids(1L), bookIds("renamed vol"));
+        assertEquals(ids(10L, 11L, 12L, 13L, 14L, 15L, 16L, 17L, 18L, 19L), bookIds(TestDatabase.title(1L)));
+    }
+
+    /**
+     * Removed book is not found after commit
+     */
+    @Test
+    public void removeUpdatesIndex() {
+        db.startTransaction();
+        db.removeBook(2L);
+        db.commitTransaction();
+
+        assertEquals(ids(20L), bookIds(TestDatabase.title(2L)));
+    }
+
+    /**
+     * Persisted and merged author is found by the new name after commit
+     */
+    @Test
+    public void persistAndMergeOfAuthorUpdateIndex() {
+        db.startTransaction();
+        db.persistAuthor("Zofia", "Nałkowska");
+        db.mergeAuthor(1L, "Renamed", "Author");
+        db.commitTransaction();
+
+        assertEquals(1, db.findAuthorsByPrefix("nalkowska", LIMIT).size());
+        assertEquals(1, db.findAuthorsByPrefix("renamed", LIMIT).size());
+        assertEquals(0, db.findAuthorsByPrefix("Name 1", LIMIT).size());
+    }
+
+    /**
+     * Writes rolled back leave the index unchanged
+     */
+    @Test
+    public void rollbackLeavesIndex() {
+        db.startTransaction();
+        db.mergeBook(3L, "Rolled Back", 100L, TestDatabase.releaseDate(), TestDatabase.authorOf(3L, BOOKS));
+        db.removeBook(4L);
+        db.persistBook("Never Committed", 10L, TestDatabase.releaseDate(), 1L);
+        db.rollbackTransaction();
+        db.clear();
+
+        assertEquals(ids(), bookIds("rolled back"));
+        assertEquals(ids(), bookIds("never committed"));
+        assertEquals(ids(3L), bookIds(TestDatabase.title(3L)));
+        assertEquals(ids(4L), bookIds(TestDatabase.title(4L)));
+    }
+
+    /**
+     * Creates built index of given texts with ids from 1
+     * @param texts the document texts
+     * @return the index
+     */
+    private static TextIndex index(String... texts) {
+        TextIndex index = new TextIndex();
+        index.build(consumer -> {
+            for (int i = 0; i < texts.length; i++) {
+                consumer.accept(i + 1L, texts[i]);
+            }
+        });
+
+        return index;
+    }
+
+    /**
+     * Returns ids of books with titles containing given fragment
+     * @param fragment the searched fragment
+     * @return the ids in ascending order
+     */
+    private List<Long> bookIds(String fragment) {
+        List<Long> ids = new ArrayList<>();
+
+        for (Book book : db.findBooksContaining(fragment, LIMIT)) {
+            ids.add(book.getId());
+        }
+
+        return ids;
+    }
+
+    /**
+     * Creates list of given ids
+     * @param values the ids
+     * @return the list
+     */
+    private static List<Long> ids(Long... values) {
+        List<Long> ids = new ArrayList<>();
+
+        for (Long value : values) {
+            ids.add(value);
+        }
+
+        return ids;
+    }
+}
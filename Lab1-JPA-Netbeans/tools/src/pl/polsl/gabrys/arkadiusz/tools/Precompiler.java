@@ -0,0 +1,139 @@
+package pl.polsl.gabrys.arkadiusz.tools;
+
+import java.io.File;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Persistence;
+import javax.persistence.PersistenceException;
+import org.eclipse.persistence.jpa.jpql.EclipseLinkGrammarValidator;
+import org.eclipse.persistence.jpa.jpql.JPQLQueryProblem;
+import org.eclipse.persistence.jpa.jpql.JPQLQueryProblemResourceBundle;
+import org.eclipse.persistence.jpa.jpql.parser.DefaultEclipseLinkJPQLGrammar;
+import org.eclipse.persistence.jpa.jpql.parser.JPQLExpression;
+import org.eclipse.persistence.jpa.jpql.parser.JPQLGrammar;
+import org.eclipse.persistence.sessions.Session;
+import pl.polsl.gabrys.arkadiusz.model.Author;
+import pl.polsl.gabrys.arkadiusz.model.AuthorTotals;
+import pl.polsl.gabrys.arkadiusz.model.Book;
+import pl.polsl.gabrys.arkadiusz.model.ClasspathProjectCache;
+import pl.polsl.gabrys.arkadiusz.model.DatabaseContext;
+
+/**
+ * Build step which checks the persistence unit and writes its metadata cache
+ * Named queries of the entities are parsed and checked by the JPQL grammar
+ * validator, then the persistence unit is deployed without connecting to the
+ * database, which processes the mapping annotations and compiles the named
+ * queries against them. The processed metadata is written by
+ * ClasspathProjectCache to the file given as the first argument, which the
+ * build places in the compiled classes, so the application reads it from its
+ * jar instead of processing annotations. The class is part of the build, it
+ * is not packaged with the application. Exits with status 1 when any check fails.
+ * @author Arkadiusz Gabryś
+ * @version 1.0
+ */
+public class Precompiler {
+
+    /**
+     * Entity classes with named queries
+     */
+    private static final Class<?>[] ENTITIES = {Author.class, Book.class, AuthorTotals.class};
+
+    /**
+     * Checks the persistence unit and writes the metadata cache
+     * @param args the metadata cache file
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("usage: Precompiler <metadata cache file>");
+            System.exit(1);
+        }
+
+        List<String> problems = new ArrayList<>();
+        int queries = validateNamedQueries(problems);
+
+        if (!problems.isEmpty()) {
+            for (String problem : problems) {
+                System.out.println(problem);
+            }
+
+            System.exit(1);
+        }
+
+        File cache = new File(args[0]);
+
+        // an old cache on the classpath would be read instead of the annotations
+        if (cache.exists() && !cache.delete()) {
+            System.out.println("Cannot delete " + cache);
+            System.exit(1);
+        }
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("eclipselink.validation-only", "true");
+        properties.put("eclipselink.project-cache", ClasspathProjectCache.class.getName());
+        properties.put(ClasspathProjectCache.OUTPUT_PROPERTY, cache.getAbsolutePath());
+
+        EntityManagerFactory entityManagerFactory = null;
+
+        try {
+            entityManagerFactory = Persistence.createEntityManagerFactory(DatabaseContext.PERSISTANCE_UNIT_NAME, properties);
+            // deploys the unit, named queries are compiled with the descriptors
+            entityManagerFactory.unwrap(Session.class);
+        } catch (PersistenceException ex) {
+            System.out.println("Persistence unit " + DatabaseContext.PERSISTANCE_UNIT_NAME + " is not valid: " + ex.getMessage());
+            System.exit(1);
+        } finally {
+            if (entityManagerFactory != null && entityManagerFactory.isOpen()) {
+                entityManagerFactory.close();
+            }
+        }
+
+        if (!cache.exists()) {
+            System.out.println("Metadata cache was not written to " + cache);
+            System.exit(1);
+        }
+
+        System.out.println("Checked " + queries + " named queries, metadata cache written to " + cache);
+    }
+
+    /**
+     * Parses and validates named queries of all entities
+     * @param problems the list problems are added to
+     * @return the number of checked queries
+     */
+    static int validateNamedQueries(List<String> problems) {
+        JPQLGrammar grammar = DefaultEclipseLinkJPQLGrammar.instance();
+        ResourceBundle messages = ResourceBundle.getBundle(JPQLQueryProblemResourceBundle.class.getName());
+        int count = 0;
+
+        for (Class<?> entity : ENTITIES) {
+            NamedQueries namedQueries = entity.getAnnotation(NamedQueries.class);
+
+            if (namedQueries == null) {
+                continue;
+            }
+
+            for (NamedQuery namedQuery : namedQueries.value()) {
+                List<JPQLQueryProblem> queryProblems = new ArrayList<>();
+                EclipseLinkGrammarValidator validator = new EclipseLinkGrammarValidator(grammar);
+                validator.setProblems(queryProblems);
+                new JPQLExpression(namedQuery.query(), grammar, true).accept(validator);
+                count++;
+
+                for (JPQLQueryProblem problem : queryProblems) {
+                    problems.add(namedQuery.name() + " at " + problem.getStartPosition() + ": "
+                            + MessageFormat.format(messages.getString(problem.getMessageKey()),
+                                    (Object[]) problem.getMessageArguments()));
+                }
+            }
+        }
+
+        return count;
+    }
+}